@@ -0,0 +1,85 @@
+// The bookkeeping shared by every kind of Block. A subclass owns the
+// storage for the elements and decides how an element is cleared.
+public abstract class AbstractBlock {
+    protected int number; // Block number, as in Block1; changes when a pooled Block is reused
+    
+    // Number of elements that can be stored in this block
+    protected final int capacity;
+    
+    // Number of spaces that have been allocated for storing elements;
+    // initially 0. size <= capacity
+    protected int size;
+    
+    // Workhorse constructor. Initialize variables.
+    public AbstractBlock(int number, int capacity) {
+        this.number = number;
+        this.capacity = capacity;
+    }
+    
+    // Returns Number
+    public int getNumber() {
+        return number;
+    }
+    
+    // Sets number. Called by BlockPool when the Block is reused.
+    protected void setNumber(int number) {
+        this.number = number;
+    }
+    
+    // Returns capacity
+    public int getCapacity() {
+        return capacity;
+    }
+    
+    // Returns size
+    public int size() {
+        return size;
+    }
+    
+    // Increase the space allocated for storing elements. Increases 
+    // size.
+    public void grow() {
+        size++;
+    }
+    
+    // Increase the space allocated for storing elements by n. Increases
+    // size by n.
+    public void grow(int n) {
+        size += n;
+    }
+    
+    // Clear the last element and decrease the space allocated 
+    // for storing elements. Decreases size.
+    public abstract void shrink();
+    
+    // Clear the last n elements and decrease the space allocated
+    // for storing elements by n. Decreases size by n.
+    public abstract void shrink(int n);
+    
+    // Appends the element at position index to builder.
+    protected abstract void appendElement(StringBuilder builder, int index);
+    
+    // Create a pretty representation of the Block.
+    // Example: 
+    // A 
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        for(int i = 0; i < size; i++) {
+            appendElement(builder, i);
+        }
+        return builder.toString();
+    }
+    
+    // Create a pretty representation of the Block for debugging.
+    // Example: 
+    // A
+    // - capacity=1 size=1  
+    protected String toStringForDebugging() {
+        StringBuilder builder = new StringBuilder();
+        for(int i = 0; i < size; i++) {
+            appendElement(builder, i);
+        }
+        builder.append("\n- capacity=" + capacity + " size=" + size);
+        return builder.toString();
+    }
+}
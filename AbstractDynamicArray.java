@@ -0,0 +1,786 @@
+import java.io.IOException;
+import java.io.Writer;
+
+// The Block and SuperBlock geometry shared by DynamicArray and its
+// primitive specializations. A subclass decides what its Blocks store by
+// implementing newBlock, and adds the element accessors on top.
+abstract class AbstractDynamicArray {
+    protected Object[] arrayOfBlocks; 
+    protected final int DEFAULTCAPACITY = 4;
+    protected int sizeOfArrayOfBlocks; // number of Blocks in arrayOfBlocks
+    protected int size; // number of elements in the DynamicArray
+    protected int numberOfEmptyDataBlocks;
+    protected int numberOfNonEmptyDataBlocks;
+    protected int numberOfDataBlocks;
+    protected int indexOfLastNonEmptyDataBlock;
+    protected int indexOfLastDataBlock;
+    protected int numberOfSuperBlocks; 
+    protected SuperBlock lastSuperBlock; // right-most SuperBlock
+    // number of structural changes (grow and remove) so far; iterators
+    // compare it with the value they started with to fail fast
+    protected int modCount;
+    // Spine that arrayOfBlocks is being moved to, a few entries at a time,
+    // or null if no move is in progress. Until the move finishes,
+    // arrayOfBlocks stays complete and every change to the spine is made
+    // in both.
+    protected Object[] newArrayOfBlocks;
+    // Number of entries of arrayOfBlocks already copied to newArrayOfBlocks
+    protected int numberOfMigratedBlocks;
+    // Every SuperBlock created so far, by number. They are kept, so that
+    // crossing a SuperBlock boundary back and forth allocates nothing.
+    protected SuperBlock[] superBlocks;
+    // Total capacity of the data Blocks, maintained as they are created
+    // and deleted
+    protected long allocatedCapacity;
+    // Told about every structural change, or null if metrics are disabled
+    protected DynamicArrayMetrics metrics;
+    
+    // Number of spine entries moved to newArrayOfBlocks each time a Block
+    // is added or deleted. A move to a longer spine starts when
+    // arrayOfBlocks is three quarters full, and with 8 entries per Block
+    // it finishes well before arrayOfBlocks is full.
+    protected static final int MIGRATION_STEP = 8;
+    
+    // Workhorse constructor. Initialize variables, create the array
+    // and the last SuperBlock, which represents SB0. firstBlock must be
+    // an empty Block numbered 0 with a capacity of 1.
+    AbstractDynamicArray(AbstractBlock firstBlock) {
+        initialize(firstBlock);
+    }
+    
+    // Puts the DynamicArray in the state of a newly constructed one,
+    // with firstBlock as its only Block. Called by the constructor and
+    // by clear.
+    private void initialize(AbstractBlock firstBlock) {
+        arrayOfBlocks = new Object[DEFAULTCAPACITY];
+        lastSuperBlock = new SuperBlock(0, 1, 1, 0); // SB0 only has one Block, and that Block can only have one element.
+        arrayOfBlocks[0] = firstBlock; // The first Block, this Block is in SB0, so it can only have one element.
+        lastSuperBlock.incrementCurrentNumberOfDataBlocks(); // Now SB0 contains a Block, incrementCurrentNumberOfDataBlocks.
+        sizeOfArrayOfBlocks = 1;
+        size = 0;
+        numberOfEmptyDataBlocks = 1;
+        numberOfNonEmptyDataBlocks = 0;
+        numberOfDataBlocks = 1;
+        indexOfLastNonEmptyDataBlock = -1;
+        indexOfLastDataBlock = 0;
+        numberOfSuperBlocks = 1;
+        newArrayOfBlocks = null;
+        numberOfMigratedBlocks = 0;
+        superBlocks = new SuperBlock[Integer.SIZE];
+        superBlocks[0] = lastSuperBlock;
+        allocatedCapacity = firstBlock.getCapacity();
+    }
+    
+    // Creates an empty Block numbered number that can store capacity
+    // elements. Called by grow whenever a new Block is needed.
+    protected abstract AbstractBlock newBlock(int number, int capacity);
+    
+    // Called by remove and removeLast when the empty Block block is deleted
+    // from arrayOfBlocks, and by clear for every Block but the first, which
+    // may still hold elements. Does nothing by default; subclasses that own
+    // resources outside the Java heap release them here, and subclasses
+    // with a BlockPool return the Block to it.
+    protected void releaseBlock(AbstractBlock block) {
+    }
+    
+    // p for every possible k = floor(log2 r). r is a positive int, so k
+    // never exceeds 30; the table is filled once by computeP so locating
+    // an element costs one array load instead of the branches below.
+    private static final int[] P_TABLE = new int[Integer.SIZE];
+    static {
+        for(int k = 0; k < P_TABLE.length; k++) {
+            P_TABLE[k] = computeP(k);
+        }
+    }
+    
+    // Returns the Location of element i, which is the index of the Block
+    // and the position of i within that Block.
+    protected Location locate(int index) { 
+        return new Location(locateBlock(index), locateElement(index));
+    }
+    
+    // Returns the index in arrayOfBlocks of the Block holding element i.
+    // Uses integer bit math only and allocates nothing. The layout only
+    // depends on i, so this is static, and a snapshot uses it as well.
+    // Target complexity: O(1)
+    protected static int locateBlock(int index) {
+        int r = index + 1;
+        int k = floorLog2(r);
+        // Element i is located in Block p + b.
+        return P_TABLE[k] + computeB(r, k);
+    }
+    
+    // Returns the position of element i within its Block.
+    // Uses integer bit math only and allocates nothing.
+    // Target complexity: O(1)
+    protected static int locateElement(int index) {
+        int r = index + 1;
+        // Element i is located in position e of its Block.
+        return computeE(r, floorLog2(r));
+    }
+    
+    // Returns the position of the first element of the Block at position
+    // blockIndex in arrayOfBlocks, the inverse of locateBlock. The
+    // Block is in the SuperBlock k for which P_TABLE[k] <= blockIndex <
+    // P_TABLE[k + 1], and that SuperBlock starts at r = 2^k.
+    // Target complexity: O(log n)
+    protected static int firstPositionOf(int blockIndex) {
+        int k = 0;
+        while(k + 1 < P_TABLE.length && P_TABLE[k + 1] <= blockIndex) {
+            k++;
+        }
+        int b = blockIndex - P_TABLE[k];
+        return (1 << k) + b * (1 << ((k + 1) / 2)) - 1;
+    }
+    
+    // Returns floor(log2 n) for n > 0, which is the position of the
+    // leading 1 bit in n.
+    protected static int floorLog2(int n) {
+        return (Integer.SIZE - 1) - Integer.numberOfLeadingZeros(n);
+    }
+    
+    // Helper method computing p, the number of Blocks before SuperBlock k.
+    // It fits an int for every k up to 60, so LongIndexedDynamicArray
+    // fills its table with it as well.
+    protected static int computeP(int k) {
+        int p;
+        if(k % 2 == 0) {
+            // For even k
+            // p = 2 * (2^floor(k/2) - 1)
+            // k / 2 will give us floor(k / 2), 1 << k / 2 raise 2 to power floor(k / 2).
+            p = (int) (2 * ((1 << k / 2) - 1));
+        } else {   
+            // For odd k
+            // p = (2 * (2^floor(k/2) - 1)) + 2^floor(k/2)
+            p = (int) (2 * ((1 << k / 2) - 1) + (1 << k / 2));
+        }
+        return p;
+    }
+    
+    // Helper method computing b.
+    private static int computeB(int r, int k) {
+        // The value of b is given by the base 10 value of the floor(k/2) bits of r immediately after the leading 1 bit in r.
+        // k / 2 will give us floor(k / 2), this is the number of bits we want to capture.
+        int numOfBitsToCapture = k / 2;
+        // floor(log2 r) is the total number of bits immediately after the leading 1 bit in r,
+        // and k = floor(log2 r)
+        // k - numOfBitsToCapture gives us how many places we need to shift the bits to the right in r.
+        r = r >> (k - numOfBitsToCapture);
+        // mask depends on how many bits we want to capture.
+        int mask = maskOfN(numOfBitsToCapture);  
+        int b = r & mask;
+        return b;
+    }
+    
+    // Helper method computing e.
+    private static int computeE(int r, int k) {
+        // The value of e is given by the base 10 value of the last ceiling(k/2) bits of r.
+        // We want to capture the last ceil(k / 2) bits of r
+        // Quickly compute ceil(k / 2)
+        int numOfBitsToCapture = (int) (k + 1) >> 1;
+        // mask depends on how many bits we want to capture.
+        int mask = maskOfN(numOfBitsToCapture); 
+        int e = r & mask;
+        return e;
+    }
+    
+    // Allocates one more spaces in the DynamicArray. This may
+    // require the creation of a Block and the last SuperBlock may change. 
+    // Also, a few entries of arrayOfBlocks may be moved to a longer spine
+    // when a Block is created. 
+    // Called by add in the subclasses.
+    // Target complexity: O(1)
+    protected void grow() {
+        // The new space belongs in the last non-empty Block unless that Block
+        // is full; then it belongs in the Block after it. Growing the last
+        // data Block instead would leave a hole when an empty Block is kept
+        // behind a partially filled one, and locate would no longer agree
+        // with the layout.
+        int indexOfGrowingBlock = indexOfLastNonEmptyDataBlock;
+        if(indexOfGrowingBlock < 0 || isFull(indexOfGrowingBlock)) {
+            indexOfGrowingBlock++;
+        }
+        
+        // If there is no Block after the last non-empty Block, we need to make a new Block.
+        if(indexOfGrowingBlock > indexOfLastDataBlock) {
+            addBlock();
+        }
+        AbstractBlock growingBlock = (AbstractBlock) arrayOfBlocks[indexOfGrowingBlock];
+        growingBlock.grow();
+        modCount++;
+        if(growingBlock.size() == 1) {
+            // The growingBlock was empty.
+            // But it is supposed to not be empty now because we just grew the size of it.
+            // So we have to update fields below.
+            numberOfEmptyDataBlocks--;
+            numberOfNonEmptyDataBlocks++;
+            indexOfLastNonEmptyDataBlock++;
+        }
+    }
+    
+    // Creates an empty Block after the last data Block. The last SuperBlock
+    // may change, and a few entries of arrayOfBlocks may be moved to a
+    // longer spine.
+    // Called by grow and growBy.
+    // Target complexity: O(1)
+    protected void addBlock() {
+        if(sizeOfArrayOfBlocks == arrayOfBlocks.length) {
+            // arrayOfBlocks is full before a move to a longer spine could
+            // finish; finish it now.
+            expandArray();
+            finishMigration();
+        }
+        
+        // If the lastSuperBlock is full of Blocks, we need to move on to the next SuperBlock and increment numberOfSuperBlocks.
+        // It is created the first time only.
+        if(lastSuperBlock.getCurrentNumberOfDataBlocks() == lastSuperBlock.getMaxNumberOfDataBlocks()) {
+            if(superBlocks[numberOfSuperBlocks] != null) {
+                // This SuperBlock was left empty by deleteLastBlock.
+                lastSuperBlock = superBlocks[numberOfSuperBlocks++];
+            } else {
+                // If the number of the current full lastSuperBlock is even,
+                // the new SuperBlock has Blocks twice as long; if it is odd,
+                // twice as many Blocks.
+                // This new superBlock currently has no Block in it.
+                lastSuperBlock = lastSuperBlock.next();
+                superBlocks[numberOfSuperBlocks++] = lastSuperBlock;
+            }
+            if(metrics != null) {
+                metrics.superBlockEntered(this, lastSuperBlock);
+            }
+        }
+        
+        // Create a new Block, use lastSuperBlock to figure out how many elements the Block can store.
+        // Update the fields, also lastSuperBlock has one more Block in it, so incrementCurrentNumberOfDataBlocks.
+        AbstractBlock block = newBlock(++indexOfLastDataBlock, lastSuperBlock.getMaxNumberOfElementsPerBlock());
+        replaceBlock(sizeOfArrayOfBlocks++, block);
+        numberOfEmptyDataBlocks++;
+        numberOfDataBlocks++;
+        lastSuperBlock.incrementCurrentNumberOfDataBlocks();
+        allocatedCapacity += block.getCapacity();
+        if(metrics != null) {
+            metrics.blockCreated(this, block);
+        }
+        migrateArray();
+    }
+    
+    // Allocates n more spaces at the end of the DynamicArray, filling the
+    // last non-empty Block and then whole new Blocks, so the cost is
+    // proportional to the number of Blocks touched rather than to n.
+    // The size is not changed; the caller does that.
+    // Called by the bulk add operations.
+    protected void growBy(int n) {
+        while(n > 0) {
+            int indexOfGrowingBlock = indexOfLastNonEmptyDataBlock;
+            if(indexOfGrowingBlock < 0 || isFull(indexOfGrowingBlock)) {
+                indexOfGrowingBlock++;
+            }
+            if(indexOfGrowingBlock > indexOfLastDataBlock) {
+                addBlock();
+            }
+            AbstractBlock growingBlock = (AbstractBlock) arrayOfBlocks[indexOfGrowingBlock];
+            int spaces = Math.min(n, growingBlock.getCapacity() - growingBlock.size());
+            if(growingBlock.size() == 0) {
+                // The growingBlock is about to become non-empty.
+                numberOfEmptyDataBlocks--;
+                numberOfNonEmptyDataBlocks++;
+                indexOfLastNonEmptyDataBlock++;
+            }
+            growingBlock.grow(spaces);
+            n -= spaces;
+        }
+        modCount++;
+    }
+    
+    // Returns true if the Block at position index in arrayOfBlocks has no
+    // space left.
+    protected boolean isFull(int index) {
+        AbstractBlock block = (AbstractBlock) arrayOfBlocks[index];
+        return block.size() == block.getCapacity();
+    }
+    
+    // Clear the last element, shrinks the DynamicArray by one 
+    // space, and decreases the size of the DynamicArray. A Block may be 
+    // deleted and the last SuperBlock may change.
+    // Also, a few entries of arrayOfBlocks may be moved to a shorter spine
+    // when a Block is deleted. 
+    // Throws IllegalStateException if the DynamicArray is empty when remove is
+    // called.
+    // Target complexity: O(1)
+    public void remove() {
+        if(size == 0) {
+            throw new IllegalStateException();
+        }
+        
+        // shrink() clears the last element of the Block.
+        AbstractBlock lastNonEmptyDataBlock = writableBlock(indexOfLastNonEmptyDataBlock);  
+        lastNonEmptyDataBlock.shrink();
+        size--;
+        modCount++;
+        
+        if(lastNonEmptyDataBlock.size() == 0) {
+            // The lastNonEmptyDataBlock is empty now after shrinking,
+            // we have to update fields below. 
+            numberOfEmptyDataBlocks++;
+            numberOfNonEmptyDataBlocks--;
+            indexOfLastNonEmptyDataBlock--;
+        }
+        
+        // If we have two empty Blocks, we have to delete the last one.
+        if(numberOfEmptyDataBlocks == 2) {
+            deleteLastBlock();
+        }
+    }
+    
+    // Deletes the last data Block, which must be empty. The last SuperBlock
+    // may change, and a few entries of arrayOfBlocks may be moved to a
+    // shorter spine.
+    // Called by remove and shrinkBy.
+    // Target complexity: O(1)
+    protected void deleteLastBlock() {
+        // Set the last empty Block to null.
+        AbstractBlock block = (AbstractBlock) arrayOfBlocks[sizeOfArrayOfBlocks - 1];
+        releaseBlock(block);
+        replaceBlock(--sizeOfArrayOfBlocks, null); // --sizeOfArrayOfBlocks gives us the index of last Block, also decrement sizeOfArrayOfBlocks.
+        // Update the fields, also lastSuperBlock has one less Block in it, so decrementCurrentNumberOfDataBlocks.
+        numberOfDataBlocks--;
+        numberOfEmptyDataBlocks--;
+        indexOfLastDataBlock--;
+        lastSuperBlock.decrementCurrentNumberOfDataBlocks();
+        allocatedCapacity -= block.getCapacity();
+        if(metrics != null) {
+            metrics.blockDeleted(this, block);
+        }
+        
+        migrateArray();
+        
+        // If the lastSuperBlock has no Blocks in it, 
+        // we need to change lastSuperBlock to the previous superBlock and decrement numberOfSuperBlocks.
+        // The previous SuperBlock is full of Blocks, and was kept in superBlocks when it was created.
+        // The empty one stays there too, ready for the next addBlock.
+        if(lastSuperBlock.getCurrentNumberOfDataBlocks() == 0) {
+            if(metrics != null) {
+                metrics.superBlockLeft(this, lastSuperBlock);
+            }
+            lastSuperBlock = superBlocks[--numberOfSuperBlocks - 1];
+        }
+    }
+    
+    // Removes the last n elements, as n calls to remove would, but a
+    // whole Block at a time: the cost is proportional to the number of
+    // Blocks touched rather than to n.
+    // Throws IllegalArgumentException if n < 0 or n > size.
+    // Target complexity: O(number of Blocks touched)
+    public void removeLast(int n) {
+        if(n < 0 || n > size) {
+            throw new IllegalArgumentException();
+        }
+        shrinkBy(n);
+    }
+    
+    // Clears the last n elements and decreases the size by n, deleting
+    // Blocks as remove would. Called by removeLast.
+    protected void shrinkBy(int n) {
+        while(n > 0) {
+            AbstractBlock lastNonEmptyDataBlock = writableBlock(indexOfLastNonEmptyDataBlock);
+            int spaces = Math.min(n, lastNonEmptyDataBlock.size());
+            lastNonEmptyDataBlock.shrink(spaces);
+            size -= spaces;
+            n -= spaces;
+            if(lastNonEmptyDataBlock.size() == 0) {
+                numberOfEmptyDataBlocks++;
+                numberOfNonEmptyDataBlocks--;
+                indexOfLastNonEmptyDataBlock--;
+                if(numberOfEmptyDataBlocks == 2) {
+                    deleteLastBlock();
+                }
+            }
+        }
+        modCount++;
+    }
+    
+    // Removes every element. All Blocks but the first are deleted, so the
+    // DynamicArray is left as a newly constructed one. The metrics, if
+    // any, are told about each Block deleted and each SuperBlock left, as
+    // deleteLastBlock tells them, and a move of arrayOfBlocks in progress
+    // is finished first, so that every move started is also finished.
+    // Target complexity: O(number of Blocks)
+    public void clear() {
+        finishMigration();
+        for(int i = sizeOfArrayOfBlocks - 1; i > 0; i--) {
+            AbstractBlock block = (AbstractBlock) arrayOfBlocks[i];
+            releaseBlock(block);
+            if(metrics != null) {
+                metrics.blockDeleted(this, block);
+            }
+        }
+        if(metrics != null) {
+            for(int k = numberOfSuperBlocks - 1; k > 0; k--) {
+                metrics.superBlockLeft(this, superBlocks[k]);
+            }
+        }
+        AbstractBlock firstBlock = writableBlock(0);
+        firstBlock.shrink(firstBlock.size());
+        initialize(firstBlock);
+        modCount++;
+    }
+    
+    // Returns the Block at position index in arrayOfBlocks, about to be
+    // changed in place. By default that is the Block itself; DynamicArray
+    // first replaces a Block it shares with a snapshot by a copy.
+    protected AbstractBlock writableBlock(int index) {
+        return (AbstractBlock) arrayOfBlocks[index];
+    }
+    
+    // Stores block at position index of the spine, in both arrayOfBlocks
+    // and the spine it is being moved to. If the spine being moved to is
+    // too short for index, the move to it is abandoned.
+    protected void replaceBlock(int index, AbstractBlock block) {
+        arrayOfBlocks[index] = block;
+        if(newArrayOfBlocks != null) {
+            if(index < newArrayOfBlocks.length) {
+                newArrayOfBlocks[index] = block;
+            } else {
+                newArrayOfBlocks = null;
+                numberOfMigratedBlocks = 0;
+            }
+        }
+    }
+    
+    // Starts moving arrayOfBlocks to a longer or shorter spine when
+    // newSpineLength says so, and moves MIGRATION_STEP more entries of a
+    // move in progress.
+    // Called by addBlock and deleteLastBlock.
+    // Target complexity: O(1)
+    protected void migrateArray() {
+        if(newArrayOfBlocks == null) {
+            // The length of arrayOfBlocks should never be less than 4
+            int length = newSpineLength(sizeOfArrayOfBlocks, arrayOfBlocks.length, DEFAULTCAPACITY, Integer.MAX_VALUE);
+            if(length > arrayOfBlocks.length) {
+                expandArray();
+            } else if(length < arrayOfBlocks.length) {
+                shrinkArray();
+            } else {
+                return;
+            }
+        }
+        migrate(MIGRATION_STEP);
+    }
+    
+    // Returns the length of the spine that a spine of length entries
+    // holding size Blocks should be moved to, or length if it should stay:
+    // twice as long, up to maxLength, once it is three quarters full, and
+    // half as long, down to minLength, once it is a quarter full or less.
+    // The gap between the two means that adding and deleting Blocks around
+    // one size does not reallocate the spine over and over. Also used by
+    // LongIndexedDynamicArray.
+    static int newSpineLength(int size, int length, int minLength, int maxLength) {
+        if(size >= length - length / 4) {
+            return (int) Math.min(2L * length, maxLength);
+        }
+        if(size <= length / 4 && length > minLength) {
+            return length / 2;
+        }
+        return length;
+    }
+    
+    // Copies up to n more of the first size entries of spine to newSpine,
+    // after the first migrated ones already there, and returns how many
+    // are there now. The move is over once that is size. Also used by
+    // LongIndexedDynamicArray.
+    static int migrateEntries(Object[] spine, Object[] newSpine, int migrated, int n, int size) {
+        int end = (int) Math.min((long) migrated + n, size);
+        if(end > migrated) {
+            System.arraycopy(spine, migrated, newSpine, migrated, end - migrated);
+        }
+        return end;
+    }
+    
+    // Copies up to n more entries of arrayOfBlocks to newArrayOfBlocks, and
+    // makes newArrayOfBlocks the arrayOfBlocks once they are all there.
+    protected void migrate(int n) {
+        numberOfMigratedBlocks = migrateEntries(arrayOfBlocks, newArrayOfBlocks, numberOfMigratedBlocks, n, sizeOfArrayOfBlocks);
+        if(numberOfMigratedBlocks == sizeOfArrayOfBlocks) {
+            arrayOfBlocks = newArrayOfBlocks;
+            newArrayOfBlocks = null;
+            numberOfMigratedBlocks = 0;
+            if(metrics != null) {
+                metrics.spineMoveFinished(this);
+            }
+        }
+    }
+    
+    // Moves every remaining entry of a move in progress at once.
+    protected void finishMigration() {
+        if(newArrayOfBlocks != null) {
+            migrate(sizeOfArrayOfBlocks);
+        }
+    }
+    
+    // Starts moving the Blocks to a spine half the length of arrayOfBlocks.
+    // Does nothing if a move is already in progress.
+    protected void shrinkArray() {
+        if(newArrayOfBlocks == null) {
+            if(metrics != null) {
+                metrics.spineMoveStarted(this, arrayOfBlocks.length / 2);
+            }
+            newArrayOfBlocks = new Object[arrayOfBlocks.length / 2];
+            numberOfMigratedBlocks = 0;
+        }
+    }
+    
+    // Starts moving the Blocks to a spine twice the length of arrayOfBlocks.
+    // A move to a shorter spine in progress is abandoned.
+    protected void expandArray() {
+        if(newArrayOfBlocks == null || newArrayOfBlocks.length <= arrayOfBlocks.length) {
+            if(metrics != null) {
+                metrics.spineMoveStarted(this, arrayOfBlocks.length * 2);
+            }
+            newArrayOfBlocks = new Object[arrayOfBlocks.length * 2];
+            numberOfMigratedBlocks = 0;
+        }
+    }
+    
+    // Returns the size of the DynamicArray which is the number of elements that
+    // have been added to it with the add(x) method but not removed.  The size 
+    // does not correspond to the capacity of the array.
+    public int size() {
+        return size;
+    }
+    
+    // Returns a mask of N 1 bits; this code is provided below and can be used 
+    // as is
+    protected static int maskOfN(int N) {
+        int POW2ToN = 1 << N; // left shift 1 N places; e.g., 1 << 2 = 100 = 4
+        int mask = POW2ToN - 1; // subtract 1; e.g., 1002 C 12 = 0112 = 3
+        // Integer.toString(mask,2); // a String with the bits of mask
+        return mask;
+    }
+    
+    // Attaches metrics, which is told about every Block created or
+    // deleted, every move of arrayOfBlocks and every move between
+    // SuperBlocks from now on. null disables metrics.
+    public void setMetrics(DynamicArrayMetrics metrics) {
+        this.metrics = metrics;
+    }
+    
+    // Returns the metrics attached, or null if metrics are disabled
+    public DynamicArrayMetrics getMetrics() {
+        return metrics;
+    }
+    
+    // Returns the number of elements the data Blocks can hold
+    // Target complexity: O(1)
+    public long capacity() {
+        return allocatedCapacity;
+    }
+    
+    // Returns the space allocated but not used: capacity() - size()
+    // Target complexity: O(1)
+    public long slack() {
+        return allocatedCapacity - size;
+    }
+    
+    // Returns the length of arrayOfBlocks
+    // Target complexity: O(1)
+    public int spineLength() {
+        return arrayOfBlocks.length;
+    }
+    
+    // Returns the number of data Blocks in each SuperBlock, SB0 first.
+    // Every SuperBlock but the last is full.
+    // Target complexity: O(log n)
+    public int[] superBlockOccupancy() {
+        int[] occupancy = new int[numberOfSuperBlocks];
+        for(int i = 0; i < numberOfSuperBlocks; i++) {
+            occupancy[i] = superBlocks[i].getCurrentNumberOfDataBlocks();
+        }
+        return occupancy;
+    }
+    
+    // Number of chars collected before they are passed on to the
+    // Appendable given to appendTo, so that a large DynamicArray is
+    // streamed instead of being built into one String first
+    protected static final int CHUNK_SIZE = 8192;
+    
+    // Appends the elements to target, formatted as toString does.
+    // Throws IOException if target does.
+    // Target Complexity: O(N)
+    public void appendTo(Appendable target) throws IOException {
+        appendTo(target, size);
+    }
+    
+    // Appends at most maxElements elements to target, formatted as
+    // toString does. If elements are left out, the last one shown is
+    // followed by how many there are, as in [A, B, ... 2 more]
+    // Throws IllegalArgumentException if maxElements < 0.
+    // Throws IOException if target does.
+    // Target Complexity: O(min(N, maxElements))
+    public void appendTo(Appendable target, int maxElements) throws IOException {
+        if(maxElements < 0) {
+            throw new IllegalArgumentException();
+        }
+        int n = Math.min(size, maxElements);
+        StringBuilder builder = chunkFor(target);
+        builder.append("[");
+        appendElements(builder, target, 0, n, ", ");
+        appendMore(builder, n, size - n);
+        builder.append("]");
+        flush(builder, target);
+    }
+    
+    // Writes the elements to out as appendTo does, then flushes out.
+    // Throws IOException if out does.
+    public void writeTo(Writer out) throws IOException {
+        writeTo(out, size);
+    }
+    
+    // Writes at most maxElements elements to out as appendTo does, then
+    // flushes out.
+    // Throws IllegalArgumentException if maxElements < 0.
+    // Throws IOException if out does.
+    public void writeTo(Writer out, int maxElements) throws IOException {
+        appendTo(out, maxElements);
+        out.flush();
+    }
+    
+    // Appends the elements at positions from to to - 1 to builder,
+    // separated by separator, walking the Blocks in order instead of
+    // locating every element. Whenever builder holds CHUNK_SIZE chars they
+    // are moved to target, unless builder is target.
+    // Target Complexity: O(to - from)
+    protected void appendElements(StringBuilder builder, Appendable target, int from, int to, String separator) throws IOException {
+        if(from >= to) {
+            return;
+        }
+        int blockIndex = locateBlock(from);
+        int elementIndex = locateElement(from);
+        for(int i = from; i < to; blockIndex++, elementIndex = 0) {
+            AbstractBlock block = (AbstractBlock) arrayOfBlocks[blockIndex];
+            for(; elementIndex < block.size() && i < to; elementIndex++, i++) {
+                if(i > from) {
+                    builder.append(separator);
+                }
+                block.appendElement(builder, elementIndex);
+                if(builder != target && builder.length() >= CHUNK_SIZE) {
+                    flush(builder, target);
+                }
+            }
+        }
+    }
+    
+    // Appends the elements at positions to - 1 down to from to builder,
+    // separated by separator, walking the Blocks backwards as
+    // appendElements walks them forwards.
+    // Target Complexity: O(to - from)
+    protected void appendElementsReversed(StringBuilder builder, Appendable target, int from, int to, String separator) throws IOException {
+        if(from >= to) {
+            return;
+        }
+        int blockIndex = locateBlock(to - 1);
+        int elementIndex = locateElement(to - 1);
+        for(int i = to - 1; i >= from; blockIndex--) {
+            AbstractBlock block = (AbstractBlock) arrayOfBlocks[blockIndex];
+            if(elementIndex < 0) {
+                elementIndex = block.getCapacity() - 1;
+            }
+            for(; elementIndex >= 0 && i >= from; elementIndex--, i--) {
+                if(i < to - 1) {
+                    builder.append(separator);
+                }
+                block.appendElement(builder, elementIndex);
+                if(builder != target && builder.length() >= CHUNK_SIZE) {
+                    flush(builder, target);
+                }
+            }
+        }
+    }
+    
+    // Returns the StringBuilder to collect chars for target in: target
+    // itself if it is a StringBuilder, a new one otherwise.
+    protected static StringBuilder chunkFor(Appendable target) {
+        return target instanceof StringBuilder ? (StringBuilder) target : new StringBuilder(CHUNK_SIZE + 64);
+    }
+    
+    // Moves the chars collected in builder to target, unless builder is
+    // target.
+    protected static void flush(StringBuilder builder, Appendable target) throws IOException {
+        if(builder != target) {
+            target.append(builder);
+            builder.setLength(0);
+        }
+    }
+    
+    // Appends how many elements were left out after shown elements, if any.
+    protected static void appendMore(StringBuilder builder, long shown, long more) {
+        if(more > 0) {
+            builder.append(shown > 0 ? ", ... " : "... ").append(more).append(" more");
+        }
+    }
+    
+    // Create a pretty representation of the DynamicArray. This method should
+    // return string formatted similarly to ArrayList
+    // Examples: [], [X],  [A, B, C, D]
+    // 
+    // Target Complexity: O(N)
+    //   N: number of elements in the DynamicArray
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        try {
+            appendTo(builder);
+        } catch(IOException e) {
+            throw new AssertionError(e); // a StringBuilder never throws
+        }
+        return builder.toString();
+    }
+    
+    // Create a pretty representation of the DynamicArray for debugging
+    // Example: 
+    // DynamicArray: A B 
+    // numberOfDataBlocks: 2
+    // numberOfEmptyDataBlocks: 0
+    // numberOfNonEmptyDataBlocks: 2
+    // indexOfLastNonEmptyDataBlock: 1
+    // indexOfLastDataBlock: 1
+    // numberOfSuperBlocks: 2
+    // lastSuperBlock: SB1
+    // Block0: A 
+    // - capacity: 1 size: 1
+    // Block1: B 
+    // - capacity: 2 size: 1
+    // SB1:
+    // - maxNumberOfDataBlocks: 1
+    // - numberOfElementsPerBlock: 2
+    // - currentNumberOfDataBlocks: 1
+    
+    protected String toStringForDebugging() {
+        StringBuilder builder = new StringBuilder();
+        builder.append(getClass().getSimpleName() + ": ");
+        try {
+            appendElements(builder, builder, 0, size, " ");
+        } catch(IOException e) {
+            throw new AssertionError(e); // a StringBuilder never throws
+        }
+        if(size > 0) {
+            builder.append(" ");
+        }
+        builder.append("\nnumberOfDataBlocks: " + numberOfDataBlocks);
+        builder.append("\nnumberOfEmptyDataBlocks: " + numberOfEmptyDataBlocks);
+        builder.append("\nnumberOfNonEmptyDataBlocks: " + numberOfNonEmptyDataBlocks);
+        builder.append("\nindexOfLastNonEmptyDataBlock: " + indexOfLastNonEmptyDataBlock);
+        builder.append("\nindexOfLastDataBlock: " + indexOfLastDataBlock);
+        builder.append("\nnumberOfSuperBlocks: " + numberOfSuperBlocks);
+        builder.append("\nlastSuperBlock: SB" + lastSuperBlock.getNumber());
+        for(int i = 0; i < sizeOfArrayOfBlocks; i++) {
+            builder.append("\nBlock" + i + ": ");
+            AbstractBlock block = (AbstractBlock) arrayOfBlocks[i];
+            builder.append(block.toStringForDebugging());
+        }
+        builder.append("\nSB" + lastSuperBlock.getNumber() + ":");
+        builder.append("\n- maxNumberOfDataBlocks: " + lastSuperBlock.getMaxNumberOfDataBlocks());
+        builder.append("\n- maxNumberOfElementsPerBlock: " + lastSuperBlock.getMaxNumberOfElementsPerBlock());
+        builder.append("\n- currentNumberOfDataBlocks: " + lastSuperBlock.getCurrentNumberOfDataBlocks());
+        
+        return builder.toString();
+    }
+}
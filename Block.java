@@ -1,89 +1,187 @@
-public class Block<T> {
-    protected final int number; // Block number, as in Block1
+import java.util.Arrays;
+
+public class Block<T> extends AbstractBlock {
     protected final T[] arrayOfElements; // Holds actual elements
     
+    // Position in arrayOfElements of the element at position 0. The
+    // elements wrap around the end of arrayOfElements, so insertAt,
+    // removeAt and the push and pop methods can add or remove at either
+    // end of the Block without moving the others. Positions of
+    // arrayOfElements that hold no element are always null.
+    protected int head;
+    
+    // true once a snapshot may hold this Block. A shared Block is never
+    // changed again; DynamicArray changes a copy instead.
+    protected boolean shared;
+    
     // Note that it is not possible to use the code
     // T a[] = new T[size]; 
     // which leads to Javas Generic Array Creation error on 
     // compilation. Consult the textbook for solution to surmount this 
     // minor problem
     
-    // Number of elements that can be stored in this block;
-    // this is equal to arrayOfElements.length
-    protected final int capacity;
-    
-    // Number of spaces that have been allocated for storing elements;
-    // initially 0. size <= capacity
-    protected int size;
-    
     @SuppressWarnings("unchecked")
     // Workhorse constructor. Initialize variables and create array.
     public Block(int number, int capacity) {
-        this.number = number;
-        this.capacity = capacity;
+        super(number, capacity);
         this.arrayOfElements = (T[]) new Object[capacity];
     }
     
-    // Returns Number
-    public int getNumber() {
-        return number;
-    }
-    
-    // Returns capacity
-    public int getCapacity() {
-        return capacity;
-    }
-    
-    // Returns size
-    public int size() {
-        return size;
+    @SuppressWarnings("unchecked")
+    // Creates a copy of other that is not shared, with its elements moved
+    // to the front. Every position of arrayOfElements is copied, cleared
+    // or not, and all of it is done in the constructor, so a thread that
+    // finds the copy through a race still sees its elements.
+    protected Block(Block<T> other) {
+        super(other.number, other.capacity);
+        this.arrayOfElements = (T[]) new Object[capacity];
+        System.arraycopy(other.arrayOfElements, other.head, arrayOfElements, 0, capacity - other.head);
+        System.arraycopy(other.arrayOfElements, 0, arrayOfElements, capacity - other.head, other.head);
+        size = other.size;
     }
     
-    // Increase the space allocated for storing elements. Increases 
-    // size.
-    public void grow() {
-        size++;
+    // Returns the position in arrayOfElements of the element at position
+    // index. capacity is a power of 2, so the wrap is a mask.
+    protected int physicalIndex(int index) {
+        return (head + index) & (capacity - 1);
     }
     
     // Set the last element to null and decrease the space allocated 
     // for storing elements. Decreases size.
     public void shrink() {
-        arrayOfElements[size - 1] = null;
+        arrayOfElements[physicalIndex(size - 1)] = null;
         size--;
     }
     
-    // Returns the element at position index in arrayOfElements.
+    // Set the last n elements to null and decrease the space allocated 
+    // for storing elements by n. Decreases size by n.
+    public void shrink(int n) {
+        int start = physicalIndex(size - n);
+        int first = Math.min(n, capacity - start);
+        Arrays.fill(arrayOfElements, start, start + first, null);
+        Arrays.fill(arrayOfElements, 0, n - first, null);
+        size -= n;
+    }
+    
+    // Returns the element at position index in the Block.
     public T getElement(int index) {
-        return arrayOfElements[index];
+        return arrayOfElements[physicalIndex(index)];
     }
     
-    // Sets the value at position i in arrayOfElements to x.
+    // Sets the value at position i in the Block to x.
     public void setElement(int i, T x) {
-        arrayOfElements[i] = x;
+        arrayOfElements[physicalIndex(i)] = x;
+    }
+    
+    // Copies length elements of src, starting at srcPos, into the Block
+    // starting at position index.
+    public void copyFrom(Object[] src, int srcPos, int index, int length) {
+        int start = physicalIndex(index);
+        int first = Math.min(length, capacity - start);
+        System.arraycopy(src, srcPos, arrayOfElements, start, first);
+        System.arraycopy(src, srcPos + first, arrayOfElements, 0, length - first);
+    }
+    
+    // Copies length elements of the Block, starting at position index,
+    // into dst starting at dstPos.
+    public void copyTo(int index, Object[] dst, int dstPos, int length) {
+        int start = physicalIndex(index);
+        int first = Math.min(length, capacity - start);
+        System.arraycopy(arrayOfElements, start, dst, dstPos, first);
+        System.arraycopy(arrayOfElements, 0, dst, dstPos + first, length - first);
+    }
+    
+    // Empties the Block without clearing it, for a Block whose positions
+    // have all been set to null already, as a drained Block of a
+    // DynamicQueue has.
+    // Target complexity: O(1)
+    public void reset() {
+        size = 0;
+        head = 0;
+    }
+    
+    // Sets length elements, starting at position index, to null. The
+    // size does not change.
+    public void clear(int index, int length) {
+        int start = physicalIndex(index);
+        int first = Math.min(length, capacity - start);
+        Arrays.fill(arrayOfElements, start, start + first, null);
+        Arrays.fill(arrayOfElements, 0, length - first, null);
+    }
+    
+    // Adds x after the last element. The Block must not be full.
+    public void pushBack(T x) {
+        arrayOfElements[physicalIndex(size)] = x;
+        size++;
+    }
+    
+    // Adds x before the first element. The Block must not be full.
+    public void pushFront(T x) {
+        head = (head - 1) & (capacity - 1);
+        arrayOfElements[head] = x;
+        size++;
     }
     
-    // Create a pretty representation of the Block.
-    // Example: 
-    // A 
-    public String toString() {
-        StringBuilder builder = new StringBuilder();
-        for(int i = 0; i < size; i++) {
-            builder.append(arrayOfElements[i]);
+    // Removes and returns the last element. The Block must not be empty.
+    public T popBack() {
+        int last = physicalIndex(size - 1);
+        T x = arrayOfElements[last];
+        arrayOfElements[last] = null;
+        size--;
+        return x;
+    }
+    
+    // Removes and returns the first element. The Block must not be empty.
+    public T popFront() {
+        T x = arrayOfElements[head];
+        arrayOfElements[head] = null;
+        head = (head + 1) & (capacity - 1);
+        size--;
+        return x;
+    }
+    
+    // Inserts x at position index, 0 <= index <= size, moving the elements
+    // before or after it, whichever are fewer, by one. The Block must not
+    // be full.
+    // Target complexity: O(min(index, size - index))
+    public void insertAt(int index, T x) {
+        if(index < size - index) {
+            head = (head - 1) & (capacity - 1);
+            for(int i = 0; i < index; i++) {
+                arrayOfElements[physicalIndex(i)] = arrayOfElements[physicalIndex(i + 1)];
+            }
+        } else {
+            for(int i = size; i > index; i--) {
+                arrayOfElements[physicalIndex(i)] = arrayOfElements[physicalIndex(i - 1)];
+            }
         }
-        return builder.toString();
+        arrayOfElements[physicalIndex(index)] = x;
+        size++;
     }
     
-    // Create a pretty representation of the Block for debugging.
-    // Example: 
-    // A
-    // - capacity=1 size=1  
-    protected String toStringForDebugging() {
-        StringBuilder builder = new StringBuilder();
-        for(int i = 0; i < size; i++) {
-            builder.append(arrayOfElements[i]);
+    // Removes and returns the element at position index, moving the
+    // elements before or after it, whichever are fewer, by one.
+    // Target complexity: O(min(index, size - index))
+    public T removeAt(int index) {
+        T x = arrayOfElements[physicalIndex(index)];
+        if(index < size - 1 - index) {
+            for(int i = index; i > 0; i--) {
+                arrayOfElements[physicalIndex(i)] = arrayOfElements[physicalIndex(i - 1)];
+            }
+            arrayOfElements[head] = null;
+            head = (head + 1) & (capacity - 1);
+        } else {
+            for(int i = index; i < size - 1; i++) {
+                arrayOfElements[physicalIndex(i)] = arrayOfElements[physicalIndex(i + 1)];
+            }
+            arrayOfElements[physicalIndex(size - 1)] = null;
         }
-        builder.append("\n- capacity=" + capacity + " size=" + size);
-        return builder.toString();
+        size--;
+        return x;
     }
     
+    // Appends the element at position index to builder.
+    protected void appendElement(StringBuilder builder, int index) {
+        builder.append(getElement(index));
+    }
 }
@@ -0,0 +1,138 @@
+import java.util.Arrays;
+
+// A bounded cache of released, empty Blocks, kept by capacity. A
+// DynamicArray that grows back over a size it has shrunk from takes its
+// Blocks from here instead of allocating them and their arrays again, so
+// adding and removing around the same size allocates nothing.
+// One BlockPool may be shared by several arrays that use the same kind of
+// Block; its methods are synchronized for that.
+public class BlockPool<B extends AbstractBlock> {
+    // Default number of Blocks kept for each capacity
+    public static final int DEFAULT_RETENTION = 4;
+    
+    // Pooled Blocks by log2 of their capacity, which is always a power of 2.
+    // Each is a stack, so the Block released last is taken first.
+    private final Object[][] blocksByCapacity = new Object[Integer.SIZE][];
+    // Number of Blocks in each stack of blocksByCapacity
+    private final int[] numberOfBlocks = new int[Integer.SIZE];
+    
+    // Number of Blocks kept for each capacity
+    private final int maxBlocksPerCapacity;
+    // Total capacity of the Blocks kept, over every capacity
+    private final long maxElements;
+    // Total capacity of the Blocks in the pool
+    private long numberOfElements;
+    
+    // Metrics
+    private long hits;      // takes answered with a pooled Block
+    private long misses;    // takes that found no Block
+    private long evictions; // released Blocks dropped, or removed by clear
+    
+    // Keeps up to DEFAULT_RETENTION Blocks for each capacity.
+    public BlockPool() {
+        this(DEFAULT_RETENTION, Long.MAX_VALUE);
+    }
+    
+    // Keeps up to maxBlocksPerCapacity Blocks for each capacity, and
+    // Blocks of no more than maxElements capacity in total. A released
+    // Block that does not fit is dropped, and counted as an eviction.
+    // Throws IllegalArgumentException if either limit is negative.
+    public BlockPool(int maxBlocksPerCapacity, long maxElements) {
+        if(maxBlocksPerCapacity < 0 || maxElements < 0) {
+            throw new IllegalArgumentException();
+        }
+        this.maxBlocksPerCapacity = maxBlocksPerCapacity;
+        this.maxElements = maxElements;
+    }
+    
+    @SuppressWarnings("unchecked")
+    // Returns a pooled Block that can store capacity elements, renumbered
+    // as number, or null if there is none.
+    // Target complexity: O(1)
+    public synchronized B take(int number, int capacity) {
+        int k = Integer.numberOfTrailingZeros(capacity);
+        if(numberOfBlocks[k] == 0) {
+            misses++;
+            return null;
+        }
+        hits++;
+        Object[] stack = blocksByCapacity[k];
+        B block = (B) stack[--numberOfBlocks[k]];
+        stack[numberOfBlocks[k]] = null;
+        numberOfElements -= capacity;
+        block.setNumber(number);
+        return block;
+    }
+    
+    // Keeps block, which must be empty, for a later take. Returns false
+    // if the pool has no room for it, in which case it is dropped.
+    // Throws IllegalArgumentException if block is not empty.
+    // Target complexity: O(1)
+    public synchronized boolean offer(B block) {
+        if(block.size() != 0) {
+            throw new IllegalArgumentException();
+        }
+        int capacity = block.getCapacity();
+        int k = Integer.numberOfTrailingZeros(capacity);
+        if(numberOfBlocks[k] == maxBlocksPerCapacity || numberOfElements > maxElements - capacity) {
+            evictions++;
+            return false;
+        }
+        if(blocksByCapacity[k] == null) {
+            // Allocated once per capacity, the first time one is released.
+            blocksByCapacity[k] = new Object[maxBlocksPerCapacity];
+        }
+        blocksByCapacity[k][numberOfBlocks[k]++] = block;
+        numberOfElements += capacity;
+        return true;
+    }
+    
+    // Drops every pooled Block. Each counts as an eviction.
+    public synchronized void clear() {
+        for(int k = 0; k < blocksByCapacity.length; k++) {
+            if(blocksByCapacity[k] != null) {
+                evictions += numberOfBlocks[k];
+                Arrays.fill(blocksByCapacity[k], 0, numberOfBlocks[k], null);
+                numberOfBlocks[k] = 0;
+            }
+        }
+        numberOfElements = 0;
+    }
+    
+    // Returns the number of Blocks in the pool
+    public synchronized int size() {
+        int n = 0;
+        for(int k = 0; k < numberOfBlocks.length; k++) {
+            n += numberOfBlocks[k];
+        }
+        return n;
+    }
+    
+    // Returns the total capacity of the Blocks in the pool
+    public synchronized long getNumberOfElements() {
+        return numberOfElements;
+    }
+    
+    // Returns the number of takes answered with a pooled Block
+    public synchronized long getHits() {
+        return hits;
+    }
+    
+    // Returns the number of takes that found no Block
+    public synchronized long getMisses() {
+        return misses;
+    }
+    
+    // Returns the number of Blocks dropped instead of being kept
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+    
+    // Create a pretty representation of the pool's metrics.
+    // Example:
+    // BlockPool: blocks=3 elements=24 hits=10 misses=4 evictions=1
+    public synchronized String toString() {
+        return "BlockPool: blocks=" + size() + " elements=" + numberOfElements + " hits=" + hits
+               + " misses=" + misses + " evictions=" + evictions;
+    }
+}
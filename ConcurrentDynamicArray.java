@@ -0,0 +1,632 @@
+import java.lang.invoke.VarHandle;
+import java.util.AbstractList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+// A DynamicArray that many reader threads can use while it is being
+// written, without taking a lock.
+//
+// Blocks never move once created; only arrayOfBlocks is replaced, when
+// a move to a longer or shorter spine finishes. After every change the
+// writer publishes arrayOfBlocks and then the size through volatile
+// fields, and readers read the size first. The writer still changes the
+// published arrayOfBlocks in place, though: a remove and an add can
+// delete a Block and link a new, unfilled one at the same index before
+// the next publish. So every change also runs under version, which the
+// writer makes odd before it and even after it, and get checks that
+// version is even and unchanged around its read, retrying otherwise, as
+// a seqlock does. Removed elements are not cleared in place, since a
+// reader may still be reading them; they are overwritten by later adds
+// or dropped together with their Block. For the same reason deleted
+// Blocks are never put in a BlockPool.
+//
+// Writers are either a single thread that the caller guarantees (the
+// default), or any number of threads serialized on a lock. Readers never
+// lock in either mode. get, size, iterator, forEach and spliterator are
+// safe for readers, and so are the List methods that only read: contains,
+// containsAll, indexOf, lastIndexOf, equals, hashCode and toArray, which
+// read through get, and the subList and listIterator views. Every other
+// method, and set through a view, is for writers only.
+class ConcurrentDynamicArray<T> extends DynamicArray<T> {
+    protected volatile Object[] publishedArrayOfBlocks; // arrayOfBlocks as last published
+    protected volatile int publishedSize; // size as last published
+    protected final ReentrantLock writeLock; // serializes writers; null in single-writer mode
+    protected volatile int version; // odd while a writer changes the array
+    private int writeDepth; // number of nested lockWriters calls of the writer
+    
+    // Workhorse constructor. Creates a ConcurrentDynamicArray with a
+    // single writer thread.
+    ConcurrentDynamicArray( ) {
+        this(false);
+    }
+    
+    // Creates a ConcurrentDynamicArray. If multipleWriters is true, writers
+    // may call from any number of threads and are serialized on a lock.
+    ConcurrentDynamicArray(boolean multipleWriters) {
+        super(new RetainingBlock<T>(0, 1));
+        writeLock = multipleWriters ? new ReentrantLock() : null;
+        publish();
+    }
+    
+    // Creates an empty Block that keeps removed elements for readers.
+    protected Block<T> newBlock(int number, int capacity) {
+        return new RetainingBlock<T>(number, capacity);
+    }
+    
+    // Copies a Block shared with a snapshot. The copy is filled in its
+    // constructor, so a reader that finds it in the spine before the next
+    // publish still sees every element.
+    protected Block<T> copyBlock(Block<T> block) {
+        return new RetainingBlock<T>(block);
+    }
+    
+    // Returns an immutable view of the elements as they are now, which
+    // any thread may read. For writers only.
+    public DynamicArraySnapshot<T> snapshot() {
+        lockWriters();
+        try {
+            return super.snapshot();
+        } finally {
+            unlockWriters();
+        }
+    }
+    
+    // Makes the writer's changes visible to readers. arrayOfBlocks is
+    // published before the size, so a reader that reads the size first
+    // finds every Block below it.
+    protected void publish() {
+        publishedArrayOfBlocks = arrayOfBlocks;
+        publishedSize = size;
+    }
+    
+    // Returns the number of elements as last published. Safe for readers.
+    public int size() {
+        return publishedSize;
+    }
+    
+    @SuppressWarnings("unchecked")
+    // Returns the element at position i. Safe for readers, and never locks.
+    // It returns the element at i in a state that was published, never a
+    // value i did not hold: the read is kept only if version was even
+    // before it and is unchanged after it, and is retried otherwise. A get
+    // racing with the removal of position i therefore returns the removed
+    // element or throws as if i were out of bounds.
+    // Throws IndexOutOfBoundsException if i < 0 or i > size - 1.
+    // Target complexity: O(1) when no writer changes the array meanwhile
+    public T get(int i) {
+        while(true) {
+            int v = version;
+            if((v & 1) != 0) {
+                // A writer is in the middle of a change.
+                Thread.yield();
+                continue;
+            }
+            Objects.checkIndex(i, publishedSize);
+            Object[] blocks = publishedArrayOfBlocks;
+            int blockIndex = locateBlock(i);
+            T x = null;
+            boolean found = false;
+            try {
+                if(blockIndex < blocks.length && blocks[blockIndex] != null) {
+                    x = ((Block<T>) blocks[blockIndex]).getElement(locateElement(i));
+                    found = true;
+                }
+            } catch(RuntimeException e) {
+                // A Block linked by a change that started after version was
+                // read may not look constructed yet; version tells below.
+            }
+            // Keeps the reads above from moving after the read of version.
+            VarHandle.acquireFence();
+            if(found && version == v) {
+                return x;
+            }
+        }
+    }
+    
+    // Sets the value at position i to x, and returns the value it
+    // replaced. For writers only.
+    public T set(int index, T x) {
+        lockWriters();
+        try {
+            T old = super.set(index, x);
+            publish();
+            return old;
+        } finally {
+            unlockWriters();
+        }
+    }
+    
+    // Replaces every element x with operator.apply(x), in order. For
+    // writers only.
+    public void replaceAll(UnaryOperator<T> operator) {
+        lockWriters();
+        try {
+            super.replaceAll(operator);
+            publish();
+        } finally {
+            unlockWriters();
+        }
+    }
+    
+    // Replaces every element x with operator.apply(x), in parallel on
+    // pool. For writers only.
+    public void parallelReplaceAll(UnaryOperator<T> operator, ForkJoinPool pool) {
+        lockWriters();
+        try {
+            super.parallelReplaceAll(operator, pool);
+            publish();
+        } finally {
+            unlockWriters();
+        }
+    }
+    
+    // Not supported, for the same reason as insert.
+    public void sort(Comparator<? super T> comparator) {
+        throw new UnsupportedOperationException();
+    }
+    
+    // Not supported, for the same reason as insert.
+    public void parallelSort(Comparator<? super T> comparator, ForkJoinPool pool) {
+        throw new UnsupportedOperationException();
+    }
+    
+    // Adds x to the end. For writers only.
+    public boolean add(T x) {
+        lockWriters();
+        try {
+            super.add(x);
+            publish();
+            return true;
+        } finally {
+            unlockWriters();
+        }
+    }
+    
+    // Adds the elements of the array elements to the end. For writers only.
+    public boolean addAll(T[] elements) {
+        lockWriters();
+        try {
+            boolean changed = super.addAll(elements);
+            publish();
+            return changed;
+        } finally {
+            unlockWriters();
+        }
+    }
+    
+    // Adds the elements of c to the end. For writers only.
+    public boolean addAll(Collection<? extends T> c) {
+        lockWriters();
+        try {
+            boolean changed = super.addAll(c);
+            publish();
+            return changed;
+        } finally {
+            unlockWriters();
+        }
+    }
+    
+    // Adds the elements of other to the end. For writers only.
+    public boolean addAll(DynamicArray<? extends T> other) {
+        lockWriters();
+        try {
+            boolean changed = super.addAll(other);
+            publish();
+            return changed;
+        } finally {
+            unlockWriters();
+        }
+    }
+    
+    // Not supported. Moving elements between positions would let a reader
+    // find an element at the wrong index.
+    public void insert(int index, T x) {
+        throw new UnsupportedOperationException();
+    }
+    
+    // Not supported, for the same reason as insert.
+    public T delete(int index) {
+        throw new UnsupportedOperationException();
+    }
+    
+    // Not supported, for the same reason as insert.
+    public boolean addAll(int index, Collection<? extends T> c) {
+        throw new UnsupportedOperationException();
+    }
+    
+    // Not supported, for the same reason as insert. removeAll and
+    // retainAll go through removeIf.
+    public boolean removeIf(Predicate<? super T> filter) {
+        throw new UnsupportedOperationException();
+    }
+    
+    // Removes the last element. For writers only.
+    // The smaller size is published first so that no reader starts
+    // reading the element while its Block is being deleted.
+    public void remove() {
+        lockWriters();
+        try {
+            if(size == 0) {
+                throw new IllegalStateException();
+            }
+            publishedSize = size - 1;
+            super.remove();
+            publish();
+        } finally {
+            unlockWriters();
+        }
+    }
+    
+    // Removes the last n elements. For writers only.
+    public void removeLast(int n) {
+        lockWriters();
+        try {
+            if(n < 0 || n > size) {
+                throw new IllegalArgumentException();
+            }
+            publishedSize = size - n;
+            super.removeLast(n);
+            publish();
+        } finally {
+            unlockWriters();
+        }
+    }
+    
+    // Removes every element. For writers only.
+    public void clear() {
+        lockWriters();
+        try {
+            publishedSize = 0;
+            super.clear();
+            publish();
+        } finally {
+            unlockWriters();
+        }
+    }
+    
+    // Returns an iterator over the elements at positions 0 to size - 1,
+    // where size is read when the iterator is created. Safe for readers.
+    // The iterator is weakly consistent: it never throws
+    // ConcurrentModificationException, and it stops early if elements
+    // are removed while it runs.
+    public Iterator<T> iterator() {
+        return listIterator();
+    }
+    
+    // Performs action on every element, as iterator() would. Safe for
+    // readers.
+    public void forEach(Consumer<? super T> action) {
+        Iterator<T> iterator = iterator();
+        while(iterator.hasNext()) {
+            action.accept(iterator.next());
+        }
+    }
+    
+    // Returns a weakly consistent Spliterator over the elements. Safe for
+    // readers. It walks iterator(), which stops early if elements are
+    // removed, so it does not report an exact size.
+    public Spliterator<T> spliterator() {
+        return Spliterators.spliteratorUnknownSize(iterator(), Spliterator.ORDERED);
+    }
+    
+    // Returns a view of the positions from (inclusive) to to (exclusive)
+    // that reads through get, so it is safe for readers. Its set goes
+    // through set, and is for writers only; it cannot change the size.
+    // Positions removed from the array are dropped from the end of the
+    // view.
+    // Throws IndexOutOfBoundsException if from < 0, to > size or
+    // from > to, as List.subList does.
+    // Target complexity: O(1)
+    public List<T> subList(int from, int to) {
+        if(from < 0 || to > publishedSize || from > to) {
+            throw new IndexOutOfBoundsException();
+        }
+        return new ReaderSubList(from, to);
+    }
+    
+    // Returns a list iterator over the elements, as subList(0, size())
+    // would. Safe for readers; its set is for writers only, and it does
+    // not support add or remove.
+    public ListIterator<T> listIterator() {
+        return listIterator(0);
+    }
+    
+    // Returns a list iterator over the elements that starts at position
+    // index, as subList(0, size()) would.
+    // Throws IndexOutOfBoundsException if index < 0 or index > size,
+    // as List.listIterator does.
+    public ListIterator<T> listIterator(int index) {
+        int n = publishedSize;
+        if(index < 0 || index > n) {
+            throw new IndexOutOfBoundsException();
+        }
+        return new ReaderSubList(0, n).listIterator(index);
+    }
+    
+    // Returns the position of the first element equal to o, or -1.
+    // Safe for readers.
+    // Target complexity: O(n)
+    public int indexOf(Object o) {
+        return new ReaderSubList(0, publishedSize).indexOf(o);
+    }
+    
+    // Returns the position of the first element equal to o, or -1,
+    // searching in this thread as indexOf(o) does; pool is not used.
+    // Safe for readers.
+    // Target complexity: O(n)
+    public int indexOf(Object o, ForkJoinPool pool) {
+        return indexOf(o);
+    }
+    
+    // Returns the position of the last element equal to o, or -1.
+    // Safe for readers.
+    // Target complexity: O(n)
+    public int lastIndexOf(Object o) {
+        return new ReaderSubList(0, publishedSize).lastIndexOf(o);
+    }
+    
+    // Returns true if an element is equal to o. Safe for readers.
+    // Target complexity: O(n)
+    public boolean contains(Object o) {
+        return indexOf(o) >= 0;
+    }
+    
+    // Returns true if every element of c is in the array. Safe for readers.
+    // Target complexity: O(n * size of c)
+    public boolean containsAll(Collection<?> c) {
+        return new ReaderSubList(0, publishedSize).containsAll(c);
+    }
+    
+    // Returns true if o is a List with equal elements in the same order.
+    // Safe for readers.
+    // Target complexity: O(n)
+    public boolean equals(Object o) {
+        return o == this || new ReaderSubList(0, publishedSize).equals(o);
+    }
+    
+    // Returns the hash code List specifies. Safe for readers.
+    // Target complexity: O(n)
+    public int hashCode() {
+        return new ReaderSubList(0, publishedSize).hashCode();
+    }
+    
+    // Returns a new array holding the elements in order. Safe for readers.
+    // Target complexity: O(n)
+    public Object[] toArray() {
+        return new ReaderSubList(0, publishedSize).toArray();
+    }
+    
+    // Returns the elements in order in a, or in a new array of the same
+    // type if a is too short. Safe for readers.
+    // Target complexity: O(n)
+    public <E> E[] toArray(E[] a) {
+        return new ReaderSubList(0, publishedSize).toArray(a);
+    }
+    
+    // Lets the calling writer change the array: takes writeLock, if any,
+    // and makes version odd, unless the writer already holds it.
+    private void lockWriters() {
+        if(writeLock != null) {
+            writeLock.lock();
+        }
+        if(writeDepth++ == 0) {
+            version++;
+            // Keeps the changes that follow from moving before it.
+            VarHandle.releaseFence();
+        }
+    }
+    
+    // Ends what lockWriters started: makes version even again once the
+    // outermost call ends, then releases writeLock, if any.
+    private void unlockWriters() {
+        if(--writeDepth == 0) {
+            version++;
+        }
+        if(writeLock != null) {
+            writeLock.unlock();
+        }
+    }
+    
+    // View returned by subList and used by the methods that only read.
+    // Every position is read with get and written with set.
+    private class ReaderSubList extends AbstractList<T> implements RandomAccess {
+        private final int from; // position in the array of position 0 of the view
+        private final int to; // position in the array after the last one of the view
+        
+        ReaderSubList(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+        
+        public T get(int i) {
+            if(i < 0 || i >= size()) {
+                throw new IndexOutOfBoundsException();
+            }
+            // A position removed since size() was read throws
+            // IndexOutOfBoundsException too.
+            return ConcurrentDynamicArray.this.get(from + i);
+        }
+        
+        public T set(int i, T x) {
+            if(i < 0 || i >= size()) {
+                throw new IndexOutOfBoundsException();
+            }
+            return ConcurrentDynamicArray.this.set(from + i, x);
+        }
+        
+        // Returns the number of positions of the view still in the array.
+        public int size() {
+            return Math.max(0, Math.min(to, publishedSize) - from);
+        }
+        
+        public Iterator<T> iterator() {
+            return new ReaderListIterator(this, 0);
+        }
+        
+        public ListIterator<T> listIterator(int index) {
+            if(index < 0 || index > size()) {
+                throw new IndexOutOfBoundsException();
+            }
+            return new ReaderListIterator(this, index);
+        }
+        
+        // Searches back from the end as AbstractList does, but without
+        // listIterator(size()), which throws if elements are removed
+        // between the two calls.
+        public int lastIndexOf(Object o) {
+            ListIterator<T> iterator = new ReaderListIterator(this, size());
+            while(iterator.hasPrevious()) {
+                if(Objects.equals(o, iterator.previous())) {
+                    return iterator.nextIndex();
+                }
+            }
+            return -1;
+        }
+        
+        public List<T> subList(int from, int to) {
+            if(from < 0 || to > size() || from > to) {
+                throw new IndexOutOfBoundsException();
+            }
+            return new ReaderSubList(this.from + from, this.from + to);
+        }
+    }
+    
+    // List iterator of a ReaderSubList, and so of iterator() and
+    // listIterator(). hasNext and hasPrevious read the element they
+    // promise, so next and previous never fail after them even if the
+    // element is removed in between. The iterator is weakly consistent:
+    // going forward it stops where elements were removed, and going back
+    // it skips to the last position still in the view.
+    private class ReaderListIterator implements ListIterator<T> {
+        private final ReaderSubList view; // the view iterated over
+        private int cursor; // position of the next element in the view
+        private int lastReturned = -1; // position of the element last returned, or -1
+        private boolean hasNextElement; // true if nextElement was read at cursor
+        private T nextElement;
+        private boolean hasPreviousElement; // true if previousElement was read at cursor - 1
+        private T previousElement;
+        
+        ReaderListIterator(ReaderSubList view, int index) {
+            this.view = view;
+            cursor = index;
+        }
+        
+        public boolean hasNext() {
+            if(!hasNextElement && cursor < view.size()) {
+                try {
+                    nextElement = view.get(cursor);
+                    hasNextElement = true;
+                } catch(IndexOutOfBoundsException e) {
+                    // Removed since size() was read.
+                }
+            }
+            return hasNextElement;
+        }
+        
+        public T next() {
+            if(!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            T x = nextElement;
+            moveTo(cursor + 1);
+            lastReturned = cursor - 1;
+            return x;
+        }
+        
+        public boolean hasPrevious() {
+            while(!hasPreviousElement && cursor > 0) {
+                try {
+                    previousElement = view.get(cursor - 1);
+                    hasPreviousElement = true;
+                } catch(IndexOutOfBoundsException e) {
+                    // Removed; go on from the end of what is left.
+                    moveTo(Math.min(cursor - 1, view.size()));
+                }
+            }
+            return hasPreviousElement;
+        }
+        
+        public T previous() {
+            if(!hasPrevious()) {
+                throw new NoSuchElementException();
+            }
+            T x = previousElement;
+            moveTo(cursor - 1);
+            lastReturned = cursor;
+            return x;
+        }
+        
+        public int nextIndex() {
+            return cursor;
+        }
+        
+        public int previousIndex() {
+            return cursor - 1;
+        }
+        
+        // Sets the element last returned to x, through set. For writers
+        // only.
+        public void set(T x) {
+            if(lastReturned < 0) {
+                throw new IllegalStateException();
+            }
+            view.set(lastReturned, x);
+        }
+        
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+        
+        public void add(T x) {
+            throw new UnsupportedOperationException();
+        }
+        
+        // Moves the cursor to index, dropping the elements read ahead.
+        private void moveTo(int index) {
+            cursor = index;
+            hasNextElement = false;
+            hasPreviousElement = false;
+            nextElement = null;
+            previousElement = null;
+            lastReturned = -1;
+        }
+    }
+    
+    // A Block whose removed elements stay in place until they are
+    // overwritten, so that a reader racing with remove never finds a
+    // cleared element.
+    private static class RetainingBlock<T> extends Block<T> {
+        
+        RetainingBlock(int number, int capacity) {
+            super(number, capacity);
+        }
+        
+        RetainingBlock(Block<T> other) {
+            super(other);
+        }
+        
+        // Decrease the space allocated for storing elements. Decreases size.
+        public void shrink() {
+            size--;
+        }
+        
+        // Decrease the space allocated for storing elements by n.
+        // Decreases size by n.
+        public void shrink(int n) {
+            size -= n;
+        }
+    }
+}
@@ -0,0 +1,449 @@
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+// Runnable stress test of ConcurrentDynamicArray, in the style of
+// jcstress: an actor that writes and an actor that reads run against each
+// other over many fresh arrays, and every outcome the reader observes is
+// counted and checked against the outcomes the contract allows. Then
+// readers check long runs of writes, writers race each other under the
+// lock, and the views are checked on their own.
+// The element at every position p is always p, so a reader that sees any
+// other value, or null, has seen torn state.
+// Throws AssertionError on the first forbidden outcome.
+public class ConcurrentDynamicArrayTest {
+    static final int BATCH = 1024; // arrays raced over per round
+    static final int ROUNDS = 20;
+    
+    public static void main(String[] args) throws InterruptedException {
+        for(int size : boundarySizes()) {
+            testAddAgainstGet(size);
+            testRemoveAgainstGet(size);
+        }
+        testRemoveAndAddAtBlockBoundary();
+        testReadersDuringWrites(false);
+        testReadersDuringWrites(true);
+        testMultipleWriters();
+        testViews();
+        System.out.println("ConcurrentDynamicArrayTest: ok");
+    }
+    
+    static void check(boolean condition, String message) {
+        if(!condition) {
+            throw new AssertionError(message);
+        }
+    }
+    
+    // Sizes just before a Block, a SuperBlock or a spine is full, where an
+    // add or remove restructures the array.
+    static int[] boundarySizes() {
+        return new int[] {0, 1, 2, 3, 4, 7, 8, 15, 16, 31, 63, 64, 255, 1023, 1024};
+    }
+    
+    // Returns a new array of size elements, the element at p being p.
+    static ConcurrentDynamicArray<Integer> filled(int size, boolean multipleWriters) {
+        ConcurrentDynamicArray<Integer> array = new ConcurrentDynamicArray<Integer>(multipleWriters);
+        for(int i = 0; i < size; i++) {
+            array.add(i);
+        }
+        return array;
+    }
+    
+    // Reads the last element as a reader would: the size, then get.
+    // Returns the outcome as "size=value", or "size=removed" if the
+    // element was removed in between.
+    static String readLast(ConcurrentDynamicArray<Integer> array) {
+        int n = array.size();
+        if(n == 0) {
+            return "0=none";
+        }
+        try {
+            return n + "=" + array.get(n - 1);
+        } catch(IndexOutOfBoundsException e) {
+            return n + "=removed";
+        }
+    }
+    
+    // Actor 1 adds size to an array of size elements, while actor 2
+    // reads the last element. Allowed: the state before the add, or after.
+    static void testAddAgainstGet(int size) throws InterruptedException {
+        Map<String, Integer> outcomes = race(size, array -> array.add(size));
+        for(String outcome : outcomes.keySet()) {
+            boolean before = size == 0 ? outcome.equals("0=none") : outcome.equals(size + "=" + (size - 1));
+            boolean after = outcome.equals((size + 1) + "=" + size);
+            check(before || after, "add to " + size + ": forbidden outcome " + outcome + " in " + outcomes);
+        }
+    }
+    
+    // Actor 1 removes the last element of an array of size elements,
+    // while actor 2 reads the last element. Allowed: the state before the
+    // remove, after it, or the element gone between the size and get.
+    static void testRemoveAgainstGet(int size) throws InterruptedException {
+        if(size == 0) {
+            return;
+        }
+        Map<String, Integer> outcomes = race(size, array -> array.remove());
+        for(String outcome : outcomes.keySet()) {
+            boolean before = outcome.equals(size + "=" + (size - 1));
+            boolean after = size == 1 ? outcome.equals("0=none") : outcome.equals((size - 1) + "=" + (size - 2));
+            boolean removed = outcome.equals(size + "=removed");
+            check(before || after || removed, "remove from " + size + ": forbidden outcome " + outcome + " in " + outcomes);
+        }
+    }
+    
+    interface Actor {
+        void act(ConcurrentDynamicArray<Integer> array);
+    }
+    
+    // Runs writer and readLast against each other on ROUNDS batches of
+    // BATCH fresh arrays of size elements. Both threads walk the batch in
+    // step, without waiting for each other within it, as jcstress does.
+    // Returns how many times each outcome was observed.
+    static Map<String, Integer> race(int size, Actor writer) throws InterruptedException {
+        Map<String, Integer> outcomes = new TreeMap<String, Integer>();
+        for(int round = 0; round < ROUNDS; round++) {
+            @SuppressWarnings({"unchecked", "rawtypes"})
+            ConcurrentDynamicArray<Integer>[] arrays = new ConcurrentDynamicArray[BATCH];
+            for(int i = 0; i < BATCH; i++) {
+                arrays[i] = filled(size, false);
+            }
+            String[] results = new String[BATCH];
+            AtomicInteger ready = new AtomicInteger();
+            Thread writerThread = new Thread(() -> {
+                ready.incrementAndGet();
+                while(ready.get() < 2) {
+                    Thread.onSpinWait();
+                }
+                for(int i = 0; i < BATCH; i++) {
+                    writer.act(arrays[i]);
+                }
+            });
+            writerThread.start();
+            ready.incrementAndGet();
+            while(ready.get() < 2) {
+                Thread.onSpinWait();
+            }
+            for(int i = 0; i < BATCH; i++) {
+                results[i] = readLast(arrays[i]);
+            }
+            writerThread.join();
+            for(String result : results) {
+                outcomes.merge(result, 1, Integer::sum);
+            }
+        }
+        return outcomes;
+    }
+    
+    // The writer removes and adds back the elements around the start of a
+    // Block again and again, so Blocks are deleted and new, unfilled ones
+    // linked at the same index of the spine, while readers get positions
+    // just below sizes they read earlier. A get may throw for a position
+    // removed since, but must never return anything other than p. The
+    // window for that is a few instructions in get, so readers rarely hit
+    // it on few cores; the array also checks that the spine only ever
+    // changes while version is odd, which is what keeps get out of it.
+    static void testRemoveAndAddAtBlockBoundary() throws InterruptedException {
+        int blockIndex = AbstractDynamicArray.locateBlock(1000) + 1;
+        int first = AbstractDynamicArray.firstPositionOf(blockIndex);
+        // Emptying the Block before the one at first as well leaves two
+        // empty Blocks, so the one at first is deleted.
+        int removed = first - AbstractDynamicArray.firstPositionOf(blockIndex - 1) + 2;
+        ConcurrentDynamicArray<Integer> array = new SpineCheckingArray();
+        for(int i = 0; i < first + 2; i++) {
+            array.add(i);
+        }
+        AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        AtomicInteger running = new AtomicInteger(1);
+        Thread[] readers = new Thread[3];
+        for(int r = 0; r < readers.length; r++) {
+            readers[r] = new Thread(() -> {
+                try {
+                    while(running.get() > 0) {
+                        // Reads the positions just below a size over and
+                        // over, so gets overlap the writer's changes.
+                        int n = array.size();
+                        for(int i = 0; i < 10000; i++) {
+                            int p = n - 1 - i % 4;
+                            try {
+                                Integer x = array.get(p);
+                                check(x != null && x == p, "get " + p + ": " + x);
+                            } catch(IndexOutOfBoundsException e) {
+                                // removed since the size was read
+                            }
+                        }
+                    }
+                } catch(Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            });
+            readers[r].setDaemon(true);
+            readers[r].start();
+        }
+        long end = System.nanoTime() + 2_000_000_000L;
+        try {
+            while(System.nanoTime() < end && failure.get() == null) {
+                for(int i = 0; i < 1000; i++) {
+                    for(int j = 0; j < removed; j++) {
+                        array.remove();
+                    }
+                    for(int j = 0; j < removed; j++) {
+                        array.add(array.size());
+                    }
+                }
+            }
+        } finally {
+            running.set(0);
+            for(Thread reader : readers) {
+                reader.join(10000);
+            }
+        }
+        for(Thread reader : readers) {
+            check(!reader.isAlive(), "reader stuck in get");
+        }
+        if(failure.get() != null) {
+            throw new AssertionError("reader failed", failure.get());
+        }
+    }
+    
+    // A ConcurrentDynamicArray that fails if a Block is stored in its spine
+    // while version is even.
+    static class SpineCheckingArray extends ConcurrentDynamicArray<Integer> {
+        protected void replaceBlock(int index, AbstractBlock block) {
+            check(version % 2 == 1, "spine changed at " + index + " with version " + version);
+            super.replaceBlock(index, block);
+        }
+    }
+    
+    // One writer grows the array to random sizes and shrinks it back, and
+    // rewrites elements through set, subList and listIterator, while
+    // readers check every way of reading it. With multipleWriters, every
+    // write goes through the lock.
+    static void testReadersDuringWrites(boolean multipleWriters) throws InterruptedException {
+        ConcurrentDynamicArray<Integer> array = new ConcurrentDynamicArray<Integer>(multipleWriters);
+        AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        AtomicInteger running = new AtomicInteger(1);
+        AtomicInteger shrinks = new AtomicInteger(); // odd while the writer shrinks the array
+        Thread[] readers = new Thread[3];
+        for(int r = 0; r < readers.length; r++) {
+            long seed = r;
+            readers[r] = new Thread(() -> {
+                try {
+                    Random random = new Random(seed);
+                    while(running.get() > 0) {
+                        readEverything(array, shrinks, random);
+                    }
+                } catch(Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            });
+            readers[r].start();
+        }
+        Random random = new Random(42);
+        for(int round = 0; round < 100 && failure.get() == null; round++) {
+            int target = random.nextInt(1 << 17);
+            while(array.size() < target) {
+                if(random.nextInt(8) == 0) {
+                    Integer[] elements = new Integer[random.nextInt(100)];
+                    for(int i = 0; i < elements.length; i++) {
+                        elements[i] = array.size() + i;
+                    }
+                    array.addAll(elements);
+                } else {
+                    array.add(array.size());
+                }
+            }
+            for(int i = 0; i < 100 && array.size() > 0; i++) {
+                int p = random.nextInt(array.size());
+                array.set(p, p);
+                array.subList(p, p + 1).set(0, p);
+                ListIterator<Integer> it = array.listIterator(p);
+                it.next();
+                it.set(p);
+            }
+            shrinks.incrementAndGet();
+            while(array.size() > target / 3) {
+                if(random.nextInt(8) == 0) {
+                    array.removeLast(Math.min(array.size(), random.nextInt(100)));
+                } else {
+                    array.remove();
+                }
+            }
+            shrinks.incrementAndGet();
+        }
+        running.set(0);
+        for(Thread reader : readers) {
+            reader.join();
+        }
+        if(failure.get() != null) {
+            throw new AssertionError("reader failed", failure.get());
+        }
+    }
+    
+    // Reads array in every way that is safe for readers. The element at
+    // every position p must be p while it is there. A position may only be
+    // missing if the writer shrank the array meanwhile, as shrinks shows.
+    static void readEverything(ConcurrentDynamicArray<Integer> array, AtomicInteger shrinks, Random random) {
+        int before = shrinks.get();
+        int n = array.size();
+        if(n == 0) {
+            return;
+        }
+        int p = random.nextInt(n);
+        try {
+            check(array.get(p) == p, "get " + p);
+        } catch(IndexOutOfBoundsException e) {
+            check(shrunk(shrinks, before), "get " + p + " threw below the size");
+        }
+        int expected = 0;
+        Iterator<Integer> it = array.iterator();
+        for(int i = 0; i < 64 && it.hasNext(); i++) {
+            Integer x = it.next();
+            check(x != null && x == expected++, "iterator at " + (expected - 1) + ": " + x);
+        }
+        int found = array.indexOf(p);
+        check(found == p || (found == -1 && shrunk(shrinks, before)), "indexOf " + p + ": " + found);
+        found = array.lastIndexOf(p);
+        check(found == p || (found == -1 && shrunk(shrinks, before)), "lastIndexOf " + p + ": " + found);
+        try {
+            ListIterator<Integer> back = array.listIterator(n);
+            for(int i = 0; i < 64 && back.hasPrevious(); i++) {
+                int q = back.previousIndex();
+                Integer x = back.previous();
+                check(x != null && x == q, "listIterator previous at " + q + ": " + x);
+            }
+        } catch(IndexOutOfBoundsException e) {
+            check(shrunk(shrinks, before), "listIterator " + n + " threw below the size");
+        }
+        int[] count = new int[1];
+        array.forEach(x -> check(x == count[0]++, "forEach at " + (count[0] - 1)));
+        try {
+            List<Integer> view = array.subList(p, n);
+            check(view.isEmpty() || view.get(0) == p, "subList get " + p);
+        } catch(IndexOutOfBoundsException e) {
+            check(shrunk(shrinks, before), "subList " + p + " threw below the size");
+        }
+        if(random.nextInt(64) == 0) {
+            Object[] elements = array.toArray();
+            for(int i = 0; i < elements.length; i++) {
+                check(elements[i] != null && (Integer) elements[i] == i, "toArray at " + i);
+            }
+        }
+        if(random.nextInt(64) == 0) {
+            // A stream must cope with elements removed while it runs.
+            Object[] elements = array.stream().toArray();
+            for(int i = 0; i < elements.length; i++) {
+                check(elements[i] != null && (Integer) elements[i] == i, "stream().toArray at " + i);
+            }
+        }
+    }
+    
+    // Returns true if the writer has shrunk the array since shrinks was
+    // before, or is shrinking it now.
+    static boolean shrunk(AtomicInteger shrinks, int before) {
+        return before % 2 == 1 || shrinks.get() != before;
+    }
+    
+    // Writers add distinct values from several threads while readers read.
+    // No value may be lost or added twice, and the values of each writer
+    // keep its order.
+    static void testMultipleWriters() throws InterruptedException {
+        int writers = 4;
+        int perWriter = 50000;
+        ConcurrentDynamicArray<Integer> array = new ConcurrentDynamicArray<Integer>(true);
+        AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        AtomicInteger running = new AtomicInteger(writers);
+        Thread reader = new Thread(() -> {
+            try {
+                while(running.get() > 0) {
+                    int n = array.size();
+                    for(int i = Math.max(0, n - 100); i < n; i++) {
+                        check(array.get(i) != null, "null at " + i);
+                    }
+                }
+            } catch(Throwable e) {
+                failure.compareAndSet(null, e);
+            }
+        });
+        reader.start();
+        Thread[] threads = new Thread[writers];
+        for(int w = 0; w < writers; w++) {
+            int base = w * perWriter;
+            threads[w] = new Thread(() -> {
+                for(int i = 0; i < perWriter; i++) {
+                    array.add(base + i);
+                }
+                running.decrementAndGet();
+            });
+            threads[w].start();
+        }
+        for(Thread thread : threads) {
+            thread.join();
+        }
+        reader.join();
+        if(failure.get() != null) {
+            throw new AssertionError("reader failed", failure.get());
+        }
+        check(array.size() == writers * perWriter, "size " + array.size());
+        int[] last = new int[writers];
+        Arrays.fill(last, -1);
+        boolean[] seen = new boolean[writers * perWriter];
+        for(Integer x : array) {
+            check(!seen[x], "added twice: " + x);
+            seen[x] = true;
+            int w = x / perWriter;
+            check(x > last[w], "order of writer " + w);
+            last[w] = x;
+        }
+    }
+    
+    // The views read and write through the array, cannot change its size,
+    // and follow the List contract for bad positions.
+    static void testViews() {
+        ConcurrentDynamicArray<Integer> array = filled(100, true);
+        check(!array.spliterator().hasCharacteristics(Spliterator.SIZED), "spliterator claims an exact size");
+        List<Integer> view = array.subList(10, 20);
+        check(view.size() == 10 && view.get(0) == 10, "subList");
+        check(view.set(0, -10) == 10 && array.get(10) == -10, "subList set");
+        expectUnsupported(() -> view.add(1));
+        expectUnsupported(() -> view.remove(0));
+        expectOutOfBounds(() -> view.get(10));
+        expectOutOfBounds(() -> array.subList(0, 101));
+        ListIterator<Integer> it = array.listIterator(10);
+        check(it.next() == -10, "listIterator");
+        it.set(10);
+        check(array.get(10) == 10, "listIterator set");
+        expectUnsupported(() -> it.remove());
+        expectUnsupported(() -> it.add(1));
+        expectOutOfBounds(() -> array.listIterator(101));
+        check(array.indexOf(42) == 42 && array.lastIndexOf(42) == 42 && array.contains(99) && !array.contains(100), "indexOf");
+        check(array.equals(filled(100, false)) && array.hashCode() == filled(100, false).hashCode(), "equals");
+        array.removeLast(85);
+        check(view.size() == 5, "subList after remove");
+        expectOutOfBounds(() -> view.get(5));
+    }
+    
+    static void expectUnsupported(Runnable action) {
+        try {
+            action.run();
+        } catch(UnsupportedOperationException e) {
+            return;
+        }
+        throw new AssertionError("UnsupportedOperationException expected");
+    }
+    
+    static void expectOutOfBounds(Runnable action) {
+        try {
+            action.run();
+        } catch(IndexOutOfBoundsException e) {
+            return;
+        }
+        throw new AssertionError("IndexOutOfBoundsException expected");
+    }
+}
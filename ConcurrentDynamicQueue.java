@@ -0,0 +1,174 @@
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// A lock-free queue for any number of producer and consumer threads.
+//
+// Elements are kept in a chain of Segments, each an array of slots like
+// a Block. Producers claim a slot in the tail Segment with an atomic
+// counter and consumers advance a head counter in the head Segment, so
+// no element is ever copied and there is no bulk reversal. A new Segment
+// gets the capacity DynamicArray would give the Block holding element n,
+// where n is the current size of the queue, so the space not holding
+// elements stays O(sqrt n). Drained Segments are simply dropped.
+//
+// null elements are not allowed.
+public class ConcurrentDynamicQueue<T> {
+    // Smallest Segment capacity, so that a nearly empty queue does not
+    // allocate a Segment for every element.
+    protected static final int MINIMUM_CAPACITY = 32;
+    
+    // Put in a slot by a consumer that claimed it before its producer
+    // stored the element; the producer then claims another slot.
+    private static final Object TAKEN = new Object();
+    
+    // Number of times a consumer re-reads a claimed empty slot before
+    // giving up on it.
+    private static final int SPINS = 64;
+    
+    protected final AtomicReference<Segment> head; // Segment consumers take from
+    protected final AtomicReference<Segment> tail; // Segment producers add to
+    
+    // Workhorse constructor. Initialize variables.
+    public ConcurrentDynamicQueue() {
+        Segment segment = new Segment(0, MINIMUM_CAPACITY, null);
+        head = new AtomicReference<Segment>(segment);
+        tail = new AtomicReference<Segment>(segment);
+    }
+    
+    // Adds x to the rear of the queue.
+    // Throws NullPointerException if x is null.
+    // Target complexity: O(1)
+    public void enqueue(T x) {
+        if(x == null) {
+            throw new NullPointerException();
+        }
+        while(true) {
+            Segment segment = tail.get();
+            int i = segment.enqueueIndex.getAndIncrement();
+            if(i < segment.capacity) {
+                if(segment.slots.compareAndSet(i, null, x)) {
+                    return;
+                }
+                // A consumer gave up on slot i; claim another one.
+                continue;
+            }
+            // The tail Segment is full; append a Segment holding x, or
+            // help move tail to the one another producer appended.
+            Segment next = segment.next.get();
+            if(next == null) {
+                Segment newSegment = new Segment(segment.first + segment.capacity, capacityFor(size()), x);
+                if(segment.next.compareAndSet(null, newSegment)) {
+                    tail.compareAndSet(segment, newSegment);
+                    return;
+                }
+                next = segment.next.get();
+            }
+            tail.compareAndSet(segment, next);
+        }
+    }
+    
+    // Removes and returns the element at the front of the queue
+    // Throws NoSuchElementException if this queue is empty.
+    // Target complexity: O(1)
+    public T dequeue() {
+        T x = poll();
+        if(x == null) {
+            throw new NoSuchElementException();
+        }
+        return x;
+    }
+    
+    @SuppressWarnings("unchecked")
+    // Removes and returns the element at the front of the queue, or
+    // returns null if this queue is empty.
+    // Target complexity: O(1)
+    public T poll() {
+        while(true) {
+            Segment segment = head.get();
+            int i = segment.dequeueIndex.get();
+            if(i >= segment.capacity) {
+                // The head Segment is drained; move on to the next one.
+                Segment next = segment.next.get();
+                if(next == null) {
+                    return null;
+                }
+                head.compareAndSet(segment, next);
+                continue;
+            }
+            if(i >= segment.enqueueIndex.get()) {
+                // No producer has claimed slot i yet.
+                return null;
+            }
+            if(!segment.dequeueIndex.compareAndSet(i, i + 1)) {
+                continue;
+            }
+            // Slot i is ours. Its producer may not have stored the element
+            // yet; wait briefly, then take the slot away from it.
+            Object x = segment.slots.get(i);
+            for(int spin = 0; x == null && spin < SPINS; spin++) {
+                Thread.onSpinWait();
+                x = segment.slots.get(i);
+            }
+            if(x == null) {
+                x = segment.slots.getAndSet(i, TAKEN);
+            } else {
+                segment.slots.lazySet(i, TAKEN);
+            }
+            if(x != null) {
+                return (T) x;
+            }
+        }
+    }
+    
+    // Returns true if the queue is empty
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+    
+    // Returns the number of elements in the queue. The value is exact
+    // when no thread is adding or removing elements and an estimate
+    // otherwise.
+    public int size() {
+        Segment headSegment = head.get();
+        Segment tailSegment = tail.get();
+        long dequeued = headSegment.first + Math.min(headSegment.dequeueIndex.get(), headSegment.capacity);
+        long enqueued = tailSegment.first + Math.min(tailSegment.enqueueIndex.get(), tailSegment.capacity);
+        return (int) Math.max(0, Math.min(enqueued - dequeued, Integer.MAX_VALUE));
+    }
+    
+    // Returns the capacity of the Block DynamicArray uses for element n,
+    // which is 2^ceil(k/2) where k = floor(log2 (n + 1)), but at least
+    // MINIMUM_CAPACITY.
+    protected static int capacityFor(int n) {
+        int k = AbstractDynamicArray.floorLog2(n + 1);
+        return Math.max(MINIMUM_CAPACITY, 1 << ((k + 1) >> 1));
+    }
+    
+    // A fixed-size array of slots in the chain of Segments.
+    protected static class Segment {
+        // Position of slot 0 among all the slots ever created
+        protected final long first;
+        protected final int capacity;
+        protected final AtomicReferenceArray<Object> slots;
+        // Next slot to be claimed by a producer; may exceed capacity
+        protected final AtomicInteger enqueueIndex;
+        // Next slot to be claimed by a consumer
+        protected final AtomicInteger dequeueIndex = new AtomicInteger();
+        protected final AtomicReference<Segment> next = new AtomicReference<Segment>();
+        
+        // Creates a Segment; if x is not null it is stored in slot 0.
+        Segment(long first, int capacity, Object x) {
+            this.first = first;
+            this.capacity = capacity;
+            this.slots = new AtomicReferenceArray<Object>(capacity);
+            if(x != null) {
+                slots.set(0, x);
+                enqueueIndex = new AtomicInteger(1);
+            } else {
+                enqueueIndex = new AtomicInteger();
+            }
+        }
+    }
+}
@@ -0,0 +1,122 @@
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+// Runnable multi-producer/multi-consumer test of ConcurrentDynamicQueue.
+// PRODUCERS threads enqueue ELEMENTS numbered elements between them while
+// CONSUMERS threads dequeue them, RUNS times over. No element may be
+// lost or dequeued twice, and every consumer must see the elements of
+// each producer in the order they were enqueued.
+// Throws AssertionError on the first difference.
+public class ConcurrentDynamicQueueTest {
+    static final int PRODUCERS = 4;
+    static final int CONSUMERS = 4;
+    static final int ELEMENTS = 1200000; // a multiple of PRODUCERS
+    static final int RUNS = 5;
+    
+    public static void main(String[] args) throws InterruptedException {
+        testSingleThread();
+        for(int run = 0; run < RUNS; run++) {
+            testProducersAndConsumers();
+        }
+        System.out.println("ConcurrentDynamicQueueTest: ok");
+    }
+    
+    static void check(boolean condition, String message) {
+        if(!condition) {
+            throw new AssertionError(message);
+        }
+    }
+    
+    // FIFO order, size and the empty queue, across many Segments.
+    static void testSingleThread() {
+        ConcurrentDynamicQueue<Integer> queue = new ConcurrentDynamicQueue<Integer>();
+        check(queue.isEmpty() && queue.poll() == null, "new queue not empty");
+        try {
+            queue.dequeue();
+            throw new AssertionError("dequeue of an empty queue");
+        } catch(NoSuchElementException e) {
+            // as it should be
+        }
+        int next = 0;
+        int added = 0;
+        for(int round = 1; round <= 200; round++) {
+            for(int i = 0; i < round * 50; i++) {
+                queue.enqueue(added++);
+            }
+            for(int i = 0; i < round * 30; i++) {
+                check(queue.dequeue() == next++, "order");
+            }
+            check(queue.size() == added - next, "size " + queue.size() + " instead of " + (added - next));
+        }
+        while(!queue.isEmpty()) {
+            check(queue.poll() == next++, "order while draining");
+        }
+        check(next == added && queue.poll() == null, "elements lost");
+    }
+    
+    // Producer p enqueues p, p + PRODUCERS, p + 2 * PRODUCERS and so on, so
+    // the elements of a producer increase. Each consumer keeps the last
+    // element it saw of each producer, and marks what it took in its own
+    // table; the tables are merged once every thread has finished.
+    static void testProducersAndConsumers() throws InterruptedException {
+        ConcurrentDynamicQueue<Integer> queue = new ConcurrentDynamicQueue<Integer>();
+        AtomicInteger dequeued = new AtomicInteger();
+        AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        boolean[][] taken = new boolean[CONSUMERS][ELEMENTS];
+        Thread[] threads = new Thread[PRODUCERS + CONSUMERS];
+        for(int p = 0; p < PRODUCERS; p++) {
+            int producer = p;
+            threads[p] = new Thread(() -> {
+                for(int x = producer; x < ELEMENTS; x += PRODUCERS) {
+                    queue.enqueue(x);
+                }
+            });
+        }
+        for(int c = 0; c < CONSUMERS; c++) {
+            boolean[] mine = taken[c];
+            threads[PRODUCERS + c] = new Thread(() -> {
+                try {
+                    int[] last = new int[PRODUCERS];
+                    Arrays.fill(last, -1);
+                    while(dequeued.get() < ELEMENTS) {
+                        Integer x = queue.poll();
+                        if(x == null) {
+                            Thread.yield();
+                            continue;
+                        }
+                        dequeued.incrementAndGet();
+                        int producer = x % PRODUCERS;
+                        check(x > last[producer], "producer " + producer + ": " + x + " after " + last[producer]);
+                        last[producer] = x;
+                        check(!mine[x], "dequeued twice: " + x);
+                        mine[x] = true;
+                    }
+                } catch(Throwable e) {
+                    failure.compareAndSet(null, e);
+                    dequeued.set(ELEMENTS); // stop the other consumers
+                }
+            });
+        }
+        for(Thread thread : threads) {
+            thread.start();
+        }
+        for(Thread thread : threads) {
+            thread.join();
+        }
+        if(failure.get() != null) {
+            throw new AssertionError("consumer failed", failure.get());
+        }
+        for(int x = 0; x < ELEMENTS; x++) {
+            int count = 0;
+            for(int c = 0; c < CONSUMERS; c++) {
+                if(taken[c][x]) {
+                    count++;
+                }
+            }
+            check(count == 1, "element " + x + " dequeued " + count + " times");
+        }
+        check(queue.isEmpty() && queue.poll() == null, "elements left over");
+    }
+}
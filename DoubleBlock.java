@@ -0,0 +1,38 @@
+// A Block that stores double values in a double[] instead of boxing them.
+public class DoubleBlock extends AbstractBlock {
+    protected final double[] arrayOfElements; // Holds actual elements
+    
+    // Workhorse constructor. Initialize variables and create array.
+    public DoubleBlock(int number, int capacity) {
+        super(number, capacity);
+        this.arrayOfElements = new double[capacity];
+    }
+    
+    // Set the last element to 0.0 and decrease the space allocated 
+    // for storing elements. Decreases size.
+    public void shrink() {
+        arrayOfElements[size - 1] = 0.0;
+        size--;
+    }
+    
+    // Decrease the space allocated for storing elements by n. Decreases
+    // size by n. The values are simply overwritten by later adds.
+    public void shrink(int n) {
+        size -= n;
+    }
+    
+    // Returns the element at position index in arrayOfElements.
+    public double getElement(int index) {
+        return arrayOfElements[index];
+    }
+    
+    // Sets the value at position i in arrayOfElements to x.
+    public void setElement(int i, double x) {
+        arrayOfElements[i] = x;
+    }
+    
+    // Appends the element at position index to builder.
+    protected void appendElement(StringBuilder builder, int index) {
+        builder.append(arrayOfElements[index]);
+    }
+}
@@ -1,84 +1,90 @@
-class DynamicArray<T> {
-    protected Object[] arrayOfBlocks; 
-    protected final int DEFAULTCAPACITY = 4;
-    protected int sizeOfArrayOfBlocks; // number of Blocks in arrayOfBlocks
-    protected int size; // number of elements in DynamicArray
-    protected int numberOfEmptyDataBlocks;
-    protected int numberOfNonEmptyDataBlocks;
-    protected int numberOfDataBlocks;
-    protected int indexOfLastNonEmptyDataBlock;
-    protected int indexOfLastDataBlock;
-    protected int numberOfSuperBlocks; 
-    protected SuperBlock lastSuperBlock; // right-most SuperBlock
+import java.lang.reflect.Array;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+// A java.util.List that keeps O(sqrt n) space on top of its elements.
+// The methods it shares with List, such as equals, hashCode, indexOf
+// and the iterators, walk the Blocks rather than locating every element.
+// get, set and the other methods List specifies, such as add(index, x),
+// remove(index) and listIterator(index), throw IndexOutOfBoundsException
+// for a bad position; insert, delete and copyRange, which are not part of
+// List, throw IllegalArgumentException.
+class DynamicArray<T> extends AbstractDynamicArray implements List<T>, RandomAccess {
+    // Pool that Blocks are taken from and returned to, or null if Blocks
+    // are allocated and dropped as they are needed
+    protected BlockPool<Block<?>> blockPool;
     
     // Workhorse constructor. Initialize variables, create the array
     // and the last SuperBlock, which represents SB0.
     DynamicArray( ) {
-        arrayOfBlocks = new Object[DEFAULTCAPACITY];
-        lastSuperBlock = new SuperBlock(0, 1, 1, 0); // SB0 only has one Block, and that Block can only have one element.
-        arrayOfBlocks[0] = new Block<T>(0, 1); // The first Block, this Block is in SB0, so it can only have one element.
-        lastSuperBlock.incrementCurrentNumberOfDataBlocks(); // Now SB0 contains a Block, incrementCurrentNumberOfDataBlocks.
-        sizeOfArrayOfBlocks = 1;
-        size = 0;
-        numberOfEmptyDataBlocks = 1;
-        numberOfNonEmptyDataBlocks = 0;
-        numberOfDataBlocks = 1;
-        indexOfLastNonEmptyDataBlock = -1;
-        indexOfLastDataBlock = 0;
-        numberOfSuperBlocks = 1;
-    }
-    
-    // Returns the Location of element i, which is the index of the Block
-    // and the position of i within that Block.
-    protected Location locate(int index) { 
-        int r = index + 1;
-        // cast log2(r) to int give us the same value as floor(log2 r).
-        int k = (int) log2(r);
-        // Element i is located in Block p + b in position e.
-        return new Location(computeP(k) + computeB(r, k), computeE(r, k));
-    }
-    
-    // Helper method computing p.
-    private int computeP(int k) {
-        int p;
-        if(k % 2 == 0) {
-            // For even k
-            // p = 2 * (2^floor(k/2) - 1)
-            // k / 2 will give us floor(k / 2), 1 << k / 2 raise 2 to power floor(k / 2).
-            p = (int) (2 * ((1 << k / 2) - 1));
-        } else {   
-            // For odd k
-            // p = (2 * (2^floor(k/2) - 1)) + 2^floor(k/2)
-            p = (int) (2 * ((1 << k / 2) - 1) + (1 << k / 2));
-        }
-        return p;
-    }
-    
-    // Helper method computing b.
-    private int computeB(int r, int k) {
-        // The value of b is given by the base 10 value of the floor(k/2) bits of r immediately after the leading 1 bit in r.
-        // k / 2 will give us floor(k / 2), this is the number of bits we want to capture.
-        int numOfBitsToCapture = k / 2;
-        // floor(log2 r) is the total number of bits immediately after the leading 1 bit in r,
-        // and k = floor(log2 r)
-        // k - numOfBitsToCapture gives us how many places we need to shift the bits to the right in r.
-        r = r >> (k - numOfBitsToCapture);
-        // mask depends on how many bits we want to capture.
-        int mask = maskOfN(numOfBitsToCapture);  
-        int b = r & mask;
-        return b;
-    }
-    
-    // Helper method computing e.
-    private int computeE(int r, int k) {
-        // The value of e is given by the base 10 value of the last ceiling(k/2) bits of r.
-        // We want to capture the last ceil(k / 2) bits of r
-        // Quickly compute ceil(k / 2)
-        int numOfBitsToCapture = (int) (k + 1) >> 1;
-        // mask depends on how many bits we want to capture.
-        int mask = maskOfN(numOfBitsToCapture); 
-        int e = r & mask;
-        return e;
+        super(new Block<T>(0, 1));
+    }
+    
+    // Takes new Blocks from blockPool, and returns deleted Blocks to it.
+    // blockPool may be shared with other DynamicArrays.
+    DynamicArray(BlockPool<Block<?>> blockPool) {
+        super(new Block<T>(0, 1));
+        this.blockPool = blockPool;
+    }
+    
+    // Constructor for subclasses that use their own kind of Block.
+    // firstBlock must be an empty Block numbered 0 with a capacity of 1.
+    protected DynamicArray(Block<T> firstBlock) {
+        super(firstBlock);
+    }
+    
+    @SuppressWarnings("unchecked")
+    // Creates an empty Block that stores references to T, or takes one
+    // from the blockPool. A pooled Block holds no references, so it can
+    // serve any T.
+    protected Block<T> newBlock(int number, int capacity) {
+        if(blockPool != null) {
+            Block<T> block = (Block<T>) blockPool.take(number, capacity);
+            if(block != null) {
+                return block;
+            }
+        }
+        return new Block<T>(number, capacity);
+    }
+    
+    // Clears a deleted Block and returns it to the blockPool, if any.
+    // A Block shared with a snapshot is left as it is.
+    protected void releaseBlock(AbstractBlock block) {
+        if(blockPool != null && !((Block<?>) block).shared) {
+            block.shrink(block.size());
+            blockPool.offer((Block<?>) block);
+        }
+    }
+    
+    // Returns a deleted Block to the blockPool, if any, as releaseBlock
+    // does, but without clearing it: every position of block must already
+    // be null. A Block shared with a snapshot is left as it is.
+    // Target complexity: O(1)
+    protected void releaseClearedBlock(Block<?> block) {
+        if(blockPool != null && !block.shared) {
+            block.reset();
+            blockPool.offer(block);
+        }
     }
     
     @SuppressWarnings("unchecked")
@@ -88,274 +94,1093 @@ class DynamicArray<T> {
         return (Block<T>) arrayOfBlocks[index];
     }
     
+    // Returns the Block at position index in arrayOfBlocks, first
+    // replacing it by a copy if it is shared with a snapshot, so that the
+    // snapshot never sees the change about to be made.
+    // Target complexity: O(1), or O(size of the Block) when it is copied
+    protected Block<T> writableBlock(int index) {
+        Block<T> block = getBlock(index);
+        if(block.shared) {
+            block = copyBlock(block);
+            replaceBlock(index, block);
+            if(metrics != null) {
+                metrics.blockCopiedOnWrite(this, block);
+            }
+        }
+        return block;
+    }
+    
+    // Returns a copy of block that is not shared, of the same kind.
+    protected Block<T> copyBlock(Block<T> block) {
+        return new Block<T>(block);
+    }
+    
+    // Returns an immutable view of the elements as they are now. Later
+    // changes to the DynamicArray do not show in it. Every full Block is
+    // shared with the snapshot rather than copied, and marked so that the
+    // next change to it is made to a copy; only the spine and the last
+    // non-empty Block, if it is not full, are copied.
+    // Target complexity: O(sqrt n)
+    public DynamicArraySnapshot<T> snapshot() {
+        Object[] blocks = new Object[indexOfLastNonEmptyDataBlock + 1];
+        int copied = blocks.length;
+        for(int i = 0; i < blocks.length; i++) {
+            Block<T> block = getBlock(i);
+            if(block.size() < block.getCapacity()) {
+                // Only the last non-empty Block can have room left, and
+                // the DynamicArray keeps adding to it.
+                block = new Block<T>(block);
+                copied += block.getCapacity();
+            } else {
+                block.shared = true;
+            }
+            blocks[i] = block;
+        }
+        if(metrics != null) {
+            metrics.snapshotTaken(this, blocks.length, copied);
+        }
+        return new DynamicArraySnapshot<T>(blocks, size);
+    }
+    
     // Returns the element at position i in the DynamicArray.
-    // Throws IllegalArgumentException if index < 0 or 
-    // index > size -1;
+    // Throws IndexOutOfBoundsException if i < 0 or i > size - 1, as List
+    // specifies.
     // Target complexity: O(1)
     public T get(int i) {
-        if(i < 0 || i > size - 1) {
+        Objects.checkIndex(i, size);
+        // We need to find which Block contains the requested element, also in what position of that Block.
+        // locateBlock() and locateElement() give us both without creating a Location object.
+        Block<T> block = getBlock(locateBlock(i)); 
+        return block.getElement(locateElement(i));
+    }
+    
+    // Sets the value at position i in DynamicArray to x, and returns the
+    // value it replaced.
+    // Throws IndexOutOfBoundsException if index < 0 or index > size - 1,
+    // as List specifies.
+    // Target complexity: O(1)
+    public T set(int index, T x) {
+        Objects.checkIndex(index, size);
+        Block<T> block = writableBlock(locateBlock(index));
+        int elementIndex = locateElement(index);
+        T old = block.getElement(elementIndex);
+        block.setElement(elementIndex, x);
+        return old;
+    }
+    
+    // Grows the DynamicArray by one space, increases the size of the 
+    // DynamicArray, and sets the last element to x.  
+    // Returns true, as Collection.add does.
+    // Target complexity: O(1)
+    public boolean add(T x) {
+        grow();
+        size++;
+        // The new last element is always the last allocated space of the
+        // last non-empty Block, so there is no need to locate it.
+        Block<T> lastNonEmptyDataBlock = getBlock(indexOfLastNonEmptyDataBlock);
+        lastNonEmptyDataBlock.setElement(lastNonEmptyDataBlock.size() - 1, x);
+        return true;
+    }
+    
+    // Inserts x at position index, moving the elements from index on up by
+    // one. Only the Block holding index moves elements inside it; every
+    // later Block passes its last element on to the front of the next one,
+    // which its circular layout does without moving the others.
+    // Throws IllegalArgumentException if index < 0 or 
+    // index > size;
+    // Target complexity: O(sqrt n)
+    public void insert(int index, T x) {
+        if(index < 0 || index > size) {
             throw new IllegalArgumentException();
         }
-        // We need to find which Block contains the requested element, also in what position of that Block.
-        // locate() gives us a Location object.
-        // The object will contain the index of Block that we want,
-        // and also the index of element in the Block.
-        Location location = locate(i); 
-        Block<T> block = getBlock(location.getBlockIndex()); // Use the blockIndex in the Location object to find the Block.
-        return block.getElement(location.getElementIndex()); // Use the elementIndex in the Location object to find the element within the Block.
+        grow();
+        size++;
+        // grow allocated one space at the end of the last non-empty Block.
+        // Give it back to that Block until the elements have moved up.
+        int indexOfLastBlock = indexOfLastNonEmptyDataBlock;
+        Block<T> lastBlock = writableBlock(indexOfLastBlock);
+        lastBlock.popBack();
+        int blockIndex = locateBlock(index);
+        Block<T> block = writableBlock(blockIndex);
+        if(blockIndex == indexOfLastBlock) {
+            block.insertAt(locateElement(index), x);
+            return;
+        }
+        T carry = block.popBack();
+        block.insertAt(locateElement(index), x);
+        for(int i = blockIndex + 1; i < indexOfLastBlock; i++) {
+            Block<T> next = writableBlock(i);
+            T last = next.popBack();
+            next.pushFront(carry);
+            carry = last;
+        }
+        lastBlock.pushFront(carry);
     }
     
-    // Sets the value at position i in DynamicArray to x.
+    // Removes the element at position index and returns it, moving the
+    // elements after it down by one. Every Block after the one holding
+    // index passes its first element on to the end of the previous one.
+    // A Block may be deleted and the last SuperBlock may change.
     // Throws IllegalArgumentException if index < 0 or 
     // index > size -1;
-    // Target complexity: O(1)
-    public void set(int index, T x) {
+    // Target complexity: O(sqrt n)
+    public T delete(int index) {
         if(index < 0 || index > size - 1) {
             throw new IllegalArgumentException();
         }
-        Location location = locate(index);
-        Block<T> block = getBlock(location.getBlockIndex());
-        block.setElement(location.getElementIndex(), x); // Use the elementIndex in the Location object to set the element within the Block to x.
+        int blockIndex = locateBlock(index);
+        Block<T> block = writableBlock(blockIndex);
+        T removed = block.removeAt(locateElement(index));
+        for(int i = blockIndex + 1; i <= indexOfLastNonEmptyDataBlock; i++) {
+            Block<T> next = writableBlock(i);
+            block.pushBack(next.popFront());
+            block = next;
+        }
+        // The last element is now one space short of the end. Put the
+        // space back, so remove can deallocate it as usual.
+        block.pushBack(null);
+        remove();
+        return removed;
     }
     
-    @SuppressWarnings("unchecked")
-    // Allocates one more spaces in the DynamicArray. This may
-    // require the creation of a Block and the last SuperBlock may change. 
-    // Also, expandArray is called if the arrayOfBlocks is full when
-    // a Block is created. 
-    // Called by add.
-    // Target complexity: O(1)
-    protected void grow() {
-        Block<T> lastDataBlock = (Block<T>) arrayOfBlocks[indexOfLastDataBlock]; 
-        
-        // If the last Block is full, we need to make a new Block.
-        if(lastDataBlock.getCapacity() == lastDataBlock.size()) {
-            if(sizeOfArrayOfBlocks == arrayOfBlocks.length) {
-                // arrayOfBlocks is full, need to expand.
-                expandArray();
-            }
-            
-            // If the lastSuperBlock is full of Blocks, we need to create a new SuperBlock and increment numberOfSuperBlocks
-            if(lastSuperBlock.getCurrentNumberOfDataBlocks() == lastSuperBlock.getMaxNumberOfDataBlocks()) {
-                if(lastSuperBlock.getNumber() % 2 == 0) {
-                    // If the number of the current full lastSuperBlock is even,
-                    // The new SuperBlock will have the same MaxNumberOfDataBlocks as the old one,
-                    // but twice the MaxNumberOfElementsPerBlock.
-                    // This new superBlock currently has no Block in it.
-                    lastSuperBlock = new SuperBlock(numberOfSuperBlocks++, lastSuperBlock.getMaxNumberOfDataBlocks(), 
-                                                    lastSuperBlock.getMaxNumberOfElementsPerBlock() * 2, 0);
-                } else {
-                    // If the number of the current full lastSuperBlock is not even,
-                    // The new SuperBlock will have the same MaxNumberOfElementsPerBlock as the old one,
-                    // but twice the MaxNumberOfDataBlocks.
-                    // This new superBlock currently has no Block in it.
-                    lastSuperBlock = new SuperBlock(numberOfSuperBlocks++, lastSuperBlock.getMaxNumberOfDataBlocks() * 2, 
-                                                    lastSuperBlock.getMaxNumberOfElementsPerBlock(), 0);
+    // Inserts x at position index, as insert does.
+    // Throws IndexOutOfBoundsException if index < 0 or index > size,
+    // as List.add does.
+    // Target complexity: O(sqrt n)
+    public void add(int index, T x) {
+        if(index < 0 || index > size) {
+            throw new IndexOutOfBoundsException();
+        }
+        insert(index, x);
+    }
+    
+    // Removes the element at position index and returns it, as delete
+    // does.
+    // Throws IndexOutOfBoundsException if index < 0 or 
+    // index > size -1, as List.remove does.
+    // Target complexity: O(sqrt n)
+    public T remove(int index) {
+        if(index < 0 || index > size - 1) {
+            throw new IndexOutOfBoundsException();
+        }
+        return delete(index);
+    }
+    
+    // Removes the first element equal to o, if there is one.
+    // Returns true if an element was removed.
+    // Target complexity: O(n)
+    public boolean remove(Object o) {
+        int index = indexOf(o);
+        if(index < 0) {
+            return false;
+        }
+        delete(index);
+        return true;
+    }
+    
+    // Removes every element for which filter returns true and keeps the
+    // others in order. filter is tested on every element before anything
+    // moves, so the DynamicArray is unchanged if it throws. The elements
+    // kept are then moved down in one walk over the Blocks, and the space
+    // freed at the end is removed a whole Block at a time.
+    // Returns true if any element was removed.
+    // Throws ConcurrentModificationException if filter adds or removes
+    // an element.
+    // Target complexity: O(n)
+    public boolean removeIf(Predicate<? super T> filter) {
+        Objects.requireNonNull(filter);
+        int expectedModCount = modCount;
+        BitSet removed = new BitSet();
+        int blockIndex = 0;
+        for(int i = 0; i < size; blockIndex++) {
+            Block<T> block = getBlock(blockIndex);
+            for(int elementIndex = 0; elementIndex < block.size(); elementIndex++, i++) {
+                if(filter.test(block.getElement(elementIndex))) {
+                    removed.set(i);
                 }
             }
-            
-            // Create a new Block, use lastSuperBlock to figure out how many elements the Block can store.
-            // Update the fields, also lastSuperBlock has one more Block in it, so incrementCurrentNumberOfDataBlocks.
-            arrayOfBlocks[sizeOfArrayOfBlocks++] = new Block<T>(++indexOfLastDataBlock, lastSuperBlock.getMaxNumberOfElementsPerBlock());
-            numberOfEmptyDataBlocks++;
-            numberOfDataBlocks++;
-            lastSuperBlock.incrementCurrentNumberOfDataBlocks();
-            // Since we create a new Block, we need to update variable lastDataBlock. 
-            lastDataBlock = (Block<T>) arrayOfBlocks[indexOfLastDataBlock];    
-        } 
-        lastDataBlock.grow();
-        if(numberOfEmptyDataBlocks == 1) {
-            // if numberOfEmptyDataBlocks = 1, it means our lastDataBlock was empty.
-            // But it is supposed to not be empty now because we just grew the size of it.
-            // So we have to update fields below.
-            numberOfEmptyDataBlocks--;
-            numberOfNonEmptyDataBlocks++;
-            indexOfLastNonEmptyDataBlock++;
-        }
-            
+        }
+        if(modCount != expectedModCount) {
+            throw new ConcurrentModificationException();
+        }
+        int numberRemoved = removed.cardinality();
+        if(numberRemoved == 0) {
+            return false;
+        }
+        // Nothing moves before the first element removed.
+        int first = removed.nextSetBit(0);
+        int readBlock = locateBlock(first);
+        int readElement = locateElement(first);
+        int writeBlock = readBlock;
+        int writeElement = readElement;
+        for(int i = first; i < size; i++) {
+            Block<T> block = getBlock(readBlock);
+            T x = block.getElement(readElement);
+            if(++readElement == block.size()) {
+                readBlock++;
+                readElement = 0;
+            }
+            if(!removed.get(i)) {
+                Block<T> target = writableBlock(writeBlock);
+                target.setElement(writeElement, x);
+                if(++writeElement == target.size()) {
+                    writeBlock++;
+                    writeElement = 0;
+                }
+            }
+        }
+        removeLast(numberRemoved);
+        return true;
     }
     
-    // Grows the DynamicArray by one space, increases the size of the 
-    // DynamicArray, and sets the last element to x.  
-    // Target complexity: O(1)
-    public void add(T x) {
-        grow();
-        size++;
-        set(size - 1,x);
+    // Removes every element that c contains.
+    // Returns true if any element was removed.
+    // Target complexity: O(n * cost of c.contains)
+    public boolean removeAll(Collection<?> c) {
+        Objects.requireNonNull(c);
+        return removeIf(c::contains);
+    }
+    
+    // Removes every element that c does not contain.
+    // Returns true if any element was removed.
+    // Target complexity: O(n * cost of c.contains)
+    public boolean retainAll(Collection<?> c) {
+        Objects.requireNonNull(c);
+        return removeIf(x -> !c.contains(x));
+    }
+    
+    // Adds the elements of the array elements to the end, in order. Space
+    // is allocated a whole Block at a time and filled with System.arraycopy,
+    // so the cost is proportional to the number of Blocks touched.
+    // Returns true if the DynamicArray changed.
+    // Target complexity: O(number of Blocks touched)
+    public boolean addAll(T[] elements) {
+        return addAll(elements, elements.length);
+    }
+    
+    // Adds the elements of c to the end, in the order of its iterator.
+    // Returns true if the DynamicArray changed.
+    // Target complexity: O(number of Blocks touched + size of c)
+    public boolean addAll(Collection<? extends T> c) {
+        Object[] elements = c.toArray();
+        return addAll(elements, elements.length);
+    }
+    
+    // Inserts the elements of c at position index, in the order of its
+    // iterator, moving the elements from index on up. The elements moved
+    // are copied out and back in a whole Block at a time, so this takes
+    // size - index more references while it runs.
+    // Returns true if the DynamicArray changed.
+    // Throws IndexOutOfBoundsException if index < 0 or index > size,
+    // as List.addAll does.
+    // Target complexity: O(size - index + size of c)
+    public boolean addAll(int index, Collection<? extends T> c) {
+        if(index < 0 || index > size) {
+            throw new IndexOutOfBoundsException();
+        }
+        Object[] elements = c.toArray();
+        int n = elements.length;
+        if(n == 0) {
+            return false;
+        }
+        Object[] moved = new Object[size - index];
+        copyOut(index, moved, 0, moved.length);
+        growBy(n);
+        size += n;
+        copyIn(elements, 0, index, n);
+        copyIn(moved, 0, index + n, moved.length);
+        return true;
+    }
+    
+    // Adds the elements of other to the end, in order, copying one of its
+    // Blocks at a time. other may be this DynamicArray.
+    // Returns true if the DynamicArray changed.
+    // Target complexity: O(number of Blocks touched)
+    public boolean addAll(DynamicArray<? extends T> other) {
+        int n = other.size;
+        if(n == 0) {
+            return false;
+        }
+        int index = size;
+        growBy(n);
+        size += n;
+        // Every Block of other is full except its last non-empty one, so
+        // the capacity tells how much to copy even if other is this
+        // DynamicArray and its last Block has just grown.
+        for(int i = 0; n > 0; i++) {
+            Block<? extends T> block = other.getBlock(i);
+            int length = Math.min(block.getCapacity(), n);
+            // The elements of a Block may wrap around the end of its array.
+            int start = block.physicalIndex(0);
+            int first = Math.min(length, block.getCapacity() - start);
+            copyIn(block.arrayOfElements, start, index, first);
+            copyIn(block.arrayOfElements, 0, index + first, length - first);
+            index += length;
+            n -= length;
+        }
+        return true;
+    }
+    
+    // Adds the first n elements of the array elements to the end.
+    private boolean addAll(Object[] elements, int n) {
+        if(n == 0) {
+            return false;
+        }
+        int index = size;
+        growBy(n);
+        size += n;
+        copyIn(elements, 0, index, n);
+        return true;
+    }
+    
+    // Copies length elements of src, starting at srcPos, into the
+    // DynamicArray starting at position index, one Block at a time. The
+    // space must already be allocated.
+    protected void copyIn(Object[] src, int srcPos, int index, int length) {
+        int blockIndex = locateBlock(index);
+        int elementIndex = locateElement(index);
+        while(length > 0) {
+            Block<T> block = writableBlock(blockIndex++);
+            int n = Math.min(block.getCapacity() - elementIndex, length);
+            block.copyFrom(src, srcPos, elementIndex, n);
+            srcPos += n;
+            length -= n;
+            elementIndex = 0;
+        }
+    }
+    
+    // Returns an iterator over the elements in order. It walks
+    // arrayOfBlocks one Block at a time, so next() does no index math.
+    // The iterator throws ConcurrentModificationException if an element
+    // is added or removed after it was created, other than through it.
+    public Iterator<T> iterator() {
+        return new BlockIterator(0);
+    }
+    
+    // Returns a ListIterator over the elements, starting at position 0.
+    public ListIterator<T> listIterator() {
+        return new BlockIterator(0);
+    }
+    
+    // Returns a ListIterator whose first call to next returns the element
+    // at position index. It walks arrayOfBlocks one Block at a time in
+    // either direction. set writes through in O(1); add and remove insert
+    // and delete, so they take O(sqrt n). It throws
+    // ConcurrentModificationException as iterator() does.
+    // Throws IndexOutOfBoundsException if index < 0 or index > size,
+    // as List.listIterator does.
+    public ListIterator<T> listIterator(int index) {
+        if(index < 0 || index > size) {
+            throw new IndexOutOfBoundsException();
+        }
+        return new BlockIterator(index);
+    }
+    
+    // Returns true if the DynamicArray holds no elements.
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+    
+    // Returns true if an element is equal to o.
+    // Target complexity: O(n / number of threads), as indexOf
+    public boolean contains(Object o) {
+        return indexOf(o) >= 0;
+    }
+    
+    // Returns true if every element of c is equal to an element.
+    // Target complexity: O(n * size of c)
+    public boolean containsAll(Collection<?> c) {
+        for(Object o : c) {
+            if(!contains(o)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    // Returns the position of the last element equal to o, or -1 if
+    // there is none. The Blocks are walked from the last one back.
+    // Target complexity: O(n)
+    public int lastIndexOf(Object o) {
+        int i = size - 1;
+        for(int blockIndex = indexOfLastNonEmptyDataBlock; i >= 0; blockIndex--) {
+            Block<T> block = getBlock(blockIndex);
+            for(int elementIndex = block.size() - 1; elementIndex >= 0; elementIndex--, i--) {
+                if(Objects.equals(o, block.getElement(elementIndex))) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+    
+    // Returns true if o is a List with equal elements in the same order,
+    // as List.equals specifies. The elements of the DynamicArray are read
+    // one Block at a time, and those of o through its iterator.
+    // Target complexity: O(n)
+    public boolean equals(Object o) {
+        if(o == this) {
+            return true;
+        }
+        if(!(o instanceof List)) {
+            return false;
+        }
+        List<?> other = (List<?>) o;
+        if(other.size() != size) {
+            return false;
+        }
+        Iterator<?> iterator = other.iterator();
+        int blockIndex = 0;
+        for(int i = 0; i < size; blockIndex++) {
+            Block<T> block = getBlock(blockIndex);
+            for(int elementIndex = 0; elementIndex < block.size(); elementIndex++, i++) {
+                if(!iterator.hasNext() || !Objects.equals(block.getElement(elementIndex), iterator.next())) {
+                    return false;
+                }
+            }
+        }
+        return !iterator.hasNext();
+    }
+    
+    // Returns the hash code List.hashCode specifies, reading the elements
+    // one Block at a time.
+    // Target complexity: O(n)
+    public int hashCode() {
+        int hash = 1;
+        int blockIndex = 0;
+        for(int i = 0; i < size; blockIndex++) {
+            Block<T> block = getBlock(blockIndex);
+            for(int elementIndex = 0; elementIndex < block.size(); elementIndex++, i++) {
+                hash = 31 * hash + Objects.hashCode(block.getElement(elementIndex));
+            }
+        }
+        return hash;
+    }
+    
+    // Performs action on every element in order, one Block at a time.
+    // Throws ConcurrentModificationException if action adds or removes
+    // an element.
+    // Target complexity: O(N)
+    public void forEach(Consumer<? super T> action) {
+        int expectedModCount = modCount;
+        forEachInRange(0, size, action);
+        if(modCount != expectedModCount) {
+            throw new ConcurrentModificationException();
+        }
+    }
+    
+    // Returns a Spliterator over the elements. It splits along Block
+    // boundaries, so every part walks whole Blocks, and it reports
+    // SIZED and SUBSIZED.
+    public Spliterator<T> spliterator() {
+        return new BlockSpliterator(0, size, modCount);
+    }
+    
+    // Returns a sequential Stream over the elements.
+    public Stream<T> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+    
+    // Returns a parallel Stream over the elements.
+    public Stream<T> parallelStream() {
+        return StreamSupport.stream(spliterator(), true);
+    }
+    
+    // Returns a new array holding the elements in order. Every Block is
+    // copied with one System.arraycopy, or two if it wraps.
+    // Target complexity: O(n), with O(sqrt n) copies
+    public Object[] toArray() {
+        Object[] elements = new Object[size];
+        copyOut(0, elements, 0, size);
+        return elements;
     }
     
     @SuppressWarnings("unchecked")
-    // Write a null value to the last element, shrinks the DynamicArray by one 
-    // space, and decreases the size of the DynamicArray. A Block may be 
-    // deleted and the last SuperBlock may change.
-    // Also, shrinkArray is called if the arrayOfBlocks is less than or equal
-    // to a quarter full when a Block is deleted. 
-    // Throws IllegalStateException if the DynamicArray is empty when remove is
-    // called.
+    // Returns the elements in order in a, if it is long enough, or else in
+    // a new array of the same type. If a is longer, the position after
+    // the last element is set to null, as Collection.toArray does.
+    // Throws ArrayStoreException if an element is not of the type of a.
+    // Target complexity: O(n), with O(sqrt n) copies
+    public <E> E[] toArray(E[] a) {
+        if(a.length < size) {
+            a = (E[]) Array.newInstance(a.getClass().getComponentType(), size);
+        }
+        copyOut(0, a, 0, size);
+        if(a.length > size) {
+            a[size] = null;
+        }
+        return a;
+    }
+    
+    // Copies the elements at positions from (inclusive) to to (exclusive)
+    // into dest starting at destPos. The Locations of from and to are
+    // found once, and every Block in between is copied whole.
+    // Throws IllegalArgumentException if from < 0, to > size or
+    // from > to.
+    // Throws IndexOutOfBoundsException if dest is too short, and
+    // ArrayStoreException if an element is not of the type of dest.
+    // Target complexity: O(to - from), with O(sqrt n) copies
+    public void copyRange(int from, int to, Object[] dest, int destPos) {
+        if(from < 0 || to > size || from > to) {
+            throw new IllegalArgumentException();
+        }
+        if(destPos < 0 || destPos > dest.length - (to - from)) {
+            throw new IndexOutOfBoundsException();
+        }
+        copyOut(from, dest, destPos, to - from);
+    }
+    
+    // Returns a view of the elements at positions from (inclusive) to to
+    // (exclusive). It reads and writes through to the DynamicArray and
+    // cannot change its size. It throws ConcurrentModificationException
+    // once an element is added to or removed from the DynamicArray
+    // other than through it.
+    // Throws IndexOutOfBoundsException if from < 0, to > size or
+    // from > to, as List.subList does.
     // Target complexity: O(1)
-    public void remove() {
-        if(size == 0) {
-            throw new IllegalStateException();
+    public List<T> subList(int from, int to) {
+        if(from < 0 || to > size || from > to) {
+            throw new IndexOutOfBoundsException();
         }
+        return new SubList(from, to);
+    }
+    
+    // View returned by subList. get and set are O(1); toArray copies
+    // whole Blocks.
+    private class SubList extends AbstractList<T> implements RandomAccess {
+        private final int from; // position in the DynamicArray of the first element
+        private final int to; // one past the position of the last element
+        // AbstractList has a modCount of its own, so the one of the
+        // DynamicArray has to be named in full.
+        private final int expectedModCount = DynamicArray.this.modCount;
         
-        set((size - 1), null);
-        Block<T> lastNonEmptyDataBlock = (Block<T>) arrayOfBlocks[indexOfLastNonEmptyDataBlock];  
-        lastNonEmptyDataBlock.shrink();
-        size--;
+        SubList(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
         
-        if(lastNonEmptyDataBlock.size() == 0) {
-            // The lastNonEmptyDataBlock is empty now after shrinking,
-            // we have to update fields below. 
-            numberOfEmptyDataBlocks++;
-            numberOfNonEmptyDataBlocks--;
-            indexOfLastNonEmptyDataBlock--;
+        public T get(int index) {
+            checkIndex(index);
+            return getBlock(locateBlock(from + index)).getElement(locateElement(from + index));
         }
         
-        // If we have two empty Blocks, we have to delete the last one.
-        if(numberOfEmptyDataBlocks == 2) {
-            // Set the last empty Block to null.
-            arrayOfBlocks[--sizeOfArrayOfBlocks] = null; // --sizeOfArrayOfBlocks gives us the index of last Block, also decrement sizeOfArrayOfBlocks.
-            // Update the fields, also lastSuperBlock has one less Block in it, so decrementCurrentNumberOfDataBlocks.
-            numberOfDataBlocks--;
-            numberOfEmptyDataBlocks--;
-            indexOfLastDataBlock--;
-            lastSuperBlock.decrementCurrentNumberOfDataBlocks();
-            
-            // The length of arrayOfBlocks should never be less than 4
-            if(sizeOfArrayOfBlocks <= arrayOfBlocks.length / 4 && arrayOfBlocks.length > 4) {
-                // Need to shrink
-                shrinkArray();
-            }
-            
-            // If the lastSuperBlock has no Blocks in it, 
-            // we need to change lastSuperBlock to the previous superBlock and decrement numberOfSuperBlocks
-            if(lastSuperBlock.getCurrentNumberOfDataBlocks() == 0) {
-                if(lastSuperBlock.getNumber() % 2 == 0) {
-                    // If the number of the current empty lastSuperBlock is even,
-                    // The previous SuperBlock will have one half of MaxNumberOfDataBlocks as the old one,
-                    // but the same MaxNumberOfElementsPerBlock.
-                    // This previous superBlock currently is full of Blocks.
-                    // --numberOfSuperBlocks - 1 gives us the number of this previous superBlock.
-                    lastSuperBlock = new SuperBlock(--numberOfSuperBlocks - 1, lastSuperBlock.getMaxNumberOfDataBlocks() / 2, 
-                                                    lastSuperBlock.getMaxNumberOfElementsPerBlock(),
-                                                    lastSuperBlock.getMaxNumberOfDataBlocks() / 2);
-                } else {
-                    // If the number of the current empty lastSuperBlock is not even,
-                    // The previous SuperBlock will have one half of MaxNumberOfElementsPerBlock as the old one,
-                    // but the same MaxNumberOfDataBlocks.
-                    // This previous superBlock currently is full of Blocks.
-                    lastSuperBlock = new SuperBlock(--numberOfSuperBlocks - 1, lastSuperBlock.getMaxNumberOfDataBlocks(), 
-                                                    lastSuperBlock.getMaxNumberOfElementsPerBlock() / 2,
-                                                    lastSuperBlock.getMaxNumberOfDataBlocks());
-                }
+        public T set(int index, T x) {
+            checkIndex(index);
+            Block<T> block = writableBlock(locateBlock(from + index));
+            int elementIndex = locateElement(from + index);
+            T old = block.getElement(elementIndex);
+            block.setElement(elementIndex, x);
+            return old;
+        }
+        
+        public int size() {
+            checkModCount();
+            return to - from;
+        }
+        
+        public Object[] toArray() {
+            checkModCount();
+            Object[] elements = new Object[to - from];
+            copyOut(from, elements, 0, to - from);
+            return elements;
+        }
+        
+        private void checkIndex(int index) {
+            checkModCount();
+            if(index < 0 || index >= to - from) {
+                throw new IndexOutOfBoundsException();
+            }
+        }
+        
+        private void checkModCount() {
+            if(DynamicArray.this.modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
             }
         }
     }
     
-    // Decreases the length of the arrayOfBlocks by half. Create a new
-    // arrayOfBlocks and copy the Blocks from the old one to this new array.
-    protected void shrinkArray() {
-        Object[] newArrayOfBlocks = new Object[arrayOfBlocks.length / 2];
-        for(int i = 0; i < sizeOfArrayOfBlocks; i++) {
-            newArrayOfBlocks[i] = arrayOfBlocks[i];
+    // Smallest number of elements worth splitting into two tasks in the
+    // parallel operations
+    protected static final int PARALLEL_THRESHOLD = 8192;
+    
+    // Returns a position at the start of a Block that splits the
+    // positions from (inclusive) to to (exclusive) in about half, so that
+    // no Block is shared by the two parts, or -1 if there is none.
+    protected int splitPoint(int from, int to) {
+        int middle = (from + to) >>> 1;
+        int split = middle - locateElement(middle);
+        if(split <= from) {
+            // middle is in the first Block; split after that Block instead.
+            split += getBlock(locateBlock(middle)).getCapacity();
         }
-        arrayOfBlocks = newArrayOfBlocks;
+        return split < to ? split : -1;
+    }
+    
+    // Performs action on every element, in parallel on the common
+    // ForkJoinPool. Each task walks whole Blocks, and the elements are
+    // not visited in any particular order.
+    // Throws ConcurrentModificationException if an element is added or
+    // removed meanwhile.
+    // Target complexity: O(n / number of threads)
+    public void parallelForEach(Consumer<? super T> action) {
+        parallelForEach(action, ForkJoinPool.commonPool());
     }
     
-    // Doubles the length of the arrayOfBlocks. Create a new
-    // arrayOfBlocks and copy the Blocks from the old one to this new array.
-    protected void expandArray() {
-        Object[] newArrayOfBlocks = new Object[arrayOfBlocks.length * 2];
-        for(int i = 0; i < sizeOfArrayOfBlocks; i++) {
-            newArrayOfBlocks[i] = arrayOfBlocks[i];
+    // Performs action on every element, as parallelForEach(action) does,
+    // in parallel on pool.
+    // Throws ConcurrentModificationException if an element is added or
+    // removed meanwhile.
+    // Target complexity: O(n / parallelism of pool)
+    public void parallelForEach(Consumer<? super T> action, ForkJoinPool pool) {
+        Objects.requireNonNull(action);
+        Objects.requireNonNull(pool);
+        int expectedModCount = modCount;
+        runInParallel((from, to) -> forEachInRange(from, to, action), pool);
+        if(modCount != expectedModCount) {
+            throw new ConcurrentModificationException();
         }
-        arrayOfBlocks = newArrayOfBlocks;
     }
     
-    // Returns the size of the DynamicArray which is the number of elements that
-    // have been added to it with the add(x) method but not removed.  The size 
-    // does not correspond to the capacity of the array.
-    public int size() {
-        return size;
+    // Replaces every element x with operator.apply(x), in order.
+    // Target complexity: O(n)
+    public void replaceAll(UnaryOperator<T> operator) {
+        Objects.requireNonNull(operator);
+        replaceInRange(0, size, operator);
+    }
+    
+    // Replaces every element x with operator.apply(x), in parallel on the
+    // common ForkJoinPool, so operator must not depend on the order.
+    // Target complexity: O(n / number of threads)
+    public void parallelReplaceAll(UnaryOperator<T> operator) {
+        parallelReplaceAll(operator, ForkJoinPool.commonPool());
+    }
+    
+    // Replaces every element x with operator.apply(x), in parallel on
+    // pool, so operator must not depend on the order.
+    // Target complexity: O(n / parallelism of pool)
+    public void parallelReplaceAll(UnaryOperator<T> operator, ForkJoinPool pool) {
+        Objects.requireNonNull(operator);
+        Objects.requireNonNull(pool);
+        runInParallel((from, to) -> replaceInRange(from, to, operator), pool);
+    }
+    
+    @SuppressWarnings("unchecked")
+    // Sorts the elements with comparator, or by their natural ordering if
+    // comparator is null. The elements are copied out to one array, sorted
+    // with Arrays.sort and copied back in, a whole Block at a time each
+    // way, so n more references are used while sorting.
+    // Throws ClassCastException if comparator is null and the elements
+    // are not Comparable.
+    // Target complexity: O(n log n)
+    public void sort(Comparator<? super T> comparator) {
+        Object[] elements = toArray();
+        Arrays.sort((T[]) elements, comparator);
+        copyIn(elements, 0, 0, elements.length);
+        modCount++;
     }
     
-    // Returns the log base 2 of n
-    protected static double log2(int n) {
-        return (Math.log(n) / Math.log(2));
+    // Sorts the elements with comparator, or by their natural ordering if
+    // comparator is null. The Blocks are copied out to one array in
+    // parallel, sorted with Arrays.parallelSort, and copied back in
+    // parallel, so n more references are used while sorting.
+    // Throws ClassCastException if comparator is null and the elements
+    // are not Comparable.
+    // Target complexity: O(n log n / number of threads)
+    public void parallelSort(Comparator<? super T> comparator) {
+        parallelSort(comparator, ForkJoinPool.commonPool());
     }
     
-    // Returns a mask of N 1 bits; this code is provided below and can be used 
-    // as is
-    protected int maskOfN(int N) {
-        int POW2ToN = 1 << N; // left shift 1 N places; e.g., 1 << 2 = 100 = 4
-        int mask = POW2ToN - 1; // subtract 1; e.g., 1002 C 12 = 0112 = 3
-        // Integer.toString(mask,2); // a String with the bits of mask
-        return mask;
+    @SuppressWarnings("unchecked")
+    // Sorts the elements as parallelSort(comparator) does, with every
+    // task run on pool. Arrays.parallelSort forks into the pool it is
+    // invoked from, but still sizes its parts by the parallelism of the
+    // common pool, and sorts in one thread if that is 1.
+    // Throws ClassCastException if comparator is null and the elements
+    // are not Comparable.
+    // Target complexity: O(n log n / parallelism of pool)
+    public void parallelSort(Comparator<? super T> comparator, ForkJoinPool pool) {
+        Objects.requireNonNull(pool);
+        Object[] elements = new Object[size];
+        pool.invoke(new RangeTask(0, size, (from, to) -> copyOut(from, elements, from, to - from)));
+        pool.invoke(ForkJoinTask.adapt(() -> Arrays.parallelSort((T[]) elements, comparator)));
+        pool.invoke(new RangeTask(0, size, (from, to) -> copyIn(elements, from, from, to - from)));
+        modCount++;
     }
     
+    // Returns the position of the first element equal to o, or -1 if
+    // there is none. DynamicArrays of more than PARALLEL_THRESHOLD
+    // elements are searched in parallel on the common ForkJoinPool, one
+    // run of Blocks per task; smaller ones in this thread.
+    // Target complexity: O(n / number of threads)
+    public int indexOf(Object o) {
+        return indexOf(o, ForkJoinPool.commonPool());
+    }
     
-    // Create a pretty representation of the DynamicArray. This method should
-    // return string formatted similarly to ArrayList
-    // Examples: [], [X],  [A, B, C, D]
-    // 
-    // Target Complexity: O(N)
-    //   N: number of elements in the DynamicArray
-    public String toString() {
+    // Returns the position of the first element equal to o, or -1, as
+    // indexOf(o) does, searching in parallel on pool.
+    // Target complexity: O(n / parallelism of pool)
+    public int indexOf(Object o, ForkJoinPool pool) {
+        Objects.requireNonNull(pool);
+        if(size <= PARALLEL_THRESHOLD) {
+            return indexOfInRange(0, size, o);
+        }
+        return pool.invoke(new IndexOfTask(0, size, o));
+    }
+    
+    // Returns the position of key in the DynamicArray, which must be
+    // sorted by comparator, or by the natural ordering if comparator is
+    // null, as Arrays.binarySearch does: the position if key is found,
+    // otherwise -(insertion point) - 1. The Block that may hold key is
+    // found by comparing key with the first element of each Block, then
+    // key is searched for in that Block.
+    // Throws ClassCastException if comparator is null and the elements
+    // are not Comparable.
+    // Target complexity: O(log n)
+    public int binarySearch(T key, Comparator<? super T> comparator) {
         if(size == 0) {
-            return "[]";
+            return -1;
         }
-        StringBuilder builder = new StringBuilder();       
-        builder.append("[");
-        for(int i = 0; i < size - 1; i++) {
-            builder.append(get(i) + ", ");
+        // Find the last non-empty Block whose first element is <= key.
+        int low = 0;
+        int high = indexOfLastNonEmptyDataBlock;
+        while(low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if(compare(getBlock(middle).getElement(0), key, comparator) <= 0) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
         }
-        builder.append(get(size - 1) + "]");
-        return builder.toString();
+        Block<T> block = getBlock(low);
+        int first = firstPositionOf(low);
+        int lowElement = 0;
+        int highElement = block.size() - 1;
+        while(lowElement <= highElement) {
+            int middle = (lowElement + highElement) >>> 1;
+            int c = compare(block.getElement(middle), key, comparator);
+            if(c < 0) {
+                lowElement = middle + 1;
+            } else if(c > 0) {
+                highElement = middle - 1;
+            } else {
+                return first + middle;
+            }
+        }
+        return -(first + lowElement) - 1;
     }
     
     @SuppressWarnings("unchecked")
-    // Create a pretty representation of the DynamicArray for debugging
-    // Example: 
-    // DynamicArray: A B 
-    // numberOfDataBlocks: 2
-    // numberOfEmptyDataBlocks: 0
-    // numberOfNonEmptyDataBlocks: 2
-    // indexOfLastNonEmptyDataBlock: 1
-    // indexOfLastDataBlock: 1
-    // numberOfSuperBlocks: 2
-    // lastSuperBlock: SB1
-    // Block0: A 
-    // - capacity: 1 size: 1
-    // Block1: B 
-    // - capacity: 2 size: 1
-    // SB1:
-    // - maxNumberOfDataBlocks: 1
-    // - numberOfElementsPerBlock: 2
-    // - currentNumberOfDataBlocks: 1
-    
-    protected String toStringForDebugging() {
-        StringBuilder builder = new StringBuilder();
-        builder.append("DynamicArray: ");
-        for(int i = 0; i < size; i++) {
-            builder.append(get(i) + " ");
-        }
-        builder.append("\nnumberOfDataBlocks: " + numberOfDataBlocks);
-        builder.append("\nnumberOfEmptyDataBlocks: " + numberOfEmptyDataBlocks);
-        builder.append("\nnumberOfNonEmptyDataBlocks: " + numberOfNonEmptyDataBlocks);
-        builder.append("\nindexOfLastNonEmptyDataBlock: " + indexOfLastNonEmptyDataBlock);
-        builder.append("\nindexOfLastDataBlock: " + indexOfLastDataBlock);
-        builder.append("\nnumberOfSuperBlocks: " + numberOfSuperBlocks);
-        builder.append("\nlastSuperBlock: SB" + lastSuperBlock.getNumber());
-        for(int i = 0; i < sizeOfArrayOfBlocks; i++) {
-            builder.append("\nBlock" + i + ": ");
-            Block<T> block = (Block<T>) arrayOfBlocks[i];
-            builder.append(block.toStringForDebugging());
-        }
-        builder.append("\nSB" + lastSuperBlock.getNumber() + ":");
-        builder.append("\n- maxNumberOfDataBlocks: " + lastSuperBlock.getMaxNumberOfDataBlocks());
-        builder.append("\n- maxNumberOfElementsPerBlock: " + lastSuperBlock.getMaxNumberOfElementsPerBlock());
-        builder.append("\n- currentNumberOfDataBlocks: " + lastSuperBlock.getCurrentNumberOfDataBlocks());
+    // Compares a with b by comparator, or by their natural ordering if it
+    // is null.
+    private static <T> int compare(T a, T b, Comparator<? super T> comparator) {
+        return comparator == null ? ((Comparable<? super T>) a).compareTo(b) : comparator.compare(a, b);
+    }
+    
+    // Replaces every element x at positions from (inclusive) to to
+    // (exclusive) with operator.apply(x), walking the Blocks.
+    protected void replaceInRange(int from, int to, UnaryOperator<T> operator) {
+        if(from >= to) {
+            return;
+        }
+        int blockIndex = locateBlock(from);
+        int elementIndex = locateElement(from);
+        int remaining = to - from;
+        while(remaining > 0) {
+            Block<T> block = writableBlock(blockIndex++);
+            int end = Math.min(block.size(), elementIndex + remaining);
+            remaining -= end - elementIndex;
+            for(; elementIndex < end; elementIndex++) {
+                block.setElement(elementIndex, operator.apply(block.getElement(elementIndex)));
+            }
+            elementIndex = 0;
+        }
+    }
+    
+    // Copies length elements, starting at position index, into dst
+    // starting at dstPos, one Block at a time.
+    protected void copyOut(int index, Object[] dst, int dstPos, int length) {
+        int blockIndex = locateBlock(index);
+        int elementIndex = locateElement(index);
+        while(length > 0) {
+            Block<T> block = getBlock(blockIndex++);
+            int n = Math.min(block.size() - elementIndex, length);
+            block.copyTo(elementIndex, dst, dstPos, n);
+            dstPos += n;
+            length -= n;
+            elementIndex = 0;
+        }
+    }
+    
+    // Runs action on every position, in parallel on pool as a RangeTask,
+    // or in this thread if there are no more than PARALLEL_THRESHOLD
+    // elements.
+    private void runInParallel(RangeAction action, ForkJoinPool pool) {
+        if(size <= PARALLEL_THRESHOLD) {
+            action.run(0, size);
+        } else {
+            pool.invoke(new RangeTask(0, size, action));
+        }
+    }
+    
+    // Work done by a RangeTask on the positions from (inclusive) to to
+    // (exclusive).
+    private interface RangeAction {
+        void run(int from, int to);
+    }
+    
+    @SuppressWarnings("serial")
+    // Runs a RangeAction on the positions from (inclusive) to to
+    // (exclusive), split along Block boundaries into parts of about
+    // PARALLEL_THRESHOLD elements or more. Tasks are never serialized.
+    private class RangeTask extends RecursiveAction {
+        private final int from;
+        private final int to;
+        private final RangeAction action;
         
-        return builder.toString();
+        RangeTask(int from, int to, RangeAction action) {
+            this.from = from;
+            this.to = to;
+            this.action = action;
+        }
+        
+        protected void compute() {
+            if(to - from > PARALLEL_THRESHOLD) {
+                int split = splitPoint(from, to);
+                if(split > 0) {
+                    invokeAll(new RangeTask(from, split, action), new RangeTask(split, to, action));
+                    return;
+                }
+            }
+            action.run(from, to);
+        }
+    }
+    
+    @SuppressWarnings("serial")
+    // Finds the first position from (inclusive) to to (exclusive) of an
+    // element equal to o, or -1, split as a RangeTask is.
+    private class IndexOfTask extends RecursiveTask<Integer> {
+        private final int from;
+        private final int to;
+        private final Object o;
+        
+        IndexOfTask(int from, int to, Object o) {
+            this.from = from;
+            this.to = to;
+            this.o = o;
+        }
+        
+        protected Integer compute() {
+            if(to - from > PARALLEL_THRESHOLD) {
+                int split = splitPoint(from, to);
+                if(split > 0) {
+                    IndexOfTask right = new IndexOfTask(split, to, o);
+                    right.fork();
+                    int index = new IndexOfTask(from, split, o).compute();
+                    int rightIndex = right.join();
+                    return index >= 0 ? index : rightIndex;
+                }
+            }
+            return indexOfInRange(from, to, o);
+        }
+    }
+    
+    // Returns the first position from (inclusive) to to (exclusive) of an
+    // element equal to o, or -1, walking the Blocks.
+    protected int indexOfInRange(int from, int to, Object o) {
+        int blockIndex = locateBlock(from);
+        int elementIndex = locateElement(from);
+        for(int i = from; i < to; blockIndex++, elementIndex = 0) {
+            Block<T> block = getBlock(blockIndex);
+            for(; elementIndex < block.size() && i < to; elementIndex++, i++) {
+                if(Objects.equals(o, block.getElement(elementIndex))) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+    
+    // Performs action on the elements at positions from (inclusive) to
+    // to (exclusive), walking the Blocks instead of locating every element.
+    protected void forEachInRange(int from, int to, Consumer<? super T> action) {
+        if(from >= to) {
+            return;
+        }
+        int blockIndex = locateBlock(from);
+        int elementIndex = locateElement(from);
+        int remaining = to - from;
+        while(remaining > 0) {
+            Block<T> block = getBlock(blockIndex++);
+            int end = Math.min(block.size(), elementIndex + remaining);
+            remaining -= end - elementIndex;
+            for(; elementIndex < end; elementIndex++) {
+                action.accept(block.getElement(elementIndex));
+            }
+            elementIndex = 0;
+        }
+    }
+    
+    // Iterator returned by iterator() and listIterator().
+    private class BlockIterator implements ListIterator<T> {
+        private int cursor; // position of the next element
+        private int blockIndex; // index of the Block holding the next element
+        private int elementIndex; // position of the next element in that Block
+        private int lastReturned = -1; // position of the element last returned, or -1
+        private int expectedModCount = modCount;
+        
+        BlockIterator(int cursor) {
+            this.cursor = cursor;
+            locateCursor();
+        }
+        
+        public boolean hasNext() {
+            return cursor < size;
+        }
+        
+        public T next() {
+            checkModCount();
+            if(cursor >= size) {
+                throw new NoSuchElementException();
+            }
+            Block<T> block = getBlock(blockIndex);
+            T x = block.getElement(elementIndex++);
+            if(elementIndex == block.size()) {
+                // Move on to the next Block.
+                blockIndex++;
+                elementIndex = 0;
+            }
+            lastReturned = cursor++;
+            return x;
+        }
+        
+        public boolean hasPrevious() {
+            return cursor > 0;
+        }
+        
+        public T previous() {
+            checkModCount();
+            if(cursor <= 0) {
+                throw new NoSuchElementException();
+            }
+            if(elementIndex == 0) {
+                // Move back to the end of the previous Block, which is full.
+                blockIndex--;
+                elementIndex = getBlock(blockIndex).size();
+            }
+            lastReturned = --cursor;
+            return getBlock(blockIndex).getElement(--elementIndex);
+        }
+        
+        public int nextIndex() {
+            return cursor;
+        }
+        
+        public int previousIndex() {
+            return cursor - 1;
+        }
+        
+        public void set(T x) {
+            if(lastReturned < 0) {
+                throw new IllegalStateException();
+            }
+            checkModCount();
+            DynamicArray.this.set(lastReturned, x);
+        }
+        
+        public void add(T x) {
+            checkModCount();
+            insert(cursor++, x);
+            lastReturned = -1;
+            expectedModCount = modCount;
+            locateCursor();
+        }
+        
+        public void remove() {
+            if(lastReturned < 0) {
+                throw new IllegalStateException();
+            }
+            checkModCount();
+            delete(lastReturned);
+            cursor = lastReturned;
+            lastReturned = -1;
+            expectedModCount = modCount;
+            locateCursor();
+        }
+        
+        // Finds the Block and the position in it of cursor again, after
+        // elements have moved.
+        private void locateCursor() {
+            blockIndex = locateBlock(cursor);
+            elementIndex = locateElement(cursor);
+        }
+        
+        private void checkModCount() {
+            if(modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+        }
+    }
+    
+    // Spliterator returned by spliterator(). Covers the elements at
+    // positions index (inclusive) to fence (exclusive).
+    private class BlockSpliterator implements Spliterator<T> {
+        private int index; // position of the next element
+        private final int fence; // one past the position of the last element
+        private final int expectedModCount;
+        
+        BlockSpliterator(int index, int fence, int expectedModCount) {
+            this.index = index;
+            this.fence = fence;
+            this.expectedModCount = expectedModCount;
+        }
+        
+        // Splits off the first half of the remaining elements, moved to
+        // the start of the Block holding the middle element so that
+        // neither part shares a Block with the other.
+        public Spliterator<T> trySplit() {
+            int split = splitPoint(index, fence);
+            if(split < 0) {
+                return null;
+            }
+            Spliterator<T> prefix = new BlockSpliterator(index, split, expectedModCount);
+            index = split;
+            return prefix;
+        }
+        
+        public boolean tryAdvance(Consumer<? super T> action) {
+            if(action == null) {
+                throw new NullPointerException();
+            }
+            if(index >= fence) {
+                return false;
+            }
+            T x = getBlock(locateBlock(index)).getElement(locateElement(index));
+            index++;
+            action.accept(x);
+            if(modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            return true;
+        }
+        
+        public void forEachRemaining(Consumer<? super T> action) {
+            if(action == null) {
+                throw new NullPointerException();
+            }
+            int from = index;
+            index = fence;
+            forEachInRange(from, fence, action);
+            if(modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+        }
+        
+        public long estimateSize() {
+            return fence - index;
+        }
+        
+        public int characteristics() {
+            return Spliterator.ORDERED | Spliterator.SIZED | Spliterator.SUBSIZED;
+        }
     }
 }
@@ -0,0 +1,167 @@
+import java.util.concurrent.atomic.LongAdder;
+
+// Counts the structural changes of the DynamicArrays it is attached to
+// with setMetrics, as well as the snapshots taken of them and the Blocks
+// they copy on write, and emits a RestructureEvent for each while JFR is
+// recording one. An array without metrics only tests a null field at
+// each change. One DynamicArrayMetrics may be shared by arrays used from
+// different threads.
+//
+// The state of one array at any moment, such as its slack, spine length
+// and SuperBlock occupancy, is read from the array itself.
+public class DynamicArrayMetrics {
+    protected final LongAdder blocksCreated = new LongAdder();
+    protected final LongAdder blocksDeleted = new LongAdder();
+    protected final LongAdder spineExpansions = new LongAdder(); // moves to a longer spine started
+    protected final LongAdder spineShrinks = new LongAdder();    // moves to a shorter spine started
+    protected final LongAdder spineMoves = new LongAdder();      // moves finished
+    protected final LongAdder superBlocksEntered = new LongAdder(); // moves to the next SuperBlock
+    protected final LongAdder superBlocksLeft = new LongAdder();    // moves back to the previous SuperBlock
+    protected final LongAdder snapshots = new LongAdder();          // snapshots taken
+    protected final LongAdder snapshotCopiedReferences = new LongAdder(); // spine entries and element slots copied by snapshots
+    protected final LongAdder blocksCopiedOnWrite = new LongAdder();      // shared Blocks copied before a change
+    protected final LongAdder copiedOnWriteReferences = new LongAdder();  // element slots copied with them
+    
+    // Called by addBlock after block has been created.
+    protected void blockCreated(AbstractDynamicArray array, AbstractBlock block) {
+        blocksCreated.increment();
+        emit("blockCreated", array, block.getNumber(), block.getCapacity());
+    }
+    
+    // Called by deleteLastBlock after block has been deleted.
+    protected void blockDeleted(AbstractDynamicArray array, AbstractBlock block) {
+        blocksDeleted.increment();
+        emit("blockDeleted", array, block.getNumber(), block.getCapacity());
+    }
+    
+    // Called by expandArray and shrinkArray when a move of arrayOfBlocks
+    // to a spine of length newLength starts.
+    protected void spineMoveStarted(AbstractDynamicArray array, int newLength) {
+        if(newLength > array.arrayOfBlocks.length) {
+            spineExpansions.increment();
+            emit("spineExpansionStarted", array, newLength, 0);
+        } else {
+            spineShrinks.increment();
+            emit("spineShrinkStarted", array, newLength, 0);
+        }
+    }
+    
+    // Called by migrate once arrayOfBlocks has been replaced.
+    protected void spineMoveFinished(AbstractDynamicArray array) {
+        spineMoves.increment();
+        emit("spineMoveFinished", array, array.arrayOfBlocks.length, 0);
+    }
+    
+    // Called by addBlock when superBlock becomes the last SuperBlock.
+    protected void superBlockEntered(AbstractDynamicArray array, SuperBlock superBlock) {
+        superBlocksEntered.increment();
+        emit("superBlockEntered", array, superBlock.getNumber(), superBlock.getMaxNumberOfElementsPerBlock());
+    }
+    
+    // Called by deleteLastBlock when the last SuperBlock, superBlock,
+    // has no Blocks left.
+    protected void superBlockLeft(AbstractDynamicArray array, SuperBlock superBlock) {
+        superBlocksLeft.increment();
+        emit("superBlockLeft", array, superBlock.getNumber(), superBlock.getMaxNumberOfElementsPerBlock());
+    }
+    
+    // Called by snapshot once a snapshot sharing numberOfBlocks Blocks
+    // has been taken. copied is the number of references it copied: the
+    // spine entries, and the slots of the last Block if it was copied.
+    protected void snapshotTaken(AbstractDynamicArray array, int numberOfBlocks, int copied) {
+        snapshots.increment();
+        snapshotCopiedReferences.add(copied);
+        emit("snapshotTaken", array, numberOfBlocks, 0);
+    }
+    
+    // Called by writableBlock after a Block shared with a snapshot has
+    // been replaced by block, a copy of it.
+    protected void blockCopiedOnWrite(AbstractDynamicArray array, AbstractBlock block) {
+        blocksCopiedOnWrite.increment();
+        copiedOnWriteReferences.add(block.getCapacity());
+        emit("blockCopiedOnWrite", array, block.getNumber(), block.getCapacity());
+    }
+    
+    // Commits a RestructureEvent if JFR is recording them.
+    private void emit(String operation, AbstractDynamicArray array, int number, int capacity) {
+        RestructureEvent event = new RestructureEvent();
+        if(event.shouldCommit()) {
+            event.operation = operation;
+            event.arrayClass = array.getClass().getSimpleName();
+            event.size = array.size();
+            event.spineLength = array.arrayOfBlocks.length;
+            event.number = number;
+            event.capacity = capacity;
+            event.commit();
+        }
+    }
+    
+    // Returns the number of Blocks created
+    public long getBlocksCreated() {
+        return blocksCreated.sum();
+    }
+    
+    // Returns the number of Blocks deleted
+    public long getBlocksDeleted() {
+        return blocksDeleted.sum();
+    }
+    
+    // Returns the number of moves to a longer spine started
+    public long getSpineExpansions() {
+        return spineExpansions.sum();
+    }
+    
+    // Returns the number of moves to a shorter spine started
+    public long getSpineShrinks() {
+        return spineShrinks.sum();
+    }
+    
+    // Returns the number of moves to another spine finished
+    public long getSpineMoves() {
+        return spineMoves.sum();
+    }
+    
+    // Returns the number of moves to the next SuperBlock
+    public long getSuperBlocksEntered() {
+        return superBlocksEntered.sum();
+    }
+    
+    // Returns the number of moves back to the previous SuperBlock
+    public long getSuperBlocksLeft() {
+        return superBlocksLeft.sum();
+    }
+    
+    // Returns the number of snapshots taken
+    public long getSnapshots() {
+        return snapshots.sum();
+    }
+    
+    // Returns the number of references copied by snapshots, which is the
+    // memory they took beyond the Blocks they share
+    public long getSnapshotCopiedReferences() {
+        return snapshotCopiedReferences.sum();
+    }
+    
+    // Returns the number of shared Blocks copied before a change
+    public long getBlocksCopiedOnWrite() {
+        return blocksCopiedOnWrite.sum();
+    }
+    
+    // Returns the number of element slots copied with them
+    public long getCopiedOnWriteReferences() {
+        return copiedOnWriteReferences.sum();
+    }
+    
+    // Create a pretty representation of the counters.
+    // Example:
+    // DynamicArrayMetrics: blocksCreated=6 blocksDeleted=1 spineExpansions=1 spineShrinks=0 spineMoves=1 superBlocksEntered=3 superBlocksLeft=0 snapshots=1 snapshotCopiedReferences=7 blocksCopiedOnWrite=1 copiedOnWriteReferences=2
+    public String toString() {
+        return "DynamicArrayMetrics: blocksCreated=" + getBlocksCreated() + " blocksDeleted=" + getBlocksDeleted()
+               + " spineExpansions=" + getSpineExpansions() + " spineShrinks=" + getSpineShrinks()
+               + " spineMoves=" + getSpineMoves() + " superBlocksEntered=" + getSuperBlocksEntered()
+               + " superBlocksLeft=" + getSuperBlocksLeft() + " snapshots=" + getSnapshots()
+               + " snapshotCopiedReferences=" + getSnapshotCopiedReferences()
+               + " blocksCopiedOnWrite=" + getBlocksCopiedOnWrite()
+               + " copiedOnWriteReferences=" + getCopiedOnWriteReferences();
+    }
+}
@@ -0,0 +1,170 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+// Writes a DynamicArray to a channel in a compact binary format and
+// reads it back. The elements are streamed one Block at a time straight
+// from and into the Blocks, so neither write nor read ever holds a
+// second copy of the data; only a buffer of BUFFER_SIZE bytes is used.
+// read creates each Block only when its data arrives, so a size in the
+// header that the data does not back cannot make it allocate more than
+// one Block beyond the data.
+//
+// Format, version 1:
+//   int     MAGIC
+//   byte    VERSION
+//   byte    flags; COMPRESSED if the rest is deflated
+//   int     number of elements n
+//   then, deflated if COMPRESSED, for every non-empty Block in order:
+//   bytes   a bitmap of the elements of the Block that are not null,
+//           one bit each, lowest bit first
+//   ...     every element that is not null, written by the ElementCodec
+// The number of elements in each Block follows from n and the Block
+// and SuperBlock geometry, so it is not written.
+public class DynamicArraySerializer<T> {
+    protected static final int MAGIC = 0x44594E53; // "DYNS"
+    protected static final byte VERSION = 1;
+    protected static final byte COMPRESSED = 1;
+    protected static final int BUFFER_SIZE = 64 * 1024;
+    
+    protected final ElementCodec<T> codec; // writes and reads the elements
+    protected final boolean compress; // whether write deflates the elements
+    
+    // Workhorse constructor. write stores elements with codec, deflated
+    // if compress is true. read accepts both.
+    public DynamicArraySerializer(ElementCodec<T> codec, boolean compress) {
+        this.codec = codec;
+        this.compress = compress;
+    }
+    
+    // Writes array to channel. channel is left open.
+    // Throws IOException if channel cannot be written.
+    // Target complexity: O(n)
+    public void write(DynamicArray<? extends T> array, WritableByteChannel channel) throws IOException {
+        OutputStream stream = new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE);
+        DataOutputStream header = new DataOutputStream(stream);
+        header.writeInt(MAGIC);
+        header.writeByte(VERSION);
+        header.writeByte(compress ? COMPRESSED : 0);
+        header.writeInt(array.size());
+        if(!compress) {
+            writeBlocks(array, stream);
+            return;
+        }
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            DeflaterOutputStream deflated = new DeflaterOutputStream(stream, deflater, BUFFER_SIZE);
+            writeBlocks(array, deflated);
+            // Ends the deflated data without closing channel.
+            deflated.finish();
+            stream.flush();
+        } finally {
+            deflater.end();
+        }
+    }
+    
+    // Writes the bitmap and the elements of every non-empty Block of
+    // array to stream, and flushes it.
+    private void writeBlocks(DynamicArray<? extends T> array, OutputStream stream) throws IOException {
+        DataOutputStream out = new DataOutputStream(stream);
+        byte[] bitmap = new byte[0];
+        int remaining = array.size();
+        for(int i = 0; remaining > 0; i++) {
+            Block<? extends T> block = array.getBlock(i);
+            int n = Math.min(block.size(), remaining);
+            if(bitmap.length < (n + 7) / 8) {
+                bitmap = new byte[(block.getCapacity() + 7) / 8];
+            }
+            for(int j = 0; j < n; j++) {
+                if(block.getElement(j) != null) {
+                    bitmap[j >> 3] |= 1 << (j & 7);
+                } else {
+                    bitmap[j >> 3] &= ~(1 << (j & 7));
+                }
+            }
+            out.write(bitmap, 0, (n + 7) / 8);
+            for(int j = 0; j < n; j++) {
+                T x = block.getElement(j);
+                if(x != null) {
+                    codec.write(out, x);
+                }
+            }
+            remaining -= n;
+        }
+        out.flush();
+    }
+    
+    // Reads a DynamicArray written by write from channel. Each Block is
+    // created as its data is reached, and every element is read straight
+    // into its Block. channel is left open, but may have been read past
+    // the end of the DynamicArray.
+    // Throws IOException if channel cannot be read or does not hold a
+    // DynamicArray in this format.
+    // Target complexity: O(n)
+    public DynamicArray<T> read(ReadableByteChannel channel) throws IOException {
+        InputStream stream = new BufferedInputStream(Channels.newInputStream(channel), BUFFER_SIZE);
+        DataInputStream header = new DataInputStream(stream);
+        if(header.readInt() != MAGIC) {
+            throw new IOException("not a serialized DynamicArray");
+        }
+        byte version = header.readByte();
+        if(version != VERSION) {
+            throw new IOException("unsupported version " + version);
+        }
+        byte flags = header.readByte();
+        int size = header.readInt();
+        if(size < 0) {
+            throw new IOException("negative size " + size);
+        }
+        if((flags & COMPRESSED) == 0) {
+            return readBlocks(stream, size);
+        }
+        Inflater inflater = new Inflater();
+        try {
+            return readBlocks(new InflaterInputStream(stream, inflater, BUFFER_SIZE), size);
+        } finally {
+            inflater.end();
+        }
+    }
+    
+    // Reads size elements from stream into a new DynamicArray, Block by
+    // Block. Each Block is created once the previous one is filled, by
+    // growing the array into it by one space and then by the rest of
+    // its capacity, as far as size allows.
+    // Throws EOFException if stream ends before the last element.
+    private DynamicArray<T> readBlocks(InputStream stream, int size) throws IOException {
+        DataInputStream in = new DataInputStream(stream);
+        DynamicArray<T> array = new DynamicArray<T>();
+        byte[] bitmap = new byte[0];
+        int remaining = size;
+        for(int i = 0; remaining > 0; i++) {
+            array.growBy(1);
+            Block<T> block = array.getBlock(i);
+            int n = Math.min(block.getCapacity(), remaining);
+            array.growBy(n - 1);
+            array.size += n;
+            if(bitmap.length < (n + 7) / 8) {
+                bitmap = new byte[(block.getCapacity() + 7) / 8];
+            }
+            in.readFully(bitmap, 0, (n + 7) / 8);
+            for(int j = 0; j < n; j++) {
+                if((bitmap[j >> 3] & (1 << (j & 7))) != 0) {
+                    block.setElement(j, codec.read(in));
+                }
+            }
+            remaining -= n;
+        }
+        return array;
+    }
+}
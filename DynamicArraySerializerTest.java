@@ -0,0 +1,115 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.Arrays;
+import java.util.Objects;
+
+// Runnable test of DynamicArraySerializer: arrays written and read back,
+// with and without compression, and streams that end early or claim
+// more elements than they hold.
+// Throws AssertionError on the first difference.
+public class DynamicArraySerializerTest {
+    public static void main(String[] args) throws IOException {
+        for(boolean compress : new boolean[] {false, true}) {
+            for(int n : new int[] {0, 1, 2, 3, 4, 7, 8, 100, 1023, 1024, 100000}) {
+                testRoundTrip(n, compress);
+            }
+            testTruncated(compress);
+            testSizeBeyondData(compress);
+            testFailedWrite(compress);
+        }
+        System.out.println("DynamicArraySerializerTest: ok");
+    }
+    
+    static void check(boolean condition, String message) {
+        if(!condition) {
+            throw new AssertionError(message);
+        }
+    }
+    
+    // Returns an array of n strings, with every seventh one null.
+    static DynamicArray<String> strings(int n) {
+        DynamicArray<String> array = new DynamicArray<String>();
+        for(int i = 0; i < n; i++) {
+            array.add(i % 7 == 3 ? null : "s" + i);
+        }
+        return array;
+    }
+    
+    static byte[] write(DynamicArray<String> array, boolean compress) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new DynamicArraySerializer<String>(ElementCodec.STRINGS, compress).write(array, Channels.newChannel(bytes));
+        return bytes.toByteArray();
+    }
+    
+    static DynamicArray<String> read(byte[] bytes) throws IOException {
+        return new DynamicArraySerializer<String>(ElementCodec.STRINGS, false).read(Channels.newChannel(new ByteArrayInputStream(bytes)));
+    }
+    
+    static void testRoundTrip(int n, boolean compress) throws IOException {
+        DynamicArray<String> array = strings(n);
+        DynamicArray<String> copy = read(write(array, compress));
+        check(copy.size() == n, "size " + copy.size() + " instead of " + n);
+        for(int i = 0; i < n; i++) {
+            check(Objects.equals(copy.get(i), array.get(i)), "element " + i + " of " + n);
+        }
+        copy.add("more");
+        check(copy.get(n).equals("more") && copy.size() == n + 1, "add after read");
+    }
+    
+    // A stream cut anywhere after the header fails with EOFException.
+    static void testTruncated(boolean compress) throws IOException {
+        byte[] bytes = write(strings(1000), compress);
+        for(int length = 10; length < bytes.length; length += 97) {
+            try {
+                read(Arrays.copyOf(bytes, length));
+                throw new AssertionError("read a stream cut at " + length);
+            } catch(EOFException e) {
+                // as it should be
+            }
+        }
+    }
+    
+    // A header that claims Integer.MAX_VALUE elements over the data of 10
+    // fails when the data runs out, without first allocating Blocks for
+    // every element it claims.
+    static void testSizeBeyondData(boolean compress) throws IOException {
+        byte[] bytes = write(strings(10), compress);
+        ByteBuffer.wrap(bytes).putInt(6, Integer.MAX_VALUE);
+        try {
+            read(bytes);
+            throw new AssertionError("read " + Integer.MAX_VALUE + " elements out of 10");
+        } catch(EOFException e) {
+            // as it should be
+        }
+    }
+    
+    // A codec that fails part of the way through fails write, which must
+    // not leave anything behind that breaks the next write.
+    static void testFailedWrite(boolean compress) throws IOException {
+        ElementCodec<String> failing = new ElementCodec<String>() {
+            public void write(DataOutput out, String x) throws IOException {
+                if(x.equals("s501")) {
+                    throw new IOException("cannot write " + x);
+                }
+                ElementCodec.STRINGS.write(out, x);
+            }
+            
+            public String read(DataInput in) throws IOException {
+                return ElementCodec.STRINGS.read(in);
+            }
+        };
+        try {
+            new DynamicArraySerializer<String>(failing, compress).write(strings(1000), Channels.newChannel(new ByteArrayOutputStream()));
+            throw new AssertionError("write did not fail");
+        } catch(IOException e) {
+            check(e.getMessage().equals("cannot write s501"), "wrong failure " + e);
+        }
+        testRoundTrip(1000, compress);
+    }
+}
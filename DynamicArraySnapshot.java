@@ -0,0 +1,106 @@
+import java.util.AbstractList;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+import java.util.function.Consumer;
+
+// An immutable view of a DynamicArray at the moment
+// DynamicArray.snapshot() was called. It holds its own copy of the spine,
+// but shares the full Blocks with the DynamicArray, which copies such a
+// Block before it next changes it. Elements are located with the same
+// Block and SuperBlock geometry as the DynamicArray, so get is O(1).
+//
+// Nothing in a snapshot ever changes, so any number of threads may read
+// it once it has been handed to them. Every method that would change it
+// throws UnsupportedOperationException.
+class DynamicArraySnapshot<T> extends AbstractList<T> implements RandomAccess {
+    private final Object[] arrayOfBlocks; // the Blocks holding the elements, in order
+    private final int size; // number of elements
+    
+    // Called by DynamicArray.snapshot. Every Block of arrayOfBlocks must
+    // be full but the last one, which is never changed again.
+    DynamicArraySnapshot(Object[] arrayOfBlocks, int size) {
+        this.arrayOfBlocks = arrayOfBlocks;
+        this.size = size;
+    }
+    
+    @SuppressWarnings("unchecked")
+    // Returns the Block at position i in arrayOfBlocks.
+    // Target complexity: O(1)
+    private Block<T> getBlock(int index) {
+        return (Block<T>) arrayOfBlocks[index];
+    }
+    
+    // Returns the element at position i.
+    // Throws IndexOutOfBoundsException if index < 0 or
+    // index > size -1, as List.get does.
+    // Target complexity: O(1)
+    public T get(int i) {
+        if(i < 0 || i > size - 1) {
+            throw new IndexOutOfBoundsException();
+        }
+        return getBlock(AbstractDynamicArray.locateBlock(i)).getElement(AbstractDynamicArray.locateElement(i));
+    }
+    
+    // Returns the number of elements.
+    public int size() {
+        return size;
+    }
+    
+    // Returns an iterator over the elements in order, walking the Blocks.
+    public Iterator<T> iterator() {
+        return new Iterator<T>() {
+            private int blockIndex; // index of the Block holding the next element
+            private int elementIndex; // position of the next element in that Block
+            private int remaining = size; // number of elements not returned yet
+            
+            public boolean hasNext() {
+                return remaining > 0;
+            }
+            
+            public T next() {
+                if(remaining == 0) {
+                    throw new NoSuchElementException();
+                }
+                Block<T> block = getBlock(blockIndex);
+                T x = block.getElement(elementIndex++);
+                if(elementIndex == block.size()) {
+                    // Move on to the next Block.
+                    blockIndex++;
+                    elementIndex = 0;
+                }
+                remaining--;
+                return x;
+            }
+        };
+    }
+    
+    // Performs action on every element in order, one Block at a time.
+    // Target complexity: O(n)
+    public void forEach(Consumer<? super T> action) {
+        int remaining = size;
+        for(int blockIndex = 0; remaining > 0; blockIndex++) {
+            Block<T> block = getBlock(blockIndex);
+            int n = Math.min(block.size(), remaining);
+            for(int elementIndex = 0; elementIndex < n; elementIndex++) {
+                action.accept(block.getElement(elementIndex));
+            }
+            remaining -= n;
+        }
+    }
+    
+    // Returns a new array holding the elements in order, copied one
+    // Block at a time.
+    // Target complexity: O(n), with O(sqrt n) copies
+    public Object[] toArray() {
+        Object[] elements = new Object[size];
+        int index = 0;
+        for(int blockIndex = 0; index < size; blockIndex++) {
+            Block<T> block = getBlock(blockIndex);
+            int n = Math.min(block.size(), size - index);
+            block.copyTo(0, elements, index, n);
+            index += n;
+        }
+        return elements;
+    }
+}
@@ -0,0 +1,437 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Objects;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+
+// Runnable test of DynamicArray: the locator against the geometry of the
+// Blocks over the whole int range and against the original floating
+// point locate, then random operations against an ArrayList, checking
+// the structure of the DynamicArray as they go.
+// Throws AssertionError on the first difference.
+public class DynamicArrayTest {
+    public static void main(String[] args) {
+        testLocatorAgainstGeometry();
+        testLocatorAgainstLog2();
+        testAgainstArrayList(new Random(1));
+        testGrowAndShrink(new Random(2));
+        testSearch(new Random(3));
+        testOwnPool(new Random(4));
+        testMetricsThroughClear(new Random(5));
+        testBadPositions();
+        System.out.println("DynamicArrayTest: ok");
+    }
+    
+    static void check(boolean condition, String message) {
+        if(!condition) {
+            throw new AssertionError(message);
+        }
+    }
+    
+    // Walks every position from 0 to Integer.MAX_VALUE - 1 in order,
+    // keeping the Block and the position in it by counting: SuperBlock k
+    // holds 2^floor(k/2) Blocks of 2^ceil(k/2) elements. locateBlock and
+    // locateElement must agree at every position, and firstPositionOf at
+    // the first position of every Block.
+    static void testLocatorAgainstGeometry() {
+        int blockIndex = 0;
+        int elementIndex = 0;
+        int k = 0; // SuperBlock of the Block
+        int capacity = 1; // capacity of the Block
+        int blocksLeft = 1; // Blocks of SuperBlock k from this one on
+        for(int i = 0; ; i++) {
+            if(AbstractDynamicArray.locateBlock(i) != blockIndex || AbstractDynamicArray.locateElement(i) != elementIndex) {
+                throw new AssertionError("locate " + i + ": " + AbstractDynamicArray.locateBlock(i) + "," + AbstractDynamicArray.locateElement(i)
+                                         + " instead of " + blockIndex + "," + elementIndex);
+            }
+            if(elementIndex == 0) {
+                check(AbstractDynamicArray.firstPositionOf(blockIndex) == i, "firstPositionOf " + blockIndex);
+            }
+            if(i == Integer.MAX_VALUE - 1) {
+                break;
+            }
+            if(++elementIndex == capacity) {
+                elementIndex = 0;
+                blockIndex++;
+                if(--blocksLeft == 0) {
+                    k++;
+                    capacity = 1 << ((k + 1) / 2);
+                    blocksLeft = 1 << (k / 2);
+                }
+            }
+        }
+    }
+    
+    // Compares the locator with the original one, which took k =
+    // floor(log2 r) from Math.log, at every position below 2^24 and
+    // around every power of 2. Where they differ, the original must have
+    // got k wrong.
+    static void testLocatorAgainstLog2() {
+        for(int i = 0; i < 1 << 24; i++) {
+            checkAgainstLog2(i);
+        }
+        for(int k = 24; k < 31; k++) {
+            for(int d = -64; d <= 64; d++) {
+                long i = (1L << k) - 1 + d;
+                if(i >= 0 && i < Integer.MAX_VALUE) {
+                    checkAgainstLog2((int) i);
+                }
+            }
+        }
+    }
+    
+    static void checkAgainstLog2(int i) {
+        int r = i + 1;
+        int k = (int) (Math.log(r) / Math.log(2));
+        if(k != 31 - Integer.numberOfLeadingZeros(r)) {
+            return; // the original locate was wrong here
+        }
+        int p = k % 2 == 0 ? 2 * ((1 << k / 2) - 1) : 2 * ((1 << k / 2) - 1) + (1 << k / 2);
+        int b = (r >> (k - k / 2)) & ((1 << k / 2) - 1);
+        int e = r & ((1 << ((k + 1) >> 1)) - 1);
+        check(AbstractDynamicArray.locateBlock(i) == p + b && AbstractDynamicArray.locateElement(i) == e, "log2 locate " + i);
+    }
+    
+    // Random operations on a DynamicArray and an ArrayList that must stay
+    // equal.
+    static void testAgainstArrayList(Random random) {
+        DynamicArray<Integer> array = new DynamicArray<Integer>();
+        List<Integer> expected = new ArrayList<Integer>();
+        for(int step = 0; step < 20000; step++) {
+            int size = expected.size();
+            switch(random.nextInt(16)) {
+            case 0: case 1: case 2: {
+                Integer x = random.nextInt(100);
+                array.add(x);
+                expected.add(x);
+                break;
+            }
+            case 3:
+                if(size > 0) {
+                    array.remove();
+                    expected.remove(size - 1);
+                }
+                break;
+            case 4:
+                if(size > 0) {
+                    int i = random.nextInt(size);
+                    Integer x = random.nextInt(100);
+                    check(Objects.equals(array.set(i, x), expected.set(i, x)), "set");
+                }
+                break;
+            case 5: {
+                int i = random.nextInt(size + 1);
+                Integer x = random.nextInt(100);
+                array.add(i, x);
+                expected.add(i, x);
+                break;
+            }
+            case 6:
+                if(size > 0) {
+                    int i = random.nextInt(size);
+                    check(Objects.equals(array.remove(i), expected.remove(i)), "remove(int)");
+                }
+                break;
+            case 7: {
+                int n = random.nextInt(size + 1);
+                array.removeLast(n);
+                expected.subList(size - n, size).clear();
+                break;
+            }
+            case 8: {
+                Integer[] elements = new Integer[random.nextInt(300)];
+                for(int i = 0; i < elements.length; i++) {
+                    elements[i] = random.nextInt(100);
+                }
+                array.addAll(elements);
+                expected.addAll(Arrays.asList(elements));
+                break;
+            }
+            case 9: {
+                int i = random.nextInt(size + 1);
+                List<Integer> elements = Collections.nCopies(random.nextInt(50), random.nextInt(100));
+                array.addAll(i, elements);
+                expected.addAll(i, elements);
+                break;
+            }
+            case 10: {
+                Integer x = random.nextInt(100);
+                check(array.remove(x) == expected.remove(x), "remove(Object)");
+                check(array.indexOf(x) == expected.indexOf(x) && array.lastIndexOf(x) == expected.lastIndexOf(x), "indexOf");
+                break;
+            }
+            case 11: {
+                int m = random.nextInt(20) + 2;
+                check(array.removeIf(x -> x % m == 0) == expected.removeIf(x -> x % m == 0), "removeIf");
+                break;
+            }
+            case 12:
+                if(random.nextInt(10) == 0) {
+                    Comparator<Integer> comparator = random.nextBoolean() ? null : Comparator.reverseOrder();
+                    array.sort(comparator);
+                    expected.sort(comparator);
+                }
+                break;
+            case 13:
+                if(size > 0) {
+                    int from = random.nextInt(size);
+                    int to = from + random.nextInt(size - from + 1);
+                    List<Integer> view = array.subList(from, to);
+                    check(view.equals(expected.subList(from, to)), "subList");
+                    if(to > from) {
+                        view.set(0, -1);
+                        expected.set(from, -1);
+                    }
+                }
+                break;
+            case 14: {
+                ListIterator<Integer> it = array.listIterator(random.nextInt(size + 1));
+                ListIterator<Integer> expectedIt = expected.listIterator(it.nextIndex());
+                for(int moves = random.nextInt(20); moves > 0; moves--) {
+                    if(random.nextBoolean() && it.hasNext()) {
+                        check(Objects.equals(it.next(), expectedIt.next()), "next");
+                    } else if(it.hasPrevious()) {
+                        check(Objects.equals(it.previous(), expectedIt.previous()), "previous");
+                    } else {
+                        continue;
+                    }
+                    int change = random.nextInt(3);
+                    if(change == 0) {
+                        it.set(7);
+                        expectedIt.set(7);
+                    } else if(change == 1) {
+                        it.remove();
+                        expectedIt.remove();
+                    }
+                }
+                break;
+            }
+            default:
+                if(random.nextInt(50) == 0) {
+                    array.clear();
+                    expected.clear();
+                }
+                break;
+            }
+            if(step % 20 == 0) {
+                checkEqual(expected, array);
+            }
+        }
+        checkEqual(expected, array);
+    }
+    
+    // Grows to random sizes up to 200000 and shrinks back to a third, one
+    // element at a time, checking the structure along the way.
+    static void testGrowAndShrink(Random random) {
+        DynamicArray<Integer> array = new DynamicArray<Integer>();
+        List<Integer> expected = new ArrayList<Integer>();
+        for(int round = 0; round < 20; round++) {
+            int target = random.nextInt(200000);
+            while(expected.size() < target) {
+                array.add(expected.size());
+                expected.add(expected.size());
+                if(expected.size() % 97 == 0) {
+                    checkStructure(array);
+                }
+            }
+            while(expected.size() > target / 3) {
+                array.remove();
+                expected.remove(expected.size() - 1);
+                if(expected.size() % 97 == 0) {
+                    checkStructure(array);
+                }
+            }
+            checkEqual(expected, array);
+        }
+    }
+    
+    // binarySearch with and without a comparator, indexOf and the
+    // parallel operations, below and above PARALLEL_THRESHOLD.
+    static void testSearch(Random random) {
+        for(int n : new int[] {0, 1, 100, DynamicArray.PARALLEL_THRESHOLD, DynamicArray.PARALLEL_THRESHOLD + 1, 100000}) {
+            DynamicArray<Integer> array = new DynamicArray<Integer>();
+            List<Integer> expected = new ArrayList<Integer>();
+            for(int i = 0; i < n; i++) {
+                Integer x = random.nextInt(n * 2 + 1);
+                array.add(x);
+                expected.add(x);
+            }
+            array.sort(null);
+            Collections.sort(expected);
+            for(int step = 0; step < 200; step++) {
+                Integer key = random.nextInt(n * 2 + 3) - 1;
+                int found = array.binarySearch(key, null);
+                int expectedFound = Collections.binarySearch(expected, key);
+                check(found >= 0 ? expectedFound >= 0 && expected.get(found).equals(key) : found == expectedFound, "binarySearch " + key);
+                check(array.binarySearch(key, Comparator.naturalOrder()) == found, "binarySearch with comparator " + key);
+                check(array.indexOf(key) == expected.indexOf(key), "indexOf " + key);
+            }
+            array.parallelReplaceAll(x -> x + 1);
+            expected.replaceAll(x -> x + 1);
+            long[] sum = new long[1];
+            array.parallelForEach(x -> {
+                synchronized(sum) {
+                    sum[0] += x;
+                }
+            });
+            check(sum[0] == expected.stream().mapToLong(x -> x).sum(), "parallelForEach");
+            checkEqual(expected, array);
+        }
+    }
+    
+    // The parallel operations on a dedicated ForkJoinPool, which must run
+    // every task of a large DynamicArray on that pool's threads.
+    static void testOwnPool(Random random) {
+        ForkJoinPool pool = new ForkJoinPool(3);
+        try {
+            for(int n : new int[] {100, DynamicArray.PARALLEL_THRESHOLD * 10}) {
+                DynamicArray<Integer> array = new DynamicArray<Integer>();
+                List<Integer> expected = new ArrayList<Integer>();
+                for(int i = 0; i < n; i++) {
+                    Integer x = random.nextInt(n);
+                    array.add(x);
+                    expected.add(x);
+                }
+                array.parallelReplaceAll(x -> x + 1, pool);
+                expected.replaceAll(x -> x + 1);
+                long[] sum = new long[1];
+                boolean[] elsewhere = new boolean[1];
+                array.parallelForEach(x -> {
+                    Thread thread = Thread.currentThread();
+                    synchronized(sum) {
+                        sum[0] += x;
+                        if(!(thread instanceof ForkJoinWorkerThread && ((ForkJoinWorkerThread) thread).getPool() == pool)) {
+                            elsewhere[0] = true;
+                        }
+                    }
+                }, pool);
+                check(sum[0] == expected.stream().mapToLong(x -> x).sum(), "parallelForEach on a pool");
+                check(elsewhere[0] == (n <= DynamicArray.PARALLEL_THRESHOLD), "parallelForEach ran outside the pool");
+                for(int step = 0; step < 20; step++) {
+                    Integer key = random.nextInt(n + 2);
+                    check(array.indexOf(key, pool) == expected.indexOf(key), "indexOf on a pool " + key);
+                }
+                array.parallelSort(Comparator.reverseOrder(), pool);
+                expected.sort(Comparator.reverseOrder());
+                checkEqual(expected, array);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+    
+    // Random adds, removes and clears, some of them while a move of the
+    // spine is in progress, on an array with metrics. The Blocks created
+    // and not deleted, and the SuperBlocks entered and not left, must
+    // always be those the array holds beyond the first, and a clear must
+    // finish the move it interrupts.
+    static void testMetricsThroughClear(Random random) {
+        DynamicArray<Integer> array = new DynamicArray<Integer>();
+        DynamicArrayMetrics metrics = new DynamicArrayMetrics();
+        array.setMetrics(metrics);
+        int clearsDuringMoves = 0;
+        for(int step = 0; step < 300; step++) {
+            int n = random.nextInt(20000);
+            switch(random.nextInt(3)) {
+            case 0:
+                for(int i = 0; i < n; i++) {
+                    array.add(i);
+                }
+                break;
+            case 1:
+                array.removeLast(Math.min(n, array.size()));
+                break;
+            default:
+                while(array.newArrayOfBlocks == null && random.nextInt(4) > 0) {
+                    array.add(step);
+                }
+                long moves = metrics.getSpineMoves();
+                boolean moving = array.newArrayOfBlocks != null;
+                array.clear();
+                check(metrics.getSpineMoves() == moves + (moving ? 1 : 0) && array.newArrayOfBlocks == null, "move interrupted by clear");
+                clearsDuringMoves += moving ? 1 : 0;
+                break;
+            }
+            check(metrics.getBlocksCreated() - metrics.getBlocksDeleted() == array.numberOfDataBlocks - 1, "Blocks counted: " + metrics);
+            check(metrics.getSuperBlocksEntered() - metrics.getSuperBlocksLeft() == array.numberOfSuperBlocks - 1, "SuperBlocks counted: " + metrics);
+            check(metrics.getSpineMoves() <= metrics.getSpineExpansions() + metrics.getSpineShrinks(), "more moves finished than started");
+        }
+        check(clearsDuringMoves > 0, "no clear during a move");
+    }
+    
+    // get and set at positions outside the array throw
+    // IndexOutOfBoundsException, as List specifies, in a DynamicArray and
+    // in a ConcurrentDynamicArray.
+    static void testBadPositions() {
+        for(DynamicArray<Integer> array : List.of(new DynamicArray<Integer>(), new ConcurrentDynamicArray<Integer>())) {
+            for(int n = 0; n < 3; n++) {
+                for(int i : new int[] {-1, n, n + 1, Integer.MIN_VALUE, Integer.MAX_VALUE}) {
+                    try {
+                        array.get(i);
+                        throw new AssertionError("get " + i + " of " + n);
+                    } catch(IndexOutOfBoundsException e) {
+                        // as it should be
+                    }
+                    try {
+                        array.set(i, i);
+                        throw new AssertionError("set " + i + " of " + n);
+                    } catch(IndexOutOfBoundsException e) {
+                        // as it should be
+                    }
+                }
+                array.add(n);
+            }
+        }
+    }
+    
+    // Compares array with expected through get, the iterator, equals,
+    // hashCode and toString, then checks its structure.
+    static void checkEqual(List<Integer> expected, DynamicArray<Integer> array) {
+        check(array.size() == expected.size(), "size " + array.size() + " instead of " + expected.size());
+        for(int i = 0; i < expected.size(); i++) {
+            check(Objects.equals(array.get(i), expected.get(i)), "get " + i);
+        }
+        Iterator<Integer> it = array.iterator();
+        for(Integer x : expected) {
+            check(Objects.equals(it.next(), x), "iterator");
+        }
+        check(!it.hasNext(), "iterator end");
+        check(array.equals(expected) && expected.equals(array), "equals");
+        check(array.hashCode() == expected.hashCode(), "hashCode");
+        check(array.toString().equals(expected.toString()), "toString");
+        checkStructure(array);
+    }
+    
+    // Checks the counters, the Blocks and the spine of array.
+    static void checkStructure(AbstractDynamicArray array) {
+        check(array.numberOfEmptyDataBlocks <= 1, "more than one empty Block");
+        int total = 0;
+        for(int i = 0; i < array.sizeOfArrayOfBlocks; i++) {
+            AbstractBlock block = (AbstractBlock) array.arrayOfBlocks[i];
+            check(block.getNumber() == i, "Block number " + i);
+            check(i >= array.indexOfLastNonEmptyDataBlock || block.size() == block.getCapacity(), "Block " + i + " not full");
+            int r = AbstractDynamicArray.firstPositionOf(i) + 1;
+            check(block.getCapacity() == 1 << ((AbstractDynamicArray.floorLog2(r) + 1) / 2), "capacity of Block " + i);
+            total += block.size();
+        }
+        check(total == array.size(), "sizes of the Blocks");
+        check(array.sizeOfArrayOfBlocks == array.indexOfLastDataBlock + 1 && array.numberOfDataBlocks == array.sizeOfArrayOfBlocks, "Block counts");
+        check(array.numberOfNonEmptyDataBlocks == array.indexOfLastNonEmptyDataBlock + 1, "non-empty Block count");
+        check(array.sizeOfArrayOfBlocks <= array.arrayOfBlocks.length, "spine too short");
+        for(int i = array.sizeOfArrayOfBlocks; i < array.arrayOfBlocks.length; i++) {
+            check(array.arrayOfBlocks[i] == null, "stale spine entry " + i);
+        }
+        if(array.newArrayOfBlocks != null) {
+            for(int i = 0; i < array.numberOfMigratedBlocks; i++) {
+                check(array.newArrayOfBlocks[i] == array.arrayOfBlocks[i], "migrated entry " + i);
+            }
+        }
+        check(array.superBlocks[array.numberOfSuperBlocks - 1] == array.lastSuperBlock, "last SuperBlock");
+    }
+}
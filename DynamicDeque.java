@@ -0,0 +1,252 @@
+import java.io.IOException;
+import java.io.Writer;
+import java.util.NoSuchElementException;
+
+// A double-ended queue made of two DynamicArrays placed back to back.
+// front holds the elements before the middle in reverse order, so that
+// addFirst and pollFirst work on its end, and back holds the rest in
+// order. Each side grows its Blocks and SuperBlocks away from the middle
+// with the usual sizing rules, so at most O(sqrt n) space is wasted.
+// When one side runs out, the other is read from its bottom through a
+// head position, as in DynamicQueue, and its Blocks are dropped as soon
+// as they are drained. Every operation is O(1); nothing is ever copied
+// or reversed.
+public class DynamicDeque<T> {
+    protected DynamicArray<T> front; // elements before the middle, first one last
+    protected DynamicArray<T> back;  // elements after the middle, last one last
+    protected int frontHead; // position in front of the last element of the deque, if front holds it
+    protected int backHead;  // position in back of the first element of the deque, if back holds it
+    
+    // Workhorse constructor. Initialize variables.
+    public DynamicDeque() {
+        front = new DynamicArray<T>();
+        back = new DynamicArray<T>();
+    }
+    
+    // Adds x to the front of the deque
+    // Target complexity: O(1)
+    public void addFirst(T x) {
+        front.add(x);
+    }
+    
+    // Adds x to the rear of the deque
+    // Target complexity: O(1)
+    public void addLast(T x) {
+        back.add(x);
+    }
+    
+    // Removes and returns the element at the front of the deque, or
+    // returns null if the deque is empty.
+    // Target complexity: O(1)
+    public T pollFirst() {
+        if(front.size() > frontHead) {
+            T x = front.get(front.size() - 1);
+            front.remove();
+            if(front.size() == frontHead) {
+                front = new DynamicArray<T>();
+                frontHead = 0;
+            }
+            return x;
+        }
+        if(back.size() > backHead) {
+            // front is empty, so the first element is at the bottom of back.
+            T x = takeAt(back, backHead++);
+            if(back.size() == backHead) {
+                back = new DynamicArray<T>();
+                backHead = 0;
+            }
+            return x;
+        }
+        return null;
+    }
+    
+    // Removes and returns the element at the rear of the deque, or
+    // returns null if the deque is empty.
+    // Target complexity: O(1)
+    public T pollLast() {
+        if(back.size() > backHead) {
+            T x = back.get(back.size() - 1);
+            back.remove();
+            if(back.size() == backHead) {
+                back = new DynamicArray<T>();
+                backHead = 0;
+            }
+            return x;
+        }
+        if(front.size() > frontHead) {
+            // back is empty, so the last element is at the bottom of front.
+            T x = takeAt(front, frontHead++);
+            if(front.size() == frontHead) {
+                front = new DynamicArray<T>();
+                frontHead = 0;
+            }
+            return x;
+        }
+        return null;
+    }
+    
+    // Removes and returns the element at the front of the deque
+    // Throws NoSuchElementException if this deque is empty.
+    // Target complexity: O(1)
+    public T removeFirst() {
+        if(isEmpty()) {
+            throw new NoSuchElementException();
+        }
+        return pollFirst();
+    }
+    
+    // Removes and returns the element at the rear of the deque
+    // Throws NoSuchElementException if this deque is empty.
+    // Target complexity: O(1)
+    public T removeLast() {
+        if(isEmpty()) {
+            throw new NoSuchElementException();
+        }
+        return pollLast();
+    }
+    
+    // Returns the element at the front of the deque, or null if the
+    // deque is empty.
+    // Target complexity: O(1)
+    public T peekFirst() {
+        return isEmpty() ? null : get(0);
+    }
+    
+    // Returns the element at the rear of the deque, or null if the
+    // deque is empty.
+    // Target complexity: O(1)
+    public T peekLast() {
+        return isEmpty() ? null : get(size() - 1);
+    }
+    
+    // Returns the element at position i in the deque, counting from the
+    // front.
+    // Throws IllegalArgumentException if index < 0 or
+    // index > size -1;
+    // Target complexity: O(1)
+    public T get(int i) {
+        if(i < 0 || i > size() - 1) {
+            throw new IllegalArgumentException();
+        }
+        int sizeOfFront = front.size() - frontHead;
+        if(i < sizeOfFront) {
+            return front.get(front.size() - 1 - i);
+        }
+        return back.get(backHead + i - sizeOfFront);
+    }
+    
+    // Clears the element at position index of side, which is at the
+    // bottom of the elements left in side, and returns it. Its Block is
+    // dropped once drained so that it can be collected.
+    private T takeAt(DynamicArray<T> side, int index) {
+        int blockIndex = AbstractDynamicArray.locateBlock(index);
+        int elementIndex = AbstractDynamicArray.locateElement(index);
+        Block<T> block = side.getBlock(blockIndex);
+        T x = block.getElement(elementIndex);
+        block.setElement(elementIndex, null);
+        if(elementIndex == block.getCapacity() - 1) {
+            side.replaceBlock(blockIndex, null);
+        }
+        return x;
+    }
+    
+    // Returns true if the deque is empty
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+    
+    // Returns the size of the deque
+    public int size() {
+        return front.size() - frontHead + back.size() - backHead;
+    }
+    
+    // Appends the elements from front to rear to target, formatted as
+    // toString does.
+    // Throws IOException if target does.
+    // Target complexity: O(size)
+    public void appendTo(Appendable target) throws IOException {
+        appendTo(target, size());
+    }
+    
+    // Appends at most maxElements elements from the front to target,
+    // formatted as toString does. front is walked backwards Block by
+    // Block, then back forwards, instead of locating every element.
+    // If elements are left out, the last one shown is followed by how
+    // many there are, as in [A, B, ... 2 more]
+    // Throws IllegalArgumentException if maxElements < 0.
+    // Throws IOException if target does.
+    // Target complexity: O(min(size, maxElements))
+    public void appendTo(Appendable target, int maxElements) throws IOException {
+        if(maxElements < 0) {
+            throw new IllegalArgumentException();
+        }
+        int n = Math.min(size(), maxElements);
+        int fromFront = Math.min(n, front.size() - frontHead);
+        StringBuilder builder = AbstractDynamicArray.chunkFor(target);
+        builder.append("[");
+        front.appendElementsReversed(builder, target, front.size() - fromFront, front.size(), ", ");
+        if(n > fromFront) {
+            if(fromFront > 0) {
+                builder.append(", ");
+            }
+            back.appendElements(builder, target, backHead, backHead + n - fromFront, ", ");
+        }
+        AbstractDynamicArray.appendMore(builder, n, size() - n);
+        builder.append("]");
+        AbstractDynamicArray.flush(builder, target);
+    }
+    
+    // Writes the elements to out as appendTo does, then flushes out.
+    // Throws IOException if out does.
+    public void writeTo(Writer out) throws IOException {
+        writeTo(out, size());
+    }
+    
+    // Writes at most maxElements elements to out as appendTo does, then
+    // flushes out.
+    // Throws IllegalArgumentException if maxElements < 0.
+    // Throws IOException if out does.
+    public void writeTo(Writer out, int maxElements) throws IOException {
+        appendTo(out, maxElements);
+        out.flush();
+    }
+    
+    // Create a pretty representation of the DynamicDeque.
+    // Example:
+    // [A, B, C, D]
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        try {
+            appendTo(builder);
+        } catch(IOException e) {
+            throw new AssertionError(e); // a StringBuilder never throws
+        }
+        return builder.toString();
+    }
+    
+    // Create a pretty representation of the DynamicDeque for debugging.
+    // Only the elements of each side that have not been taken from its
+    // bottom are shown, in the order they are stored.
+    // Example:
+    // front.toString: [B, A]
+    // back.toString: [C, D]
+    protected String toStringForDebugging() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("front.toString: [");
+        for(int i = frontHead; i < front.size(); i++) {
+            if(i > frontHead) {
+                builder.append(", ");
+            }
+            builder.append(front.get(i));
+        }
+        builder.append("]\nback.toString: [");
+        for(int i = backHead; i < back.size(); i++) {
+            if(i > backHead) {
+                builder.append(", ");
+            }
+            builder.append(back.get(i));
+        }
+        builder.append("]");
+        return builder.toString();
+    }
+}
@@ -0,0 +1,88 @@
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.Random;
+
+// Runnable test of DynamicDeque: random operations at both ends against
+// an ArrayDeque, with toString and appendTo checked as the elements move
+// between the two sides.
+// Throws AssertionError on the first difference.
+public class DynamicDequeTest {
+    public static void main(String[] args) throws IOException {
+        testAgainstArrayDeque(new Random(1));
+        System.out.println("DynamicDequeTest: ok");
+    }
+    
+    static void check(boolean condition, String message) {
+        if(!condition) {
+            throw new AssertionError(message);
+        }
+    }
+    
+    // Random runs of adds and polls at either end that must keep a
+    // DynamicDeque and an ArrayDeque equal. Runs are up to a few thousand
+    // elements, so one side is often drained from its bottom while the
+    // other holds many Blocks.
+    static void testAgainstArrayDeque(Random random) throws IOException {
+        DynamicDeque<Integer> deque = new DynamicDeque<Integer>();
+        ArrayDeque<Integer> expected = new ArrayDeque<Integer>();
+        int next = 0;
+        for(int step = 0; step < 600; step++) {
+            int n = random.nextInt(3000);
+            switch(random.nextInt(4)) {
+            case 0:
+                for(int i = 0; i < n; i++) {
+                    deque.addFirst(next);
+                    expected.addFirst(next++);
+                }
+                break;
+            case 1:
+                for(int i = 0; i < n; i++) {
+                    deque.addLast(next);
+                    expected.addLast(next++);
+                }
+                break;
+            case 2:
+                for(int i = 0; i < n; i++) {
+                    check(Objects.equals(deque.pollFirst(), expected.pollFirst()), "pollFirst");
+                }
+                break;
+            default:
+                for(int i = 0; i < n; i++) {
+                    check(Objects.equals(deque.pollLast(), expected.pollLast()), "pollLast");
+                }
+                break;
+            }
+            checkEqual(expected, deque, random.nextInt(expected.size() + 2));
+        }
+    }
+    
+    // Compares deque with expected through size, get, the ends, toString,
+    // and appendTo and writeTo with at most maxElements elements.
+    static void checkEqual(ArrayDeque<Integer> expected, DynamicDeque<Integer> deque, int maxElements) throws IOException {
+        check(deque.size() == expected.size() && deque.isEmpty() == expected.isEmpty(), "size " + deque.size() + " instead of " + expected.size());
+        check(Objects.equals(deque.peekFirst(), expected.peekFirst()) && Objects.equals(deque.peekLast(), expected.peekLast()), "peek");
+        Iterator<Integer> it = expected.iterator();
+        for(int i = 0; i < expected.size(); i++) {
+            check(deque.get(i).equals(it.next()), "get " + i);
+        }
+        check(deque.toString().equals(expected.toString()), "toString");
+        StringBuilder shown = new StringBuilder("[");
+        it = expected.iterator();
+        for(int i = 0; i < Math.min(maxElements, expected.size()); i++) {
+            shown.append(i > 0 ? ", " : "").append(it.next());
+        }
+        if(maxElements < expected.size()) {
+            shown.append(maxElements > 0 ? ", ... " : "... ").append(expected.size() - maxElements).append(" more");
+        }
+        shown.append("]");
+        StringBuilder builder = new StringBuilder();
+        deque.appendTo(builder, maxElements);
+        check(builder.toString().equals(shown.toString()), "appendTo " + maxElements);
+        StringWriter writer = new StringWriter();
+        deque.writeTo(writer, maxElements);
+        check(writer.toString().equals(shown.toString()), "writeTo " + maxElements);
+    }
+}
@@ -0,0 +1,414 @@
+import java.util.AbstractQueue;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+// A priority queue kept as an implicit d-ary heap in a DynamicArray, so
+// that growing never copies the elements and at most O(sqrt n) space is
+// left unused, where java.util.PriorityQueue copies its whole array to
+// grow and may leave half of it empty. Elements are ordered by the
+// comparator, or by their natural ordering if it is null, and the least
+// one is at the front. null elements are not allowed.
+//
+// The children of the element at position i of the heap are at
+// positions arity * i + 1 to arity * i + arity. The heap starts arity - 2
+// spaces into the DynamicArray, which puts the first child of every
+// element at the start of a run of arity spaces that begins where a
+// Block does. When arity is a power of two, a Block of at least arity
+// elements therefore never splits the children of an element, and
+// sifting down reads them all from one Block.
+public class DynamicPriorityQueue<T> extends AbstractQueue<T> {
+    protected static final int DEFAULT_ARITY = 2;
+    
+    protected final DynamicArray<T> heap; // the padding, then the heap
+    protected final Comparator<? super T> comparator; // null for the natural ordering
+    protected final int arity; // number of children of each element
+    protected final int offset; // position in heap of the front of the queue
+    protected int modCount; // number of changes so far; iterators check it
+    
+    // Workhorse constructor. Orders the elements by their natural
+    // ordering, in a binary heap.
+    public DynamicPriorityQueue() {
+        this(null, DEFAULT_ARITY);
+    }
+    
+    // Orders the elements by comparator, or by their natural ordering if
+    // it is null, in a binary heap.
+    public DynamicPriorityQueue(Comparator<? super T> comparator) {
+        this(comparator, DEFAULT_ARITY);
+    }
+    
+    // Orders the elements by comparator, or by their natural ordering if
+    // it is null, in a heap where every element has arity children.
+    // Throws IllegalArgumentException if arity < 2.
+    public DynamicPriorityQueue(Comparator<? super T> comparator, int arity) {
+        if(arity < 2) {
+            throw new IllegalArgumentException();
+        }
+        this.comparator = comparator;
+        this.arity = arity;
+        this.offset = arity - 2;
+        heap = new DynamicArray<T>();
+        pad();
+    }
+    
+    // Fills the spaces before the heap.
+    private void pad() {
+        for(int i = 0; i < offset; i++) {
+            heap.add(null);
+        }
+    }
+    
+    // Adds x to the queue
+    // Throws NullPointerException if x is null, as Queue.offer does.
+    // Returns true, as Queue.offer does when there is room.
+    // Target complexity: O(log n)
+    public boolean offer(T x) {
+        if(x == null) {
+            throw new NullPointerException();
+        }
+        heap.add(x);
+        siftUp(size() - 1, x);
+        modCount++;
+        return true;
+    }
+    
+    // Adds every element of elements to the queue. If they are at least
+    // as many as the elements already queued, the whole heap is rebuilt
+    // from the bottom up, which is cheaper than sifting each one up.
+    // Throws NullPointerException if any element is null; the queue is
+    // not changed then.
+    // Returns true if the queue changed.
+    // Target complexity: O(n + size of elements)
+    public boolean addAll(T[] elements) {
+        for(T x : elements) {
+            if(x == null) {
+                throw new NullPointerException();
+            }
+        }
+        int n = size();
+        heap.addAll(elements);
+        if(elements.length >= n) {
+            heapify();
+        } else {
+            for(int i = n; i < size(); i++) {
+                siftUp(i, get(i));
+            }
+        }
+        modCount++;
+        return elements.length > 0;
+    }
+    
+    @SuppressWarnings("unchecked")
+    // Adds every element of c to the queue, as addAll(T[]) does.
+    // Throws IllegalArgumentException if c is this queue, and
+    // NullPointerException if any element is null.
+    // Returns true if the queue changed.
+    // Target complexity: O(n + size of c)
+    public boolean addAll(Collection<? extends T> c) {
+        if(c == this) {
+            throw new IllegalArgumentException();
+        }
+        return addAll((T[]) c.toArray());
+    }
+    
+    // Restores the heap order over all of the heap, sifting down every
+    // element that has children, the last one first.
+    // Target complexity: O(n)
+    private void heapify() {
+        int n = size();
+        if(n < 2) {
+            return;
+        }
+        for(int i = (n - 2) / arity; i >= 0; i--) {
+            siftDown(i, get(i));
+        }
+    }
+    
+    // Removes and returns the least element, or returns null if the
+    // queue is empty.
+    // Target complexity: O(arity * log n)
+    public T poll() {
+        int n = size();
+        if(n == 0) {
+            return null;
+        }
+        T least = get(0);
+        T last = get(n - 1);
+        heap.remove();
+        if(n > 1) {
+            siftDown(0, last);
+        }
+        modCount++;
+        return least;
+    }
+    
+    // Removes the element at position i of the heap by moving the last
+    // element into its place and sifting it down, or up if it is less
+    // than the parent there.
+    // Returns the last element if it ended up before position i, where an
+    // iterator walking the heap in order has already been, or null.
+    // Target complexity: O(arity * log n)
+    private T removeAt(int i) {
+        int n = size();
+        T last = get(n - 1);
+        heap.remove();
+        modCount++;
+        if(i == n - 1) {
+            return null;
+        }
+        siftDown(i, last);
+        if(get(i) == last) {
+            siftUp(i, last);
+            if(get(i) != last) {
+                return last;
+            }
+        }
+        return null;
+    }
+    
+    // Returns the least element without removing it, or null if the
+    // queue is empty.
+    // Target complexity: O(1)
+    public T peek() {
+        return isEmpty() ? null : get(0);
+    }
+    
+    // Removes every element, least first, and adds them to c.
+    // Returns the number of elements moved.
+    // Throws IllegalArgumentException if c is this queue.
+    // Target complexity: O(n log n)
+    public int drainTo(Collection<? super T> c) {
+        return drainTo(c, size());
+    }
+    
+    @SuppressWarnings("unchecked")
+    // Removes at most maxElements elements, least first, and adds them to
+    // c. When every element goes, they are copied out one Block at a time
+    // and sorted, rather than sifted out one by one, and the Blocks are
+    // released together.
+    // Returns the number of elements moved.
+    // Throws IllegalArgumentException if c is this queue or
+    // maxElements < 0.
+    // Target complexity: O(maxElements * log n)
+    public int drainTo(Collection<? super T> c, int maxElements) {
+        if(c == this || maxElements < 0) {
+            throw new IllegalArgumentException();
+        }
+        int n = Math.min(size(), maxElements);
+        if(n == 0) {
+            return 0;
+        }
+        if(n == size()) {
+            Object[] elements = new Object[n];
+            heap.copyRange(offset, heap.size(), elements, 0);
+            Arrays.sort(elements, (Comparator<Object>) comparator);
+            clear();
+            c.addAll(Arrays.asList((T[]) elements));
+            return n;
+        }
+        for(int i = 0; i < n; i++) {
+            c.add(poll());
+        }
+        return n;
+    }
+    
+    // Removes every element. Every Block but the first is deleted.
+    // Target complexity: O(number of Blocks)
+    public void clear() {
+        heap.clear();
+        pad();
+        modCount++;
+    }
+    
+    // Returns the number of elements
+    public int size() {
+        return heap.size() - offset;
+    }
+    
+    // Returns the comparator that orders the elements, or null if they
+    // are in their natural ordering
+    public Comparator<? super T> comparator() {
+        return comparator;
+    }
+    
+    // Returns an iterator over the elements in the order of the heap,
+    // which is not sorted. It walks the Blocks, and throws
+    // ConcurrentModificationException if the queue changes after it was
+    // created other than through its remove. remove takes an element out
+    // as removeAt does, so remove(Object), removeAll and retainAll work
+    // too.
+    public Iterator<T> iterator() {
+        return new HeapIterator();
+    }
+    
+    // Returns the element at position i of the heap.
+    // Target complexity: O(1)
+    private T get(int i) {
+        int position = i + offset;
+        return heap.getBlock(AbstractDynamicArray.locateBlock(position)).getElement(AbstractDynamicArray.locateElement(position));
+    }
+    
+    // Sets the element at position i of the heap to x.
+    // Target complexity: O(1)
+    private void put(int i, T x) {
+        int position = i + offset;
+        heap.writableBlock(AbstractDynamicArray.locateBlock(position)).setElement(AbstractDynamicArray.locateElement(position), x);
+    }
+    
+    @SuppressWarnings("unchecked")
+    // Compares a with b by the comparator, or by their natural ordering.
+    private int compare(T a, T b) {
+        return comparator == null ? ((Comparable<? super T>) a).compareTo(b) : comparator.compare(a, b);
+    }
+    
+    // Moves x from position i towards the front until its parent is not
+    // greater, moving each parent it passes down into the hole it leaves.
+    // Target complexity: O(log n)
+    private void siftUp(int i, T x) {
+        while(i > 0) {
+            int parent = (i - 1) / arity;
+            T y = get(parent);
+            if(compare(x, y) >= 0) {
+                break;
+            }
+            put(i, y);
+            i = parent;
+        }
+        put(i, x);
+    }
+    
+    // Moves x from position i away from the front until none of its
+    // children is less, moving the least child up into the hole each time.
+    // The children are next to each other, so only the first one is
+    // located; the rest are read by walking its Block, and the hole
+    // keeps the Block and position where the least child was found.
+    // Target complexity: O(arity * log n)
+    private void siftDown(int i, T x) {
+        int n = size();
+        int holeBlockIndex = AbstractDynamicArray.locateBlock(i + offset);
+        int holeElementIndex = AbstractDynamicArray.locateElement(i + offset);
+        while(true) {
+            long first = (long) arity * i + 1;
+            if(first >= n) {
+                break;
+            }
+            int end = (int) Math.min(first + arity, n);
+            int position = (int) first + offset;
+            int blockIndex = AbstractDynamicArray.locateBlock(position);
+            int elementIndex = AbstractDynamicArray.locateElement(position);
+            Block<T> block = heap.getBlock(blockIndex);
+            int least = (int) first;
+            int leastBlockIndex = blockIndex;
+            int leastElementIndex = elementIndex;
+            T leastChild = block.getElement(elementIndex);
+            for(int child = least + 1; child < end; child++) {
+                if(++elementIndex == block.size()) {
+                    // The children go on in the next Block.
+                    block = heap.getBlock(++blockIndex);
+                    elementIndex = 0;
+                }
+                T y = block.getElement(elementIndex);
+                if(compare(y, leastChild) < 0) {
+                    least = child;
+                    leastBlockIndex = blockIndex;
+                    leastElementIndex = elementIndex;
+                    leastChild = y;
+                }
+            }
+            if(compare(leastChild, x) >= 0) {
+                break;
+            }
+            heap.writableBlock(holeBlockIndex).setElement(holeElementIndex, leastChild);
+            i = least;
+            holeBlockIndex = leastBlockIndex;
+            holeElementIndex = leastElementIndex;
+        }
+        heap.writableBlock(holeBlockIndex).setElement(holeElementIndex, x);
+    }
+    
+    // Iterator returned by iterator(). A remove can move the last element
+    // of the heap to a position the iterator has passed; such elements
+    // are kept in forgetMeNot and returned once the heap is walked, as
+    // java.util.PriorityQueue does.
+    private class HeapIterator implements Iterator<T> {
+        private int cursor; // position in the heap of the next element
+        private int blockIndex = AbstractDynamicArray.locateBlock(offset); // index of the Block holding it
+        private int elementIndex = AbstractDynamicArray.locateElement(offset); // position of it in that Block
+        private int lastReturned = -1; // position of the element last returned, -1 if none or it came from forgetMeNot
+        private T lastReturnedElement; // element last returned from forgetMeNot, null if none
+        private ArrayDeque<T> forgetMeNot; // elements moved before cursor by remove, null until one is
+        private int expectedModCount = modCount;
+        
+        public boolean hasNext() {
+            return cursor < size() || forgetMeNot != null && !forgetMeNot.isEmpty();
+        }
+        
+        public T next() {
+            if(modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if(cursor < size()) {
+                Block<T> block = heap.getBlock(blockIndex);
+                T x = block.getElement(elementIndex++);
+                if(elementIndex == block.getCapacity()) {
+                    blockIndex++;
+                    elementIndex = 0;
+                }
+                lastReturned = cursor++;
+                return x;
+            }
+            if(forgetMeNot != null) {
+                lastReturned = -1;
+                lastReturnedElement = forgetMeNot.poll();
+                if(lastReturnedElement != null) {
+                    return lastReturnedElement;
+                }
+            }
+            throw new NoSuchElementException();
+        }
+        
+        // Removes the element last returned by next from the queue.
+        // Throws IllegalStateException if next has not been called since
+        // the last remove, or at all.
+        // Target complexity: O(arity * log n), or O(n) for an element
+        // returned from forgetMeNot
+        public void remove() {
+            if(modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if(lastReturned >= 0) {
+                T moved = removeAt(lastReturned);
+                lastReturned = -1;
+                if(moved == null) {
+                    // The position holds an element not returned yet.
+                    cursor--;
+                } else {
+                    if(forgetMeNot == null) {
+                        forgetMeNot = new ArrayDeque<T>();
+                    }
+                    forgetMeNot.add(moved);
+                }
+                blockIndex = AbstractDynamicArray.locateBlock(cursor + offset);
+                elementIndex = AbstractDynamicArray.locateElement(cursor + offset);
+            } else if(lastReturnedElement != null) {
+                // It has moved since; find it by identity.
+                int n = size();
+                for(int i = 0; i < n; i++) {
+                    if(get(i) == lastReturnedElement) {
+                        removeAt(i);
+                        break;
+                    }
+                }
+                lastReturnedElement = null;
+            } else {
+                throw new IllegalStateException();
+            }
+            expectedModCount = modCount;
+        }
+    }
+}
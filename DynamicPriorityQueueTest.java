@@ -0,0 +1,175 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+// Runnable test of DynamicPriorityQueue: random offers and polls against
+// a PriorityQueue for several arities, and removals through the
+// iterator, which must still return every element once.
+// Throws AssertionError on the first difference.
+public class DynamicPriorityQueueTest {
+    public static void main(String[] args) {
+        for(int arity : new int[] {2, 3, 4, 8}) {
+            testAgainstPriorityQueue(new Random(arity), arity);
+            testIteratorRemove(new Random(arity), arity);
+        }
+        testIteratorState();
+        System.out.println("DynamicPriorityQueueTest: ok");
+    }
+    
+    static void check(boolean condition, String message) {
+        if(!condition) {
+            throw new AssertionError(message);
+        }
+    }
+    
+    // Random offers, batches and polls on a DynamicPriorityQueue and a
+    // PriorityQueue that must hand out the same elements. Many elements
+    // are equal, and they are ordered in reverse by the comparator.
+    static void testAgainstPriorityQueue(Random random, int arity) {
+        Comparator<Integer> reverse = Comparator.reverseOrder();
+        DynamicPriorityQueue<Integer> queue = new DynamicPriorityQueue<Integer>(reverse, arity);
+        PriorityQueue<Integer> expected = new PriorityQueue<Integer>(reverse);
+        for(int step = 0; step < 10000; step++) {
+            switch(random.nextInt(5)) {
+            case 0: case 1: {
+                Integer x = random.nextInt(1000);
+                queue.offer(x);
+                expected.offer(x);
+                break;
+            }
+            case 2:
+                check(Objects.equals(queue.poll(), expected.poll()), "poll");
+                break;
+            case 3:
+                if(random.nextInt(20) == 0) {
+                    Integer[] elements = new Integer[random.nextInt(2000)];
+                    for(int i = 0; i < elements.length; i++) {
+                        elements[i] = random.nextInt(1000);
+                    }
+                    queue.addAll(elements);
+                    expected.addAll(Arrays.asList(elements));
+                }
+                break;
+            default:
+                check(Objects.equals(queue.peek(), expected.peek()), "peek");
+                break;
+            }
+            check(queue.size() == expected.size(), "size " + queue.size() + " instead of " + expected.size());
+        }
+        checkEqual(expected, queue);
+    }
+    
+    // Removals of a random part of the elements through the iterator, and
+    // through remove(Object), removeAll, retainAll and removeIf, which use
+    // it. The iterator must return every element that was queued exactly
+    // once, including those a remove moved behind it.
+    static void testIteratorRemove(Random random, int arity) {
+        for(int round = 0; round < 150; round++) {
+            DynamicPriorityQueue<Integer> queue = new DynamicPriorityQueue<Integer>(null, arity);
+            PriorityQueue<Integer> expected = new PriorityQueue<Integer>();
+            int n = random.nextInt(3000);
+            List<Integer> original = new ArrayList<Integer>();
+            for(int i = 0; i < n; i++) {
+                Integer x = random.nextInt(n + 1);
+                queue.offer(x);
+                expected.offer(x);
+                original.add(x);
+            }
+            switch(round % 5) {
+            case 0: {
+                List<Integer> seen = new ArrayList<Integer>();
+                int percent = random.nextInt(101);
+                for(Iterator<Integer> it = queue.iterator(); it.hasNext();) {
+                    Integer x = it.next();
+                    seen.add(x);
+                    if(random.nextInt(100) < percent) {
+                        it.remove();
+                        expected.remove(x);
+                    }
+                }
+                Collections.sort(seen);
+                Collections.sort(original);
+                check(seen.equals(original), "iterator did not return each of " + n + " elements once");
+                List<Integer> left = new ArrayList<Integer>();
+                for(Integer x : queue) {
+                    left.add(x);
+                }
+                List<Integer> expectedLeft = new ArrayList<Integer>(expected);
+                Collections.sort(left);
+                Collections.sort(expectedLeft);
+                check(left.equals(expectedLeft), "elements left after iterator remove");
+                break;
+            }
+            case 1:
+                for(int i = 0; i < 50; i++) {
+                    Integer x = random.nextInt(n + 2);
+                    check(queue.remove(x) == expected.remove(x), "remove(Object) " + x);
+                }
+                break;
+            case 2: {
+                List<Integer> some = Arrays.asList(random.nextInt(n + 1), random.nextInt(n + 1), 0, n);
+                check(queue.removeAll(some) == expected.removeAll(some), "removeAll");
+                break;
+            }
+            case 3: {
+                int modulus = 2 + random.nextInt(5);
+                check(queue.removeIf(x -> x % modulus != 0) == expected.removeIf(x -> x % modulus != 0), "removeIf");
+                break;
+            }
+            default:
+                List<Integer> some = Arrays.asList(random.nextInt(n + 1), random.nextInt(n + 1), 0, n);
+                check(queue.retainAll(some) == expected.retainAll(some), "retainAll");
+                break;
+            }
+            checkEqual(expected, queue);
+        }
+    }
+    
+    // remove without next, twice in a row, and after the queue changed
+    // under the iterator.
+    static void testIteratorState() {
+        DynamicPriorityQueue<Integer> queue = new DynamicPriorityQueue<Integer>();
+        queue.offer(2);
+        queue.offer(1);
+        Iterator<Integer> it = queue.iterator();
+        try {
+            it.remove();
+            throw new AssertionError("remove before next");
+        } catch(IllegalStateException e) {
+            // as it should be
+        }
+        check(it.next() == 1, "first element");
+        it.remove();
+        try {
+            it.remove();
+            throw new AssertionError("remove twice");
+        } catch(IllegalStateException e) {
+            // as it should be
+        }
+        check(it.next() == 2 && !it.hasNext() && queue.size() == 1, "next after remove");
+        queue.offer(3);
+        try {
+            it.remove();
+            throw new AssertionError("remove after offer");
+        } catch(ConcurrentModificationException e) {
+            // as it should be
+        }
+    }
+    
+    // Polls every element of both queues, which must come out the same.
+    // Leaves both empty.
+    static void checkEqual(PriorityQueue<Integer> expected, DynamicPriorityQueue<Integer> queue) {
+        check(queue.size() == expected.size(), "size " + queue.size() + " instead of " + expected.size());
+        while(!expected.isEmpty()) {
+            check(queue.poll().equals(expected.poll()), "poll order");
+        }
+        check(queue.isEmpty() && queue.poll() == null, "empty");
+    }
+}
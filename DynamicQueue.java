@@ -1,10 +1,45 @@
+import java.io.IOException;
+import java.io.Writer;
+import java.util.AbstractQueue;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
 import java.util.NoSuchElementException;
 
-public class DynamicQueue<T> {
+// A queue made of two DynamicArrays. Elements are added to in. Once
+// every element of out has been dequeued, in becomes out and is read
+// from the front through head, so nothing is ever copied or reversed and
+// every operation is O(1). Blocks of out are released as soon as they are
+// drained, so dequeued elements do not hold on to memory; both arrays
+// share a bounded BlockPool, so in takes the Blocks out released as it
+// grows instead of allocating new ones.
+//
+// enqueueAll, drainTo and peek(dest, maxElements) move batches with
+// array copies, a whole Block at a time, so a batch costs time in
+// proportion to the number of Blocks it spans rather than the number of
+// elements.
+//
+// It is a java.util.Queue: offer, poll and peek work as enqueue, dequeue
+// and a look at the front, but return null on an empty queue instead of
+// throwing. null elements are allowed, as in LinkedList, so poll and
+// peek returning null do not tell an empty queue from a null element.
+public class DynamicQueue<T> extends AbstractQueue<T> {
+    protected static final int POOLED_BLOCKS_PER_CAPACITY = 256;
+    protected static final long POOLED_ELEMENTS = 1 << 16;
+    
     protected DynamicArray<T> out;  // These fields may be renamed
     protected DynamicArray<T> in;   // The methods getFront() and getRear() return them
+    protected int head; // position in out of the element at the front of the queue
+    protected int modCount; // number of enqueues and dequeues so far; iterators check it
+    // Blocks released by out, kept for in to take. A new in grows through
+    // every small capacity again, so many Blocks of each are kept, but no
+    // more than POOLED_ELEMENTS spaces in all.
+    protected final BlockPool<Block<?>> blockPool = new BlockPool<Block<?>>(POOLED_BLOCKS_PER_CAPACITY, POOLED_ELEMENTS);
     
     // Return the front dynamic array of outgoing elements for final testing
+    // Positions before head have already been dequeued, and their Blocks
+    // may have been dropped.
     // Target complexity: O(1)
     protected DynamicArray<T> getFront() {
         return out;
@@ -18,8 +53,8 @@ public class DynamicQueue<T> {
     
     // Workhorse constructor. Initialize variables.
     public DynamicQueue() {
-        in = new DynamicArray<T>();
-        out = new DynamicArray<T>();
+        in = new DynamicArray<T>(blockPool);
+        out = new DynamicArray<T>(blockPool);
     }
     
     // Adds x to the rear of the queue
@@ -27,32 +62,219 @@ public class DynamicQueue<T> {
     public void enqueue(T x) {
         // Add element to DynamicArray in.
         in.add(x);
+        modCount++;
+    }
+    
+    // Adds x to the rear of the queue, as enqueue does.
+    // Returns true, as Queue.offer does when there is room.
+    // Target complexity: O(1)
+    public boolean offer(T x) {
+        enqueue(x);
+        return true;
     }
     
     // Removes and returns the element at the front of the queue
     // Throws NoSuchElementException if this queue is empty.
-    // Target complexity: O(n)
+    // Target complexity: O(1)
     public T dequeue() {
         if(isEmpty()) {
             throw new NoSuchElementException();
         }
-        if(out.size() == 0) {
-            // Copy elements from DynamicArray in to DynamicArray out, in reverse order.
-            // Ex: If we have ABC in DynamicArray in, 
-            // we will have CBA in DynamicArray out after copy all elements.
-            // Also remove the element in DynamicArray in after it's copied to DynamicArray out.
-            for(int i = in.size() - 1; i >= 0; i--) {
-                out.add(in.get(i));
-                in.remove();
-            }
+        if(head == out.size()) {
+            takeIn();
+        }
+        int blockIndex = AbstractDynamicArray.locateBlock(head);
+        int elementIndex = AbstractDynamicArray.locateElement(head);
+        Block<T> block = out.getBlock(blockIndex);
+        T elementAtFront = block.getElement(elementIndex);
+        block.setElement(elementIndex, null);
+        head++;
+        modCount++;
+        if(elementIndex == block.getCapacity() - 1) {
+            // The Block is drained; give it back for in to reuse.
+            releaseDrainedBlock(blockIndex, block);
         }
-        // The last element in DynamicArray out is the first element added to DynamicArray in,
-        // and that is the element we want to return and remove because of first in first out.
-        T elementAtFront = out.get(out.size() - 1);
-        out.remove();
         return elementAtFront;
     }
     
+    // Makes in the new out, once every element of out has been dequeued.
+    // The elements of in are already in first in first out order, so
+    // nothing moves; the drained out is left to the garbage collector.
+    // Target complexity: O(1)
+    private void takeIn() {
+        out = in;
+        in = new DynamicArray<T>(blockPool);
+        head = 0;
+    }
+    
+    // Returns the drained Block at position blockIndex of out to the
+    // blockPool, and drops it from out. Every position of it has been set
+    // to null as it was dequeued, so it is not cleared again.
+    // Target complexity: O(1)
+    private void releaseDrainedBlock(int blockIndex, Block<T> block) {
+        out.releaseClearedBlock(block);
+        out.replaceBlock(blockIndex, null);
+    }
+    
+    // Adds the elements of elements to the rear of the queue, in order,
+    // copying them into in a Block at a time.
+    // Target complexity: O(number of Blocks touched + size of elements)
+    public void enqueueAll(T[] elements) {
+        in.addAll(elements);
+        modCount++;
+    }
+    
+    // Adds the elements of c to the rear of the queue, in the order of
+    // its iterator, as enqueueAll(T[]) does.
+    // Target complexity: O(number of Blocks touched + size of c)
+    public void enqueueAll(Collection<? extends T> c) {
+        in.addAll(c);
+        modCount++;
+    }
+    
+    // Adds the elements of c to the rear of the queue, as enqueueAll does.
+    // Throws IllegalArgumentException if c is this queue, as
+    // Queue.addAll does.
+    // Returns true if the queue changed.
+    // Target complexity: O(number of Blocks touched + size of c)
+    public boolean addAll(Collection<? extends T> c) {
+        if(c == this) {
+            throw new IllegalArgumentException();
+        }
+        int n = size();
+        enqueueAll(c);
+        return size() != n;
+    }
+    
+    // Removes every element and adds them to c, front first.
+    // Returns the number of elements moved.
+    // Throws IllegalArgumentException if c is this queue.
+    // Target complexity: O(number of Blocks touched + size)
+    public int drainTo(Collection<? super T> c) {
+        return drainTo(c, size());
+    }
+    
+    @SuppressWarnings("unchecked")
+    // Removes at most maxElements elements from the front and adds them
+    // to c, front first. They are copied out a Block at a time, then
+    // added to c at once.
+    // Returns the number of elements moved.
+    // Throws IllegalArgumentException if c is this queue or
+    // maxElements < 0.
+    // Target complexity: O(number of Blocks touched + maxElements)
+    public int drainTo(Collection<? super T> c, int maxElements) {
+        if(c == this || maxElements < 0) {
+            throw new IllegalArgumentException();
+        }
+        int n = Math.min(size(), maxElements);
+        if(n == 0) {
+            return 0;
+        }
+        Object[] elements = new Object[n];
+        moveOut(elements, n);
+        c.addAll(Arrays.asList((T[]) elements));
+        return n;
+    }
+    
+    // Removes at most maxElements elements from the front, no more than
+    // dest holds, and copies them into dest from position 0, a Block at a
+    // time. They are copied before any is removed, so if one cannot be
+    // stored in dest the queue is left as it was.
+    // Returns the number of elements moved.
+    // Throws IllegalArgumentException if maxElements < 0, and
+    // ArrayStoreException if an element is not of the component type of
+    // dest; dest may have been partly written then.
+    // Target complexity: O(number of Blocks touched + maxElements)
+    public int drainTo(T[] dest, int maxElements) {
+        int n = peek(dest, maxElements);
+        moveOut(null, n);
+        return n;
+    }
+    
+    // Removes the n elements at the front, n <= size, and copies them into
+    // dest from position 0, unless dest is null. The elements moved are
+    // cleared, and every Block of out that is drained goes back to the
+    // blockPool.
+    // Target complexity: O(number of Blocks touched + n)
+    private void moveOut(Object[] dest, int n) {
+        int destPos = 0;
+        while(destPos < n) {
+            if(head == out.size()) {
+                takeIn();
+            }
+            int blockIndex = AbstractDynamicArray.locateBlock(head);
+            int elementIndex = AbstractDynamicArray.locateElement(head);
+            Block<T> block = out.getBlock(blockIndex);
+            int length = Math.min(block.size() - elementIndex, n - destPos);
+            if(dest != null) {
+                block.copyTo(elementIndex, dest, destPos, length);
+            }
+            block.clear(elementIndex, length);
+            if(elementIndex + length == block.getCapacity()) {
+                releaseDrainedBlock(blockIndex, block);
+            }
+            head += length;
+            destPos += length;
+        }
+        modCount++;
+    }
+    
+    // Removes and returns the element at the front of the queue, or
+    // returns null if the queue is empty.
+    // Target complexity: O(1)
+    public T poll() {
+        return isEmpty() ? null : dequeue();
+    }
+    
+    // Returns the element at the front of the queue without removing it,
+    // or null if the queue is empty.
+    // Target complexity: O(1)
+    public T peek() {
+        if(isEmpty()) {
+            return null;
+        }
+        if(head == out.size()) {
+            return in.getBlock(0).getElement(0);
+        }
+        return out.getBlock(AbstractDynamicArray.locateBlock(head)).getElement(AbstractDynamicArray.locateElement(head));
+    }
+    
+    // Copies at most maxElements elements from the front, no more than
+    // dest holds, into dest from position 0, without removing them.
+    // Returns the number of elements copied.
+    // Throws IllegalArgumentException if maxElements < 0.
+    // Target complexity: O(number of Blocks touched + maxElements)
+    public int peek(T[] dest, int maxElements) {
+        if(maxElements < 0) {
+            throw new IllegalArgumentException();
+        }
+        int n = Math.min(Math.min(size(), maxElements), dest.length);
+        int fromOut = Math.min(n, out.size() - head);
+        out.copyRange(head, head + fromOut, dest, 0);
+        in.copyRange(0, n - fromOut, dest, fromOut);
+        return n;
+    }
+    
+    // Removes every element. Both DynamicArrays are replaced, so their
+    // Blocks are left to the garbage collector at once.
+    // Target complexity: O(1)
+    public void clear() {
+        out = new DynamicArray<T>(blockPool);
+        in = new DynamicArray<T>(blockPool);
+        head = 0;
+        modCount++;
+    }
+    
+    // Returns an iterator over the elements from front to rear. It walks
+    // the Blocks of out from head, then those of in, and throws
+    // ConcurrentModificationException if the queue changes after it was
+    // created other than through its remove. remove dequeues the element
+    // at the front in O(1), and deletes any other from its DynamicArray
+    // in O(sqrt n), so remove(Object), removeAll and retainAll work too.
+    public Iterator<T> iterator() {
+        return new QueueIterator();
+    }
+    
     // Returns true if the queue is empty
     public boolean isEmpty() {
         return size() == 0;
@@ -60,7 +282,56 @@ public class DynamicQueue<T> {
     
     // Returns the size of the queue
     public int size() {
-        return out.size() + in.size();
+        return out.size() - head + in.size();
+    }
+    
+    // Appends the elements from front to rear to target, formatted as
+    // toString does.
+    // Throws IOException if target does.
+    // Target complexity: O(size)
+    public void appendTo(Appendable target) throws IOException {
+        appendTo(target, size());
+    }
+    
+    // Appends at most maxElements elements from the front to target,
+    // formatted as toString does. If elements are left out, the last one
+    // shown is followed by how many there are, as in [A, B, ... 2 more]
+    // Throws IllegalArgumentException if maxElements < 0.
+    // Throws IOException if target does.
+    // Target complexity: O(min(size, maxElements))
+    public void appendTo(Appendable target, int maxElements) throws IOException {
+        if(maxElements < 0) {
+            throw new IllegalArgumentException();
+        }
+        int n = Math.min(size(), maxElements);
+        int fromOut = Math.min(n, out.size() - head);
+        StringBuilder builder = AbstractDynamicArray.chunkFor(target);
+        builder.append("[");
+        out.appendElements(builder, target, head, head + fromOut, ", ");
+        if(n > fromOut) {
+            if(fromOut > 0) {
+                builder.append(", ");
+            }
+            in.appendElements(builder, target, 0, n - fromOut, ", ");
+        }
+        AbstractDynamicArray.appendMore(builder, n, size() - n);
+        builder.append("]");
+        AbstractDynamicArray.flush(builder, target);
+    }
+    
+    // Writes the elements to out as appendTo does, then flushes out.
+    // Throws IOException if out does.
+    public void writeTo(Writer out) throws IOException {
+        writeTo(out, size());
+    }
+    
+    // Writes at most maxElements elements to out as appendTo does, then
+    // flushes out.
+    // Throws IllegalArgumentException if maxElements < 0.
+    // Throws IOException if out does.
+    public void writeTo(Writer out, int maxElements) throws IOException {
+        appendTo(out, maxElements);
+        out.flush();
     }
     
     // Create a pretty representation of the DynamicQueue.
@@ -68,22 +339,96 @@ public class DynamicQueue<T> {
     // [A, B, C, D]
     public String toString() {
         StringBuilder builder = new StringBuilder();
-        builder.append("[");
-        for(int i = 0; i < out.size(); i++) {
-            builder.append(out.get(i) + ", ");
-        }
-        for(int i = 0; i < in.size() - 1; i++) {
-            builder.append(in.get(i) + ", ");
+        try {
+            appendTo(builder);
+        } catch(IOException e) {
+            throw new AssertionError(e); // a StringBuilder never throws
         }
-        builder.append(in.get(in.size() - 1) + "]");
         return builder.toString();
     }
     
+    // Iterator returned by iterator().
+    private class QueueIterator implements Iterator<T> {
+        private DynamicArray<T> array = out; // the DynamicArray holding the next element
+        private int position = head; // position of the next element in array
+        private int blockIndex = AbstractDynamicArray.locateBlock(head); // index of the Block holding it
+        private int elementIndex = AbstractDynamicArray.locateElement(head); // position of it in that Block
+        private int remaining = size(); // number of elements not returned yet
+        private int lastReturned = -1; // position in array of the element last returned, -1 once removed
+        private int expectedModCount = modCount;
+        
+        public boolean hasNext() {
+            return remaining > 0;
+        }
+        
+        public T next() {
+            if(modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if(remaining == 0) {
+                throw new NoSuchElementException();
+            }
+            if(position == array.size()) {
+                // Every element of out has been returned; go on with in.
+                array = in;
+                position = 0;
+                blockIndex = 0;
+                elementIndex = 0;
+            }
+            Block<T> block = array.getBlock(blockIndex);
+            T x = block.getElement(elementIndex++);
+            if(elementIndex == block.getCapacity()) {
+                blockIndex++;
+                elementIndex = 0;
+            }
+            lastReturned = position++;
+            remaining--;
+            return x;
+        }
+        
+        // Removes the element last returned by next from the queue.
+        // Throws IllegalStateException if next has not been called since
+        // the last remove, or at all.
+        // Target complexity: O(1) for the front, O(sqrt n) otherwise
+        public void remove() {
+            if(lastReturned < 0) {
+                throw new IllegalStateException();
+            }
+            if(modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if(array == out ? lastReturned == head : lastReturned == 0 && head == out.size()) {
+                // It is the front. If it is in in, dequeue makes in the new
+                // out with head 1, so array and position stay right.
+                dequeue();
+            } else {
+                // The elements after it move down by one.
+                array.delete(lastReturned);
+                modCount++;
+                position--;
+                blockIndex = AbstractDynamicArray.locateBlock(position);
+                elementIndex = AbstractDynamicArray.locateElement(position);
+            }
+            lastReturned = -1;
+            expectedModCount = modCount;
+        }
+    }
+    
     // Create a pretty representation of the DynamicQueue for debugging.
+    // Only the elements of out that have not been dequeued are shown.
     // Example:
     // front.toString: [A, B] 
     // rear.toString: [C, D]
     protected String toStringForDebugging() {
-        return "front.toString: " + out.toString() + "\nrear.toString: " + in.toString();
+        StringBuilder builder = new StringBuilder();
+        builder.append("front.toString: [");
+        try {
+            out.appendElements(builder, builder, head, out.size(), ", ");
+            builder.append("]\nrear.toString: ");
+            in.appendTo(builder);
+        } catch(IOException e) {
+            throw new AssertionError(e); // a StringBuilder never throws
+        }
+        return builder.toString();
     }
 }
@@ -0,0 +1,256 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Random;
+
+// Runnable test of DynamicQueue: random single and batched operations
+// against an ArrayDeque, batches that fail part of the way, and removals
+// through the iterator.
+// Throws AssertionError on the first difference.
+public class DynamicQueueTest {
+    public static void main(String[] args) {
+        testAgainstArrayDeque(new Random(1));
+        testFailedDrain();
+        testIteratorRemove(new Random(2));
+        System.out.println("DynamicQueueTest: ok");
+    }
+    
+    static void check(boolean condition, String message) {
+        if(!condition) {
+            throw new AssertionError(message);
+        }
+    }
+    
+    // Random operations on a DynamicQueue and an ArrayDeque that must stay
+    // equal. Batches are up to a few thousand elements, so they span
+    // Blocks of both DynamicArrays of the queue.
+    static void testAgainstArrayDeque(Random random) {
+        DynamicQueue<Integer> queue = new DynamicQueue<Integer>();
+        ArrayDeque<Integer> expected = new ArrayDeque<Integer>();
+        int next = 0;
+        for(int step = 0; step < 20000; step++) {
+            switch(random.nextInt(10)) {
+            case 0: case 1: case 2:
+                queue.enqueue(next);
+                expected.add(next++);
+                break;
+            case 3: case 4:
+                if(!expected.isEmpty()) {
+                    check(queue.dequeue().equals(expected.remove()), "dequeue");
+                }
+                check(Objects.equals(queue.peek(), expected.peek()), "peek");
+                break;
+            case 5: {
+                Integer[] elements = new Integer[random.nextInt(3000)];
+                for(int i = 0; i < elements.length; i++) {
+                    elements[i] = next++;
+                }
+                if(random.nextBoolean()) {
+                    queue.enqueueAll(elements);
+                } else {
+                    queue.addAll(Arrays.asList(elements));
+                }
+                expected.addAll(Arrays.asList(elements));
+                break;
+            }
+            case 6: {
+                int max = random.nextInt(3000);
+                List<Integer> drained = new ArrayList<Integer>();
+                int n = queue.drainTo(drained, max);
+                check(n == drained.size() && n == Math.min(max, expected.size()), "drainTo(Collection) count");
+                for(Integer x : drained) {
+                    check(x.equals(expected.remove()), "drainTo(Collection)");
+                }
+                break;
+            }
+            case 7: {
+                Integer[] dest = new Integer[random.nextInt(3000)];
+                int n = queue.drainTo(dest, random.nextInt(3000));
+                for(int i = 0; i < n; i++) {
+                    check(dest[i].equals(expected.remove()), "drainTo(T[])");
+                }
+                break;
+            }
+            case 8: {
+                Integer[] dest = new Integer[random.nextInt(3000)];
+                int n = queue.peek(dest, random.nextInt(3000));
+                Iterator<Integer> it = expected.iterator();
+                for(int i = 0; i < n; i++) {
+                    check(dest[i].equals(it.next()), "peek(T[])");
+                }
+                break;
+            }
+            default:
+                if(random.nextInt(100) == 0) {
+                    queue.clear();
+                    expected.clear();
+                }
+                break;
+            }
+            if(step % 50 == 0) {
+                checkEqual(expected, queue);
+            }
+        }
+        checkEqual(expected, queue);
+        checkPooledBlocksCleared(queue);
+    }
+    
+    // Every Block in the blockPool of queue must be empty and hold no
+    // references, since drained Blocks go back to it without being
+    // cleared again. Takes them all out of the pool.
+    static void checkPooledBlocksCleared(DynamicQueue<?> queue) {
+        int pooled = 0;
+        for(int capacity = 1; capacity <= 1 << 15; capacity <<= 1) {
+            for(Block<?> block; (block = queue.blockPool.take(0, capacity)) != null; pooled++) {
+                check(block.size() == 0, "pooled Block of size " + block.size());
+                for(Object x : block.arrayOfElements) {
+                    check(x == null, "pooled Block of capacity " + capacity + " holds " + x);
+                }
+            }
+        }
+        check(pooled > 0, "no Block was pooled");
+    }
+    
+    // A drain into an array that cannot hold one of the elements must
+    // leave the queue as it was.
+    static void testFailedDrain() {
+        DynamicQueue<Object> queue = new DynamicQueue<Object>();
+        ArrayDeque<Object> expected = new ArrayDeque<Object>();
+        for(int i = 0; i < 1000; i++) {
+            Object x = i == 700 ? "not an Integer" : (Object) i;
+            queue.enqueue(x);
+            expected.add(x);
+        }
+        for(int i = 0; i < 100; i++) {
+            queue.dequeue();
+            expected.remove();
+        }
+        try {
+            queue.drainTo(new Integer[1000], 1000);
+            throw new AssertionError("drainTo stored a String in an Integer[]");
+        } catch(ArrayStoreException e) {
+            // as it should be
+        }
+        checkEqual(expected, queue);
+        Object[] dest = new Object[1000];
+        check(queue.drainTo(dest, 1000) == 900 && dest[600].equals("not an Integer") && queue.isEmpty(), "drainTo after the failed one");
+    }
+    
+    // Removals through the iterator, at the front and anywhere else in
+    // both DynamicArrays of the queue, and through remove(Object),
+    // removeAll, retainAll and removeIf, which use it.
+    static void testIteratorRemove(Random random) {
+        for(int round = 0; round < 200; round++) {
+            DynamicQueue<Integer> queue = new DynamicQueue<Integer>();
+            ArrayDeque<Integer> expected = new ArrayDeque<Integer>();
+            // Leave part of the elements in out, past a head beyond 0, and
+            // the rest in in.
+            int n = random.nextInt(2000);
+            for(int i = 0; i < n; i++) {
+                queue.enqueue(i);
+                expected.add(i);
+            }
+            if(n > 0) {
+                int dequeued = random.nextInt(n);
+                for(int i = 0; i < dequeued; i++) {
+                    queue.dequeue();
+                    expected.remove();
+                }
+            }
+            int enqueued = random.nextInt(2000);
+            for(int i = 0; i < enqueued; i++) {
+                queue.enqueue(n + i);
+                expected.add(n + i);
+            }
+            switch(round % 5) {
+            case 0: {
+                int modulus = 1 + random.nextInt(5);
+                Iterator<Integer> it = queue.iterator();
+                Iterator<Integer> expectedIt = expected.iterator();
+                while(expectedIt.hasNext()) {
+                    Integer x = it.next();
+                    check(x.equals(expectedIt.next()), "iterator after remove");
+                    if(x % modulus == 0 || random.nextInt(10) == 0) {
+                        it.remove();
+                        expectedIt.remove();
+                    }
+                }
+                check(!it.hasNext(), "iterator end after remove");
+                break;
+            }
+            case 1:
+                for(int i = 0; i < 20 && !expected.isEmpty(); i++) {
+                    Integer x = random.nextInt(n + 2000);
+                    check(queue.remove(x) == expected.remove(x), "remove(Object) " + x);
+                }
+                break;
+            case 2: {
+                List<Integer> some = Arrays.asList(random.nextInt(100), random.nextInt(n + 1), n, n + 1);
+                check(queue.removeAll(some) == expected.removeAll(some), "removeAll");
+                break;
+            }
+            case 3: {
+                int modulus = 2 + random.nextInt(5);
+                check(queue.removeIf(x -> x % modulus != 0) == expected.removeIf(x -> x % modulus != 0), "removeIf");
+                break;
+            }
+            default:
+                List<Integer> some = Arrays.asList(random.nextInt(n + 1), n, n + 1, n + 2);
+                check(queue.retainAll(some) == expected.retainAll(some), "retainAll");
+                break;
+            }
+            checkEqual(expected, queue);
+            // The queue still works as one after the removals.
+            queue.enqueue(-1);
+            expected.add(-1);
+            while(!expected.isEmpty()) {
+                check(queue.dequeue().equals(expected.remove()), "dequeue after remove");
+            }
+            check(queue.isEmpty(), "empty after remove");
+        }
+        DynamicQueue<Integer> queue = new DynamicQueue<Integer>();
+        queue.enqueue(1);
+        queue.enqueue(2);
+        Iterator<Integer> it = queue.iterator();
+        try {
+            it.remove();
+            throw new AssertionError("remove before next");
+        } catch(IllegalStateException e) {
+            // as it should be
+        }
+        it.next();
+        it.remove();
+        try {
+            it.remove();
+            throw new AssertionError("remove twice");
+        } catch(IllegalStateException e) {
+            // as it should be
+        }
+        check(it.next() == 2 && queue.size() == 1, "next after remove");
+        queue.enqueue(3);
+        try {
+            it.remove();
+            throw new AssertionError("remove after enqueue");
+        } catch(ConcurrentModificationException e) {
+            // as it should be
+        }
+    }
+    
+    // Compares queue with expected through size, the iterator, peek and
+    // toString.
+    static <T> void checkEqual(ArrayDeque<T> expected, DynamicQueue<T> queue) {
+        check(queue.size() == expected.size(), "size " + queue.size() + " instead of " + expected.size());
+        check(queue.isEmpty() == expected.isEmpty(), "isEmpty");
+        Iterator<T> it = queue.iterator();
+        for(T x : expected) {
+            check(Objects.equals(it.next(), x), "iterator");
+        }
+        check(!it.hasNext(), "iterator end");
+        check(Objects.equals(queue.peek(), expected.peek()), "peek");
+        check(queue.toString().equals(expected.toString()), "toString");
+    }
+}
@@ -0,0 +1,54 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+// Converts elements of type T to and from bytes so that a
+// DynamicArraySerializer can write them to a stream. Unlike a
+// RecordCodec, an element may take any number of bytes; the codec must
+// read back exactly what it wrote. Null elements never reach a codec.
+public interface ElementCodec<T> {
+    
+    // Writes x to out.
+    void write(DataOutput out, T x) throws IOException;
+    
+    // Reads one element written by write from in.
+    T read(DataInput in) throws IOException;
+    
+    // Integers as 4 bytes each
+    ElementCodec<Integer> INTEGERS = new ElementCodec<Integer>() {
+        public void write(DataOutput out, Integer x) throws IOException {
+            out.writeInt(x);
+        }
+        
+        public Integer read(DataInput in) throws IOException {
+            return in.readInt();
+        }
+    };
+    
+    // Longs as 8 bytes each
+    ElementCodec<Long> LONGS = new ElementCodec<Long>() {
+        public void write(DataOutput out, Long x) throws IOException {
+            out.writeLong(x);
+        }
+        
+        public Long read(DataInput in) throws IOException {
+            return in.readLong();
+        }
+    };
+    
+    // Strings as their length in bytes followed by their UTF-8 bytes
+    ElementCodec<String> STRINGS = new ElementCodec<String>() {
+        public void write(DataOutput out, String x) throws IOException {
+            byte[] bytes = x.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+        
+        public String read(DataInput in) throws IOException {
+            byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    };
+}
@@ -0,0 +1,38 @@
+// A Block that stores long values in a long[] instead of boxing them.
+public class LongBlock extends AbstractBlock {
+    protected final long[] arrayOfElements; // Holds actual elements
+    
+    // Workhorse constructor. Initialize variables and create array.
+    public LongBlock(int number, int capacity) {
+        super(number, capacity);
+        this.arrayOfElements = new long[capacity];
+    }
+    
+    // Set the last element to 0L and decrease the space allocated 
+    // for storing elements. Decreases size.
+    public void shrink() {
+        arrayOfElements[size - 1] = 0L;
+        size--;
+    }
+    
+    // Decrease the space allocated for storing elements by n. Decreases
+    // size by n. The values are simply overwritten by later adds.
+    public void shrink(int n) {
+        size -= n;
+    }
+    
+    // Returns the element at position index in arrayOfElements.
+    public long getElement(int index) {
+        return arrayOfElements[index];
+    }
+    
+    // Sets the value at position i in arrayOfElements to x.
+    public void setElement(int i, long x) {
+        arrayOfElements[i] = x;
+    }
+    
+    // Appends the element at position index to builder.
+    protected void appendElement(StringBuilder builder, int index) {
+        builder.append(arrayOfElements[index]);
+    }
+}
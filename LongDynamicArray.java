@@ -0,0 +1,128 @@
+import java.util.ConcurrentModificationException;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+// A DynamicArray of long values. It uses the same Block and SuperBlock
+// geometry as DynamicArray, but its Blocks hold long[] arrays, so no
+// element is ever boxed.
+class LongDynamicArray extends AbstractDynamicArray {
+    // Pool that Blocks are taken from and returned to, or null if Blocks
+    // are allocated and dropped as they are needed
+    protected BlockPool<LongBlock> blockPool;
+    
+    // Workhorse constructor. Initialize variables, create the array
+    // and the last SuperBlock, which represents SB0.
+    LongDynamicArray( ) {
+        super(new LongBlock(0, 1));
+    }
+    
+    // Takes new Blocks from blockPool, and returns deleted Blocks to it.
+    // blockPool may be shared with other LongDynamicArrays.
+    LongDynamicArray(BlockPool<LongBlock> blockPool) {
+        super(new LongBlock(0, 1));
+        this.blockPool = blockPool;
+    }
+    
+    // Creates an empty Block that stores long values, or takes one from
+    // the blockPool.
+    protected LongBlock newBlock(int number, int capacity) {
+        if(blockPool != null) {
+            LongBlock block = blockPool.take(number, capacity);
+            if(block != null) {
+                return block;
+            }
+        }
+        return new LongBlock(number, capacity);
+    }
+    
+    // Returns a deleted Block to the blockPool, if any.
+    protected void releaseBlock(AbstractBlock block) {
+        if(blockPool != null) {
+            block.shrink(block.size());
+            blockPool.offer((LongBlock) block);
+        }
+    }
+    
+    // Returns the Block at position i in arrayOfBlocks.
+    // Target complexity: O(1)
+    protected LongBlock getBlock(int index) {
+        return (LongBlock) arrayOfBlocks[index];
+    }
+    
+    // Returns the Block at position i in arrayOfBlocks, about to be
+    // changed in place.
+    // Target complexity: O(1)
+    protected LongBlock writableBlock(int index) {
+        return (LongBlock) arrayOfBlocks[index];
+    }
+    
+    // Returns the element at position i in the LongDynamicArray.
+    // Throws IllegalArgumentException if index < 0 or 
+    // index > size -1;
+    // Target complexity: O(1)
+    public long get(int i) {
+        if(i < 0 || i > size - 1) {
+            throw new IllegalArgumentException();
+        }
+        return getBlock(locateBlock(i)).getElement(locateElement(i));
+    }
+    
+    // Sets the value at position i in LongDynamicArray to x.
+    // Throws IllegalArgumentException if index < 0 or 
+    // index > size -1;
+    // Target complexity: O(1)
+    public void set(int index, long x) {
+        if(index < 0 || index > size - 1) {
+            throw new IllegalArgumentException();
+        }
+        writableBlock(locateBlock(index)).setElement(locateElement(index), x);
+    }
+    
+    // Grows the LongDynamicArray by one space, increases the size of the 
+    // LongDynamicArray, and sets the last element to x.  
+    // Target complexity: O(1)
+    public void add(long x) {
+        grow();
+        size++;
+        LongBlock lastNonEmptyDataBlock = getBlock(indexOfLastNonEmptyDataBlock);
+        lastNonEmptyDataBlock.setElement(lastNonEmptyDataBlock.size() - 1, x);
+    }
+    
+    // Returns an iterator over the elements in order. It walks the Blocks
+    // one at a time, so no element is located or boxed. The iterator
+    // throws ConcurrentModificationException if an element is added or
+    // removed after it was created.
+    public PrimitiveIterator.OfLong iterator() {
+        return new LongIterator();
+    }
+    
+    // Iterator returned by iterator().
+    private class LongIterator implements PrimitiveIterator.OfLong {
+        private int blockIndex; // index of the Block holding the next element
+        private int elementIndex; // position of the next element in that Block
+        private int remaining = size; // number of elements not returned yet
+        private final int expectedModCount = modCount;
+        
+        public boolean hasNext() {
+            return remaining > 0;
+        }
+        
+        public long nextLong() {
+            if(modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if(remaining == 0) {
+                throw new NoSuchElementException();
+            }
+            LongBlock block = getBlock(blockIndex);
+            long x = block.getElement(elementIndex++);
+            if(elementIndex == block.size()) {
+                // Move on to the next Block.
+                blockIndex++;
+                elementIndex = 0;
+            }
+            remaining--;
+            return x;
+        }
+    }
+}
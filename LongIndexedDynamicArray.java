@@ -0,0 +1,405 @@
+import java.io.IOException;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+// A DynamicArray indexed by long, for more than Integer.MAX_VALUE
+// elements in one array. It has the same Block and SuperBlock geometry
+// as DynamicArray, so access is O(1) and the space not holding elements
+// is O(sqrt n), but its locator does the bit math on long positions.
+// Block and spine indexes stay int: at the largest size, MAX_SIZE, a
+// Block holds 2^29 elements and the spine holds fewer than 2^31 Blocks.
+//
+// Elements are added and removed at the end only. The spine is moved to
+// one twice or half as long a few entries at a time, with the same
+// thresholds and steps as in AbstractDynamicArray, so no add or remove
+// copies the whole spine.
+class LongIndexedDynamicArray<T> implements Iterable<T> {
+    // Largest k = floor(log2 r) of a position, where r = position + 1.
+    // SuperBlock k holds 2^floor(k/2) Blocks of 2^ceil(k/2) elements.
+    protected static final int MAX_K = 58;
+    // Largest number of elements: every position up to MAX_SIZE - 1 has
+    // floor(log2 r) <= MAX_K.
+    protected static final long MAX_SIZE = (1L << (MAX_K + 1)) - 1;
+    protected static final int DEFAULTCAPACITY = 4;
+    
+    // p for every possible k = floor(log2 r), as in AbstractDynamicArray.
+    private static final int[] P_TABLE = new int[MAX_K + 1];
+    static {
+        for(int k = 0; k < P_TABLE.length; k++) {
+            P_TABLE[k] = AbstractDynamicArray.computeP(k);
+        }
+    }
+    
+    // Number of Blocks at MAX_SIZE: those before SuperBlock MAX_K, and
+    // the 2^floor(MAX_K/2) Blocks of SuperBlock MAX_K. The spine never
+    // needs to be longer.
+    protected static final int MAX_SPINE_LENGTH = P_TABLE[MAX_K] + (1 << MAX_K / 2);
+    
+    protected Object[] arrayOfBlocks;
+    // Spine that arrayOfBlocks is being moved to, or null, as in
+    // AbstractDynamicArray
+    protected Object[] newArrayOfBlocks;
+    // Number of entries of arrayOfBlocks already copied to newArrayOfBlocks
+    protected int numberOfMigratedBlocks;
+    protected int sizeOfArrayOfBlocks; // number of Blocks in arrayOfBlocks
+    protected long size; // number of elements in the LongIndexedDynamicArray
+    protected int numberOfEmptyDataBlocks;
+    protected int indexOfLastNonEmptyDataBlock;
+    protected int indexOfLastDataBlock;
+    protected int numberOfSuperBlocks;
+    protected SuperBlock lastSuperBlock; // right-most SuperBlock
+    // Every SuperBlock created so far, by number. They are kept, so that
+    // crossing a SuperBlock boundary back and forth allocates nothing.
+    protected SuperBlock[] superBlocks;
+    // number of structural changes (add and remove) so far; iterators
+    // compare it with the value they started with to fail fast
+    protected int modCount;
+    
+    // Workhorse constructor. Initialize variables, create the array
+    // and the last SuperBlock, which represents SB0.
+    LongIndexedDynamicArray( ) {
+        initialize();
+    }
+    
+    // Puts the LongIndexedDynamicArray in the state of a newly
+    // constructed one. Called by the constructor and by clear.
+    private void initialize() {
+        arrayOfBlocks = new Object[DEFAULTCAPACITY];
+        arrayOfBlocks[0] = new Block<T>(0, 1); // SB0 only has one Block, and that Block can only have one element.
+        lastSuperBlock = new SuperBlock(0, 1, 1, 1);
+        sizeOfArrayOfBlocks = 1;
+        size = 0;
+        numberOfEmptyDataBlocks = 1;
+        indexOfLastNonEmptyDataBlock = -1;
+        indexOfLastDataBlock = 0;
+        numberOfSuperBlocks = 1;
+        newArrayOfBlocks = null;
+        numberOfMigratedBlocks = 0;
+        superBlocks = new SuperBlock[MAX_K + 1];
+        superBlocks[0] = lastSuperBlock;
+    }
+    
+    @SuppressWarnings("unchecked")
+    // Returns the Block at position i in arrayOfBlocks.
+    // Target complexity: O(1)
+    protected Block<T> getBlock(int index) {
+        return (Block<T>) arrayOfBlocks[index];
+    }
+    
+    // Returns the index in arrayOfBlocks of the Block holding element i.
+    // The same bit math as AbstractDynamicArray.locateBlock, on a long r.
+    // Target complexity: O(1)
+    protected static int locateBlock(long index) {
+        long r = index + 1;
+        int k = floorLog2(r);
+        // b is the floor(k/2) bits of r right after its leading 1 bit.
+        int numOfBitsToCapture = k / 2;
+        long b = (r >>> (k - numOfBitsToCapture)) & maskOfN(numOfBitsToCapture);
+        return P_TABLE[k] + (int) b;
+    }
+    
+    // Returns the position of element i within its Block: the last
+    // ceil(k/2) bits of r.
+    // Target complexity: O(1)
+    protected static int locateElement(long index) {
+        long r = index + 1;
+        return (int) (r & maskOfN((floorLog2(r) + 1) >> 1));
+    }
+    
+    // Returns the position of the first element of the Block at position
+    // blockIndex in arrayOfBlocks, the inverse of locateBlock.
+    // Target complexity: O(log n)
+    protected static long firstPositionOf(int blockIndex) {
+        int k = 0;
+        while(k + 1 < P_TABLE.length && P_TABLE[k + 1] <= blockIndex) {
+            k++;
+        }
+        long b = blockIndex - P_TABLE[k];
+        return (1L << k) + (b << ((k + 1) / 2)) - 1;
+    }
+    
+    // Returns floor(log2 n) for n > 0, which is the position of the
+    // leading 1 bit in n.
+    protected static int floorLog2(long n) {
+        return (Long.SIZE - 1) - Long.numberOfLeadingZeros(n);
+    }
+    
+    // Returns a mask of N 1 bits.
+    protected static long maskOfN(int N) {
+        return (1L << N) - 1;
+    }
+    
+    // Returns the element at position i in the LongIndexedDynamicArray.
+    // Throws IllegalArgumentException if index < 0 or
+    // index > size -1;
+    // Target complexity: O(1)
+    public T get(long i) {
+        if(i < 0 || i > size - 1) {
+            throw new IllegalArgumentException();
+        }
+        return getBlock(locateBlock(i)).getElement(locateElement(i));
+    }
+    
+    // Sets the value at position i in LongIndexedDynamicArray to x.
+    // Throws IllegalArgumentException if index < 0 or
+    // index > size -1;
+    // Target complexity: O(1)
+    public void set(long index, T x) {
+        if(index < 0 || index > size - 1) {
+            throw new IllegalArgumentException();
+        }
+        getBlock(locateBlock(index)).setElement(locateElement(index), x);
+    }
+    
+    // Grows the LongIndexedDynamicArray by one space, increases the size,
+    // and sets the last element to x.
+    // Throws IllegalStateException if it already holds MAX_SIZE elements.
+    // Target complexity: O(1) amortized
+    public void add(T x) {
+        if(size == MAX_SIZE) {
+            throw new IllegalStateException();
+        }
+        // The new space belongs in the last non-empty Block unless that
+        // Block is full; then it belongs in the Block after it.
+        int indexOfGrowingBlock = indexOfLastNonEmptyDataBlock;
+        if(indexOfGrowingBlock < 0 || isFull(indexOfGrowingBlock)) {
+            indexOfGrowingBlock++;
+        }
+        if(indexOfGrowingBlock > indexOfLastDataBlock) {
+            addBlock();
+        }
+        Block<T> growingBlock = getBlock(indexOfGrowingBlock);
+        growingBlock.grow();
+        if(growingBlock.size() == 1) {
+            numberOfEmptyDataBlocks--;
+            indexOfLastNonEmptyDataBlock++;
+        }
+        growingBlock.setElement(growingBlock.size() - 1, x);
+        size++;
+        modCount++;
+    }
+    
+    // Clears the last element, and decreases the size. A Block may be
+    // deleted and the last SuperBlock may change.
+    // Throws IllegalStateException if the LongIndexedDynamicArray is
+    // empty.
+    // Target complexity: O(1) amortized
+    public void remove() {
+        if(size == 0) {
+            throw new IllegalStateException();
+        }
+        Block<T> lastNonEmptyDataBlock = getBlock(indexOfLastNonEmptyDataBlock);
+        lastNonEmptyDataBlock.shrink();
+        size--;
+        modCount++;
+        if(lastNonEmptyDataBlock.size() == 0) {
+            numberOfEmptyDataBlocks++;
+            indexOfLastNonEmptyDataBlock--;
+        }
+        // If we have two empty Blocks, we have to delete the last one.
+        if(numberOfEmptyDataBlocks == 2) {
+            deleteLastBlock();
+        }
+    }
+    
+    // Removes every element. All Blocks but the first are dropped.
+    // Target complexity: O(1)
+    public void clear() {
+        initialize();
+        modCount++;
+    }
+    
+    // Returns true if the Block at position index in arrayOfBlocks has no
+    // space left.
+    protected boolean isFull(int index) {
+        Block<T> block = getBlock(index);
+        return block.size() == block.getCapacity();
+    }
+    
+    // Creates an empty Block after the last data Block. The last
+    // SuperBlock may change, and a few entries of arrayOfBlocks may be
+    // moved to a longer spine.
+    // Called by add.
+    // Target complexity: O(1)
+    protected void addBlock() {
+        if(sizeOfArrayOfBlocks == arrayOfBlocks.length) {
+            // arrayOfBlocks is full before a move to a longer spine could
+            // finish; finish it now.
+            startMove((int) Math.min(2L * arrayOfBlocks.length, MAX_SPINE_LENGTH));
+            migrate(sizeOfArrayOfBlocks);
+        }
+        if(lastSuperBlock.getCurrentNumberOfDataBlocks() == lastSuperBlock.getMaxNumberOfDataBlocks()) {
+            if(superBlocks[numberOfSuperBlocks] != null) {
+                // This SuperBlock was left empty by deleteLastBlock.
+                lastSuperBlock = superBlocks[numberOfSuperBlocks++];
+            } else {
+                lastSuperBlock = lastSuperBlock.next();
+                superBlocks[numberOfSuperBlocks++] = lastSuperBlock;
+            }
+        }
+        replaceBlock(sizeOfArrayOfBlocks++, new Block<T>(++indexOfLastDataBlock, lastSuperBlock.getMaxNumberOfElementsPerBlock()));
+        numberOfEmptyDataBlocks++;
+        lastSuperBlock.incrementCurrentNumberOfDataBlocks();
+        migrateArray();
+    }
+    
+    // Deletes the last data Block, which must be empty. The last
+    // SuperBlock may change, and a few entries of arrayOfBlocks may be
+    // moved to a shorter spine.
+    // Called by remove.
+    // Target complexity: O(1)
+    protected void deleteLastBlock() {
+        replaceBlock(--sizeOfArrayOfBlocks, null);
+        numberOfEmptyDataBlocks--;
+        indexOfLastDataBlock--;
+        lastSuperBlock.decrementCurrentNumberOfDataBlocks();
+        migrateArray();
+        if(lastSuperBlock.getCurrentNumberOfDataBlocks() == 0) {
+            lastSuperBlock = superBlocks[--numberOfSuperBlocks - 1];
+        }
+    }
+    
+    // Stores block at position index of the spine, in both arrayOfBlocks
+    // and the spine it is being moved to, as AbstractDynamicArray does.
+    protected void replaceBlock(int index, Block<T> block) {
+        arrayOfBlocks[index] = block;
+        if(newArrayOfBlocks != null) {
+            if(index < newArrayOfBlocks.length) {
+                newArrayOfBlocks[index] = block;
+            } else {
+                newArrayOfBlocks = null;
+                numberOfMigratedBlocks = 0;
+            }
+        }
+    }
+    
+    // Starts moving arrayOfBlocks to a longer or shorter spine when
+    // AbstractDynamicArray.newSpineLength says so, never longer than
+    // MAX_SPINE_LENGTH, and moves MIGRATION_STEP more entries of a move in
+    // progress.
+    // Called by addBlock and deleteLastBlock.
+    // Target complexity: O(1)
+    protected void migrateArray() {
+        if(newArrayOfBlocks == null) {
+            int length = AbstractDynamicArray.newSpineLength(sizeOfArrayOfBlocks, arrayOfBlocks.length, DEFAULTCAPACITY, MAX_SPINE_LENGTH);
+            if(length == arrayOfBlocks.length) {
+                return;
+            }
+            startMove(length);
+        }
+        migrate(AbstractDynamicArray.MIGRATION_STEP);
+    }
+    
+    // Starts moving the Blocks to a spine of length entries. A move to a
+    // spine of another length in progress is abandoned.
+    protected void startMove(int length) {
+        if(newArrayOfBlocks == null || newArrayOfBlocks.length != length) {
+            newArrayOfBlocks = new Object[length];
+            numberOfMigratedBlocks = 0;
+        }
+    }
+    
+    // Copies up to n more entries of arrayOfBlocks to newArrayOfBlocks, and
+    // makes newArrayOfBlocks the arrayOfBlocks once they are all there.
+    protected void migrate(int n) {
+        numberOfMigratedBlocks = AbstractDynamicArray.migrateEntries(arrayOfBlocks, newArrayOfBlocks, numberOfMigratedBlocks, n, sizeOfArrayOfBlocks);
+        if(numberOfMigratedBlocks == sizeOfArrayOfBlocks) {
+            arrayOfBlocks = newArrayOfBlocks;
+            newArrayOfBlocks = null;
+            numberOfMigratedBlocks = 0;
+        }
+    }
+    
+    // Returns the number of elements in the LongIndexedDynamicArray.
+    public long size() {
+        return size;
+    }
+    
+    // Returns true if the LongIndexedDynamicArray holds no elements.
+    public boolean isEmpty() {
+        return size == 0;
+    }
+    
+    // Returns an iterator over the elements in order. It walks
+    // arrayOfBlocks one Block at a time, and throws
+    // ConcurrentModificationException if an element is added or removed
+    // after it was created.
+    public Iterator<T> iterator() {
+        return new BlockIterator();
+    }
+    
+    // Appends at most maxElements elements from the start to target,
+    // formatted as toString does. If elements are left out, the last one
+    // shown is followed by how many there are, as in [A, B, ... 2 more]
+    // Throws IllegalArgumentException if maxElements < 0.
+    // Throws IOException if target does.
+    // Target complexity: O(min(size, maxElements))
+    public void appendTo(Appendable target, long maxElements) throws IOException {
+        if(maxElements < 0) {
+            throw new IllegalArgumentException();
+        }
+        long n = Math.min(size, maxElements);
+        StringBuilder builder = AbstractDynamicArray.chunkFor(target);
+        builder.append("[");
+        long i = 0;
+        for(int blockIndex = 0; i < n; blockIndex++) {
+            Block<T> block = getBlock(blockIndex);
+            for(int elementIndex = 0; elementIndex < block.size() && i < n; elementIndex++, i++) {
+                if(i > 0) {
+                    builder.append(", ");
+                }
+                block.appendElement(builder, elementIndex);
+                if(builder != target && builder.length() >= AbstractDynamicArray.CHUNK_SIZE) {
+                    AbstractDynamicArray.flush(builder, target);
+                }
+            }
+        }
+        AbstractDynamicArray.appendMore(builder, n, size - n);
+        builder.append("]");
+        AbstractDynamicArray.flush(builder, target);
+    }
+    
+    // Create a pretty representation of the LongIndexedDynamicArray.
+    // Example:
+    // [A, B]
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        try {
+            appendTo(builder, size);
+        } catch(IOException e) {
+            throw new AssertionError(e); // a StringBuilder never throws
+        }
+        return builder.toString();
+    }
+    
+    // Iterator returned by iterator().
+    private class BlockIterator implements Iterator<T> {
+        private int blockIndex; // index of the Block holding the next element
+        private int elementIndex; // position of the next element in that Block
+        private long remaining = size; // number of elements not returned yet
+        private final int expectedModCount = modCount;
+        
+        public boolean hasNext() {
+            return remaining > 0;
+        }
+        
+        public T next() {
+            if(modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if(remaining == 0) {
+                throw new NoSuchElementException();
+            }
+            Block<T> block = getBlock(blockIndex);
+            T x = block.getElement(elementIndex++);
+            if(elementIndex == block.size()) {
+                // Move on to the next Block.
+                blockIndex++;
+                elementIndex = 0;
+            }
+            remaining--;
+            return x;
+        }
+    }
+}
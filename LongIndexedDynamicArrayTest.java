@@ -0,0 +1,186 @@
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.Random;
+
+// Runnable test of LongIndexedDynamicArray: its long locator against the
+// int one of AbstractDynamicArray, at SuperBlock boundaries up to
+// MAX_SIZE, random adds and removes against an ArrayList, and the moves
+// of the spine.
+// Throws AssertionError on the first difference.
+public class LongIndexedDynamicArrayTest {
+    public static void main(String[] args) {
+        testAgainstIntLocator();
+        testAroundIntRange();
+        testSuperBlockBoundaries();
+        testAgainstArrayList(new Random(1));
+        testSpineMoves();
+        System.out.println("LongIndexedDynamicArrayTest: ok");
+    }
+    
+    static void check(boolean condition, String message) {
+        if(!condition) {
+            throw new AssertionError(message);
+        }
+    }
+    
+    // Returns the capacity of the Block at position blockIndex in
+    // arrayOfBlocks: 2^ceil(k/2) for the SuperBlock k it is in.
+    static long capacityOf(int blockIndex) {
+        long r = LongIndexedDynamicArray.firstPositionOf(blockIndex) + 1;
+        return 1L << ((LongIndexedDynamicArray.floorLog2(r) + 1) / 2);
+    }
+    
+    // Checks that position i is element locateElement(i) of Block
+    // locateBlock(i), which starts at firstPositionOf of that Block.
+    static void checkPosition(long i) {
+        int blockIndex = LongIndexedDynamicArray.locateBlock(i);
+        int elementIndex = LongIndexedDynamicArray.locateElement(i);
+        check(LongIndexedDynamicArray.firstPositionOf(blockIndex) + elementIndex == i, "firstPositionOf(locateBlock(" + i + "))");
+        check(elementIndex >= 0 && elementIndex < capacityOf(blockIndex), "locateElement(" + i + ") = " + elementIndex);
+    }
+    
+    // Both locators agree on the first 2^20 positions, on the last ones an
+    // int can index, and on random ones in between.
+    static void testAgainstIntLocator() {
+        Random random = new Random(2);
+        for(int n = 0; n < 3 << 20; n++) {
+            int i = n < 1 << 20 ? n : n < 2 << 20 ? Integer.MAX_VALUE - 1 - (n - (1 << 20)) : random.nextInt(Integer.MAX_VALUE);
+            check(LongIndexedDynamicArray.locateBlock(i) == AbstractDynamicArray.locateBlock(i)
+                  && LongIndexedDynamicArray.locateElement(i) == AbstractDynamicArray.locateElement(i), "locate " + i);
+        }
+        for(int blockIndex = 0; blockIndex <= AbstractDynamicArray.locateBlock(Integer.MAX_VALUE - 1); blockIndex++) {
+            check(LongIndexedDynamicArray.firstPositionOf(blockIndex) == AbstractDynamicArray.firstPositionOf(blockIndex), "firstPositionOf " + blockIndex);
+        }
+    }
+    
+    // Positions around 2^31, where an int r = i + 1 would overflow, are
+    // located in Blocks that follow on from the last one an int reaches.
+    static void testAroundIntRange() {
+        for(long i = (1L << 31) - 1000; i < (1L << 31) + 1000; i++) {
+            checkPosition(i);
+        }
+        int lastIntBlock = AbstractDynamicArray.locateBlock(Integer.MAX_VALUE - 1);
+        check(LongIndexedDynamicArray.locateBlock(Integer.MAX_VALUE) == lastIntBlock + 1, "first Block beyond the int range");
+        check(LongIndexedDynamicArray.locateElement(Integer.MAX_VALUE) == 0, "first element beyond the int range");
+        check(LongIndexedDynamicArray.firstPositionOf(lastIntBlock + 1) == Integer.MAX_VALUE, "firstPositionOf beyond the int range");
+    }
+    
+    // SuperBlock k starts at position 2^k - 1 for every k up to MAX_K, and
+    // its last Block ends at 2^(k+1) - 2; the last of them ends at
+    // MAX_SIZE - 1, in the last Block the spine can hold.
+    static void testSuperBlockBoundaries() {
+        for(int k = 0; k <= LongIndexedDynamicArray.MAX_K; k++) {
+            long first = (1L << k) - 1;
+            int p = AbstractDynamicArray.computeP(k);
+            check(LongIndexedDynamicArray.locateBlock(first) == p && LongIndexedDynamicArray.locateElement(first) == 0, "locate 2^" + k + " - 1");
+            check(LongIndexedDynamicArray.firstPositionOf(p) == first, "firstPositionOf " + p);
+            check(capacityOf(p) == 1L << ((k + 1) / 2), "capacity in SuperBlock " + k);
+            long last = (1L << (k + 1)) - 2;
+            check(LongIndexedDynamicArray.locateBlock(last) == AbstractDynamicArray.computeP(k + 1) - 1, "locate 2^" + (k + 1) + " - 2");
+            for(long i : new long[] {first, first + 1, (first + last) / 2, last - 1, last}) {
+                if(i >= first && i <= last) {
+                    checkPosition(i);
+                }
+            }
+        }
+        long last = LongIndexedDynamicArray.MAX_SIZE - 1;
+        check(LongIndexedDynamicArray.locateBlock(last) == LongIndexedDynamicArray.MAX_SPINE_LENGTH - 1, "last Block at MAX_SIZE");
+        check(LongIndexedDynamicArray.locateElement(last) == (1 << 29) - 1, "last element at MAX_SIZE");
+        check(LongIndexedDynamicArray.firstPositionOf(LongIndexedDynamicArray.MAX_SPINE_LENGTH) == LongIndexedDynamicArray.MAX_SIZE, "end of the spine");
+    }
+    
+    // Random runs of adds and removes that cross SuperBlock boundaries
+    // back and forth, with get, set, the iterator and toString compared
+    // with an ArrayList.
+    static void testAgainstArrayList(Random random) {
+        LongIndexedDynamicArray<Integer> array = new LongIndexedDynamicArray<Integer>();
+        ArrayList<Integer> expected = new ArrayList<Integer>();
+        for(int step = 0; step < 300; step++) {
+            int n = random.nextInt(5000);
+            if(random.nextInt(3) > 0) {
+                for(int i = 0; i < n; i++) {
+                    array.add(step * 10000 + i);
+                    expected.add(step * 10000 + i);
+                }
+            } else {
+                for(int i = 0; i < n && !expected.isEmpty(); i++) {
+                    array.remove();
+                    expected.remove(expected.size() - 1);
+                }
+            }
+            if(!expected.isEmpty()) {
+                int i = random.nextInt(expected.size());
+                array.set(i, -i);
+                expected.set(i, -i);
+            }
+            if(step % 100 == 99) {
+                array.clear();
+                expected.clear();
+            }
+            checkEqual(expected, array);
+        }
+    }
+    
+    // Grows an array to a million elements and back to none, one element
+    // at a time. The spine must be moved a few entries at a time, so moves
+    // are seen in progress both ways, and must end as short as it started.
+    static void testSpineMoves() {
+        LongIndexedDynamicArray<Integer> array = new LongIndexedDynamicArray<Integer>();
+        int longerMoves = 0;
+        int shorterMoves = 0;
+        for(int i = 0; i < 1000000; i++) {
+            array.add(i);
+            if(array.newArrayOfBlocks != null && array.newArrayOfBlocks.length > array.arrayOfBlocks.length) {
+                longerMoves++;
+            }
+            if(i % 1000 == 0) {
+                checkSpine(array);
+            }
+        }
+        for(int i = 1000000; i > 0; i--) {
+            array.remove();
+            if(array.newArrayOfBlocks != null && array.newArrayOfBlocks.length < array.arrayOfBlocks.length) {
+                shorterMoves++;
+            }
+            if(i % 1000 == 0) {
+                checkSpine(array);
+            }
+        }
+        check(longerMoves > 0 && shorterMoves > 0, "no move of the spine in progress");
+        check(array.newArrayOfBlocks != null || array.arrayOfBlocks.length == LongIndexedDynamicArray.DEFAULTCAPACITY, "spine left at " + array.arrayOfBlocks.length);
+        checkSpine(array);
+    }
+    
+    // Checks that the spine holds every Block in order, that nothing is
+    // left after them, and that the entries of a move in progress that
+    // were copied already are the same in both spines.
+    static void checkSpine(LongIndexedDynamicArray<Integer> array) {
+        check(array.sizeOfArrayOfBlocks <= array.arrayOfBlocks.length, "spine too short");
+        for(int i = 0; i < array.sizeOfArrayOfBlocks; i++) {
+            check(array.getBlock(i).getNumber() == i, "Block number " + i);
+        }
+        for(int i = array.sizeOfArrayOfBlocks; i < array.arrayOfBlocks.length; i++) {
+            check(array.arrayOfBlocks[i] == null, "stale spine entry " + i);
+        }
+        if(array.newArrayOfBlocks != null) {
+            for(int i = 0; i < array.numberOfMigratedBlocks; i++) {
+                check(array.newArrayOfBlocks[i] == array.arrayOfBlocks[i], "migrated entry " + i);
+            }
+        }
+    }
+    
+    // Compares array with expected through size, get, the iterator and
+    // toString.
+    static void checkEqual(ArrayList<Integer> expected, LongIndexedDynamicArray<Integer> array) {
+        check(array.size() == expected.size() && array.isEmpty() == expected.isEmpty(), "size " + array.size() + " instead of " + expected.size());
+        Iterator<Integer> it = array.iterator();
+        for(int i = 0; i < expected.size(); i++) {
+            check(Objects.equals(array.get(i), expected.get(i)), "get " + i);
+            check(Objects.equals(it.next(), expected.get(i)), "iterator " + i);
+        }
+        check(!it.hasNext(), "iterator end");
+        check(array.toString().equals(expected.toString()), "toString");
+        checkSpine(array);
+    }
+}
@@ -0,0 +1,249 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// An OffHeapDynamicArray whose Blocks are regions of a memory-mapped file,
+// so that it survives a restart. The file starts with a header of
+// HEADER_SIZE bytes, followed by the records of every Block in order of
+// Block number, so each SuperBlock occupies one contiguous stretch of the
+// file. A Block is mapped when grow creates it, which extends the file
+// one Block at a time.
+//
+// Reopening a file maps its Blocks again and reads the size and the
+// SuperBlock state from the header, without reading any record; pages
+// are only loaded when an element is first read, and elements are read
+// straight from the mapped pages. Changes are durable once force()
+// returns: it writes every Block back to the file before the header, so
+// the header never counts records that have not been written. Records
+// are stored little-endian whatever the platform.
+class MappedDynamicArray<T> extends OffHeapDynamicArray<T> {
+    // Header layout, in bytes from the start of the file
+    protected static final int MAGIC = 0x44594E41; // "DYNA"
+    protected static final int VERSION = 1;
+    protected static final int HEADER_SIZE = 64;
+    private static final int MAGIC_OFFSET = 0;
+    private static final int VERSION_OFFSET = 4;
+    private static final int WIDTH_OFFSET = 8;
+    private static final int SIZE_OFFSET = 12;
+    private static final int NUMBER_OF_DATA_BLOCKS_OFFSET = 16;
+    private static final int NUMBER_OF_SUPER_BLOCKS_OFFSET = 20;
+    private static final int LAST_SUPER_BLOCK_OFFSET = 24; // number, maxNumberOfDataBlocks, maxNumberOfElementsPerBlock, currentNumberOfDataBlocks
+    
+    protected final FileChannel channel; // the file, open for reading and writing
+    // Position in the file just past the records of the last data Block,
+    // where the next Block is mapped
+    protected long endOfBlocks;
+    
+    // Opens file, creating it if it does not exist, and loads the
+    // MappedDynamicArray stored in it. An existing file is checked before
+    // anything is mapped, since mapping extends a file, and the file is
+    // closed again if it cannot be loaded.
+    // Throws IOException if file cannot be opened or mapped, or holds
+    // something other than a MappedDynamicArray of records of the width
+    // of codec.
+    MappedDynamicArray(Path file, RecordCodec<T> codec) throws IOException {
+        this(open(file, codec), codec);
+    }
+    
+    private MappedDynamicArray(FileChannel channel, RecordCodec<T> codec) throws IOException {
+        this(channel, codec, isExisting(channel));
+    }
+    
+    // existing tells whether the file had been written before; mapping
+    // the first Block extends an empty file, so it is found out first.
+    // If the file cannot be loaded, every Block is unmapped and the
+    // channel is closed.
+    private MappedDynamicArray(FileChannel channel, RecordCodec<T> codec, boolean existing) throws IOException {
+        super(new OffHeapBlock<T>(0, 1, codec, mapFirstBlock(channel, codec)), codec);
+        this.channel = channel;
+        endOfBlocks = HEADER_SIZE + codec.width();
+        try {
+            if(existing) {
+                load();
+            } else {
+                writeHeader();
+            }
+        } catch(IOException | RuntimeException | Error e) {
+            super.close();
+            channel.close();
+            throw e;
+        }
+    }
+    
+    // Opens file for reading and writing, creating it if it does not
+    // exist. If it is not empty, its header is read with the channel and
+    // checked, and so is its length against the Blocks the header
+    // records, so that nothing is mapped over a file that is not a
+    // MappedDynamicArray. The channel is closed if the check fails.
+    private static FileChannel open(Path file, RecordCodec<?> codec) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+        try {
+            if(channel.size() > 0) {
+                checkHeader(channel, readHeader(channel), codec);
+            }
+            return channel;
+        } catch(IOException | RuntimeException | Error e) {
+            channel.close();
+            throw e;
+        }
+    }
+    
+    // Throws IOException unless header is the header of a
+    // MappedDynamicArray of records of the width of codec, and channel is
+    // long enough for the Blocks it records.
+    private static void checkHeader(FileChannel channel, ByteBuffer header, RecordCodec<?> codec) throws IOException {
+        if(header.getInt(MAGIC_OFFSET) != MAGIC || header.getInt(VERSION_OFFSET) != VERSION) {
+            throw new IOException("not a MappedDynamicArray file");
+        }
+        if(header.getInt(WIDTH_OFFSET) != codec.width()) {
+            throw new IOException("records are " + header.getInt(WIDTH_OFFSET) + " bytes wide, not " + codec.width());
+        }
+        int n = header.getInt(SIZE_OFFSET);
+        int numberOfDataBlocks = header.getInt(NUMBER_OF_DATA_BLOCKS_OFFSET);
+        // The Blocks holding the elements, and at most one empty Block.
+        int leastNumberOfDataBlocks = n == 0 ? 1 : locateBlock(n - 1) + 1;
+        if(n < 0 || numberOfDataBlocks < leastNumberOfDataBlocks || numberOfDataBlocks > leastNumberOfDataBlocks + 1) {
+            throw new IOException("header does not match a MappedDynamicArray of size " + n);
+        }
+        int lastBlock = numberOfDataBlocks - 1;
+        int firstPosition = firstPositionOf(lastBlock);
+        long capacity = (long) firstPosition + (1L << ((floorLog2(firstPosition + 1) + 1) / 2));
+        if(firstPosition < 0 || channel.size() < HEADER_SIZE + capacity * codec.width()) {
+            throw new IOException("file is shorter than the " + numberOfDataBlocks + " Blocks in its header");
+        }
+    }
+    
+    // Returns true if channel is not empty, and so holds a header that
+    // open has checked. The channel is closed if its size cannot be read.
+    private static boolean isExisting(FileChannel channel) throws IOException {
+        try {
+            return channel.size() > 0;
+        } catch(IOException | RuntimeException | Error e) {
+            channel.close();
+            throw e;
+        }
+    }
+    
+    // Maps the first Block, just after the header. The channel is closed
+    // if it cannot be mapped.
+    private static ByteBuffer mapFirstBlock(FileChannel channel, RecordCodec<?> codec) throws IOException {
+        try {
+            return map(channel, HEADER_SIZE, codec.width());
+        } catch(IOException | RuntimeException | Error e) {
+            channel.close();
+            throw e;
+        }
+    }
+    
+    // Maps length bytes of channel starting at position, extending the
+    // file if it is shorter.
+    private static ByteBuffer map(FileChannel channel, long position, int length) throws IOException {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, position, length);
+        return buffer.order(ByteOrder.LITTLE_ENDIAN);
+    }
+    
+    // Maps the region of the file after the last data Block as an empty
+    // Block.
+    protected OffHeapBlock<T> newBlock(int number, int capacity) {
+        int length = capacity * codec.width();
+        try {
+            OffHeapBlock<T> block = new OffHeapBlock<T>(number, capacity, codec, map(channel, endOfBlocks, length));
+            endOfBlocks += length;
+            return block;
+        } catch(IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    // Unmaps a deleted Block. Its region of the file is reused by the
+    // next Block created.
+    protected void releaseBlock(AbstractBlock block) {
+        endOfBlocks -= (long) block.getCapacity() * codec.width();
+        super.releaseBlock(block);
+    }
+    
+    // Rebuilds the Blocks and SuperBlocks recorded in the header, which
+    // open has checked. The layout follows from the size alone, except
+    // for the one empty Block that may be kept after the last element, so
+    // the number of data Blocks is recorded as well and the SuperBlock
+    // state is checked against the rebuilt one.
+    private void load() throws IOException {
+        ByteBuffer header = readHeader(channel);
+        int n = header.getInt(SIZE_OFFSET);
+        growBy(n);
+        size = n;
+        while(numberOfDataBlocks < header.getInt(NUMBER_OF_DATA_BLOCKS_OFFSET)) {
+            addBlock();
+        }
+        if(numberOfDataBlocks != header.getInt(NUMBER_OF_DATA_BLOCKS_OFFSET)
+           || numberOfSuperBlocks != header.getInt(NUMBER_OF_SUPER_BLOCKS_OFFSET)
+           || lastSuperBlock.getNumber() != header.getInt(LAST_SUPER_BLOCK_OFFSET)
+           || lastSuperBlock.getMaxNumberOfDataBlocks() != header.getInt(LAST_SUPER_BLOCK_OFFSET + 4)
+           || lastSuperBlock.getMaxNumberOfElementsPerBlock() != header.getInt(LAST_SUPER_BLOCK_OFFSET + 8)
+           || lastSuperBlock.getCurrentNumberOfDataBlocks() != header.getInt(LAST_SUPER_BLOCK_OFFSET + 12)) {
+            throw new IOException("header does not match a MappedDynamicArray of size " + n);
+        }
+    }
+    
+    // Reads the header from the start of the file.
+    private static ByteBuffer readHeader(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        while(header.hasRemaining()) {
+            if(channel.read(header, header.position()) < 0) {
+                throw new IOException("truncated header");
+            }
+        }
+        return header;
+    }
+    
+    // Writes the size and the SuperBlock state to the header.
+    private void writeHeader() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC_OFFSET, MAGIC);
+        header.putInt(VERSION_OFFSET, VERSION);
+        header.putInt(WIDTH_OFFSET, codec.width());
+        header.putInt(SIZE_OFFSET, size);
+        header.putInt(NUMBER_OF_DATA_BLOCKS_OFFSET, numberOfDataBlocks);
+        header.putInt(NUMBER_OF_SUPER_BLOCKS_OFFSET, numberOfSuperBlocks);
+        header.putInt(LAST_SUPER_BLOCK_OFFSET, lastSuperBlock.getNumber());
+        header.putInt(LAST_SUPER_BLOCK_OFFSET + 4, lastSuperBlock.getMaxNumberOfDataBlocks());
+        header.putInt(LAST_SUPER_BLOCK_OFFSET + 8, lastSuperBlock.getMaxNumberOfElementsPerBlock());
+        header.putInt(LAST_SUPER_BLOCK_OFFSET + 12, lastSuperBlock.getCurrentNumberOfDataBlocks());
+        while(header.hasRemaining()) {
+            channel.write(header, header.position());
+        }
+    }
+    
+    // Makes every change so far durable: writes every Block back to the
+    // file, then the header, and waits for the device.
+    // Throws IOException if the file cannot be written.
+    // Target complexity: O(number of Blocks + pages written)
+    public void force() throws IOException {
+        for(int i = 0; i < sizeOfArrayOfBlocks; i++) {
+            ((MappedByteBuffer) getBlock(i).buffer).force();
+        }
+        writeHeader();
+        channel.force(false);
+    }
+    
+    // Forces every change to the file, unmaps every Block, trims the file
+    // to the Blocks in use and closes it. The MappedDynamicArray must not
+    // be used afterwards.
+    // Throws UncheckedIOException if the file cannot be written.
+    public void close() {
+        try {
+            force();
+            long length = endOfBlocks;
+            super.close();
+            channel.truncate(length);
+            channel.close();
+        } catch(IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
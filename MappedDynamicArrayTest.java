@@ -0,0 +1,144 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+// Runnable test of MappedDynamicArray: arrays written, closed and opened
+// again, and files that must be refused without being changed or left
+// open.
+// Throws AssertionError on the first difference.
+public class MappedDynamicArrayTest {
+    public static void main(String[] args) throws IOException {
+        Path directory = Files.createTempDirectory("MappedDynamicArrayTest");
+        try {
+            testReopen(directory.resolve("reopen"));
+            testRefused(directory);
+        } finally {
+            for(File file : directory.toFile().listFiles()) {
+                file.delete();
+            }
+            Files.delete(directory);
+        }
+        System.out.println("MappedDynamicArrayTest: ok");
+    }
+    
+    static void check(boolean condition, String message) {
+        if(!condition) {
+            throw new AssertionError(message);
+        }
+    }
+    
+    // Records of 8 bytes holding a long.
+    static final RecordCodec<Long> LONGS = new RecordCodec<Long>() {
+        public int width() {
+            return 8;
+        }
+        
+        public void write(ByteBuffer buffer, int offset, Long x) {
+            buffer.putLong(offset, x);
+        }
+        
+        public Long read(ByteBuffer buffer, int offset) {
+            return buffer.getLong(offset);
+        }
+    };
+    
+    // Records of 4 bytes holding an int.
+    static final RecordCodec<Integer> INTS = new RecordCodec<Integer>() {
+        public int width() {
+            return 4;
+        }
+        
+        public void write(ByteBuffer buffer, int offset, Integer x) {
+            buffer.putInt(offset, x);
+        }
+        
+        public Integer read(ByteBuffer buffer, int offset) {
+            return buffer.getInt(offset);
+        }
+    };
+    
+    // Grows and shrinks an array across opens, so that it is reopened
+    // with and without an empty Block after the last element.
+    static void testReopen(Path file) throws IOException {
+        int[] sizes = {0, 1, 2, 5, 1000, 999, 100000, 4, 3, 65536, 0};
+        int expected = 0;
+        for(int target : sizes) {
+            MappedDynamicArray<Long> array = new MappedDynamicArray<Long>(file, LONGS);
+            check(array.size() == expected, "size " + array.size() + " instead of " + expected);
+            for(int i = 0; i < expected; i++) {
+                check(array.get(i) == i * 3L, "get " + i);
+            }
+            while(array.size() < target) {
+                array.add(array.size() * 3L);
+            }
+            if(array.size() > target) {
+                array.removeLast(array.size() - target);
+            }
+            expected = target;
+            array.close();
+        }
+    }
+    
+    // Files that are not MappedDynamicArray files of the right width must
+    // be refused, with the same length and bytes as before, and closed.
+    static void testRefused(Path directory) throws IOException {
+        Path text = directory.resolve("text");
+        Files.write(text, "hello".getBytes("US-ASCII"));
+        checkRefused(text, LONGS);
+        
+        Path shortHeader = directory.resolve("short");
+        Files.write(shortHeader, new byte[MappedDynamicArray.HEADER_SIZE - 1]);
+        checkRefused(shortHeader, LONGS);
+        
+        Path longs = directory.resolve("longs");
+        MappedDynamicArray<Long> array = new MappedDynamicArray<Long>(longs, LONGS);
+        for(long i = 0; i < 5000; i++) {
+            array.add(i);
+        }
+        array.close();
+        checkRefused(longs, INTS);
+        
+        Path truncated = directory.resolve("truncated");
+        Files.write(truncated, Arrays.copyOf(Files.readAllBytes(longs), (int) Files.size(longs) - 8));
+        checkRefused(truncated, LONGS);
+        
+        Path badSize = directory.resolve("badSize");
+        byte[] bytes = Files.readAllBytes(longs);
+        ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).putInt(12, 1 << 30);
+        Files.write(badSize, bytes);
+        checkRefused(badSize, LONGS);
+        
+        MappedDynamicArray<Long> reopened = new MappedDynamicArray<Long>(longs, LONGS);
+        check(reopened.size() == 5000 && reopened.get(4999) == 4999L, "refused opens changed the file");
+        reopened.close();
+    }
+    
+    static <T> void checkRefused(Path file, RecordCodec<T> codec) throws IOException {
+        byte[] before = Files.readAllBytes(file);
+        int openBefore = openFiles();
+        try {
+            new MappedDynamicArray<T>(file, codec).close();
+            throw new AssertionError(file.getFileName() + " was opened");
+        } catch(IOException e) {
+            // refused, as it should be
+        }
+        check(Arrays.equals(Files.readAllBytes(file), before), file.getFileName() + " was changed");
+        check(openFiles() <= openBefore, file.getFileName() + " was left open");
+        // Nothing holds the file, so it can still be opened for writing.
+        FileChannel.open(file, StandardOpenOption.WRITE).close();
+    }
+    
+    // Returns the number of files this process has open, or 0 where that
+    // cannot be found out.
+    static int openFiles() {
+        String[] descriptors = Paths.get("/proc/self/fd").toFile().list();
+        return descriptors == null ? 0 : descriptors.length;
+    }
+}
@@ -0,0 +1,91 @@
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+// A Block whose elements are stored as fixed-width records in a direct
+// ByteBuffer, outside the Java heap. Only the Block object itself and its
+// buffer header live on the heap.
+public class OffHeapBlock<T> extends AbstractBlock {
+    protected final RecordCodec<T> codec; // converts elements to and from records
+    protected ByteBuffer buffer; // Holds actual elements; null once freed
+    
+    // Frees the native memory of a direct ByteBuffer right away instead of
+    // waiting for the garbage collector. null if the running JDK does not
+    // allow it, in which case freeing is left to the garbage collector.
+    private static final Object UNSAFE;
+    private static final Method INVOKE_CLEANER;
+    static {
+        Object unsafe = null;
+        Method invokeCleaner = null;
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            unsafe = theUnsafe.get(null);
+            invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+        } catch(ReflectiveOperationException | RuntimeException e) {
+            unsafe = null;
+            invokeCleaner = null;
+        }
+        UNSAFE = unsafe;
+        INVOKE_CLEANER = invokeCleaner;
+    }
+    
+    // Workhorse constructor. Initialize variables and allocate
+    // capacity records of native memory.
+    public OffHeapBlock(int number, int capacity, RecordCodec<T> codec) {
+        super(number, capacity);
+        this.codec = codec;
+        this.buffer = ByteBuffer.allocateDirect(capacity * codec.width()).order(ByteOrder.nativeOrder());
+    }
+    
+    // Constructor for a Block whose records live in buffer, which must
+    // hold at least capacity records, such as a region of a mapped file.
+    protected OffHeapBlock(int number, int capacity, RecordCodec<T> codec, ByteBuffer buffer) {
+        super(number, capacity);
+        this.codec = codec;
+        this.buffer = buffer;
+    }
+    
+    // Decrease the space allocated for storing elements. Decreases size.
+    // The record itself is simply overwritten by the next add.
+    public void shrink() {
+        size--;
+    }
+    
+    // Decrease the space allocated for storing elements by n. Decreases
+    // size by n.
+    public void shrink(int n) {
+        size -= n;
+    }
+    
+    // Returns the element at position index in the buffer.
+    public T getElement(int index) {
+        return codec.read(buffer, index * codec.width());
+    }
+    
+    // Sets the value at position i in the buffer to x.
+    public void setElement(int i, T x) {
+        codec.write(buffer, i * codec.width(), x);
+    }
+    
+    // Releases the native memory of this Block. The Block must not be
+    // used afterwards.
+    public void free() {
+        ByteBuffer freed = buffer;
+        buffer = null;
+        if(freed != null && INVOKE_CLEANER != null) {
+            try {
+                INVOKE_CLEANER.invoke(UNSAFE, freed);
+            } catch(ReflectiveOperationException e) {
+                // The garbage collector frees the buffer instead.
+            }
+        }
+    }
+    
+    // Appends the element at position index to builder.
+    protected void appendElement(StringBuilder builder, int index) {
+        builder.append(getElement(index));
+    }
+}
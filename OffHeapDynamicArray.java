@@ -0,0 +1,83 @@
+// A DynamicArray whose elements live outside the Java heap. Every Block
+// is a direct buffer of fixed-width records written and read by a
+// RecordCodec. A Block's native memory is allocated when grow creates it
+// and freed when remove deletes it, so the heap only holds the O(sqrt n)
+// Block objects and arrayOfBlocks, whatever the number of elements.
+class OffHeapDynamicArray<T> extends AbstractDynamicArray implements AutoCloseable {
+    protected final RecordCodec<T> codec; // converts elements to and from records
+    
+    // Workhorse constructor. Initialize variables, create the array
+    // and the last SuperBlock, which represents SB0.
+    OffHeapDynamicArray(RecordCodec<T> codec) {
+        super(new OffHeapBlock<T>(0, 1, codec));
+        this.codec = codec;
+    }
+    
+    // Constructor for subclasses that keep their records somewhere else.
+    // firstBlock must be an empty Block numbered 0 with a capacity of 1.
+    protected OffHeapDynamicArray(OffHeapBlock<T> firstBlock, RecordCodec<T> codec) {
+        super(firstBlock);
+        this.codec = codec;
+    }
+    
+    // Creates an empty Block with native memory for capacity records.
+    protected OffHeapBlock<T> newBlock(int number, int capacity) {
+        return new OffHeapBlock<T>(number, capacity, codec);
+    }
+    
+    @SuppressWarnings("unchecked")
+    // Frees the native memory of a Block deleted by remove.
+    protected void releaseBlock(AbstractBlock block) {
+        ((OffHeapBlock<T>) block).free();
+    }
+    
+    @SuppressWarnings("unchecked")
+    // Returns the Block at position i in arrayOfBlocks.
+    // Target complexity: O(1)
+    protected OffHeapBlock<T> getBlock(int index) {
+        return (OffHeapBlock<T>) arrayOfBlocks[index];
+    }
+    
+    // Returns the element at position i in the OffHeapDynamicArray.
+    // Throws IllegalArgumentException if index < 0 or 
+    // index > size -1;
+    // Target complexity: O(1)
+    public T get(int i) {
+        if(i < 0 || i > size - 1) {
+            throw new IllegalArgumentException();
+        }
+        return getBlock(locateBlock(i)).getElement(locateElement(i));
+    }
+    
+    // Sets the value at position i in OffHeapDynamicArray to x.
+    // Throws IllegalArgumentException if index < 0 or 
+    // index > size -1;
+    // Target complexity: O(1)
+    public void set(int index, T x) {
+        if(index < 0 || index > size - 1) {
+            throw new IllegalArgumentException();
+        }
+        getBlock(locateBlock(index)).setElement(locateElement(index), x);
+    }
+    
+    // Grows the OffHeapDynamicArray by one space, increases the size of the 
+    // OffHeapDynamicArray, and sets the last element to x.  
+    // Target complexity: O(1)
+    public void add(T x) {
+        grow();
+        size++;
+        OffHeapBlock<T> lastNonEmptyDataBlock = getBlock(indexOfLastNonEmptyDataBlock);
+        lastNonEmptyDataBlock.setElement(lastNonEmptyDataBlock.size() - 1, x);
+    }
+    
+    // Frees the native memory of every Block. The OffHeapDynamicArray
+    // must not be used afterwards.
+    public void close() {
+        for(int i = 0; i < sizeOfArrayOfBlocks; i++) {
+            getBlock(i).free();
+            replaceBlock(i, null);
+        }
+        sizeOfArrayOfBlocks = 0;
+        size = 0;
+    }
+}
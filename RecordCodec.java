@@ -0,0 +1,16 @@
+import java.nio.ByteBuffer;
+
+// Converts elements of type T to and from fixed-width records so that an
+// OffHeapDynamicArray can store them outside the Java heap. Every record
+// takes exactly width() bytes.
+public interface RecordCodec<T> {
+    
+    // Returns the number of bytes of one record.
+    int width();
+    
+    // Writes x as a record to buffer, starting at byte offset.
+    void write(ByteBuffer buffer, int offset, T x);
+    
+    // Reads the record starting at byte offset in buffer.
+    T read(ByteBuffer buffer, int offset);
+}
@@ -0,0 +1,39 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+// A JFR event for one structural change of a DynamicArray: a Block
+// created or deleted, a move of arrayOfBlocks to a longer or shorter
+// spine started or finished, a move to the next or previous SuperBlock,
+// a snapshot taken, or a shared Block copied on write. Committed by
+// DynamicArrayMetrics when JFR records it, so that latency spikes can be
+// lined up with restructuring.
+@Name("DynamicArray.Restructure")
+@Label("DynamicArray Restructure")
+@Category("DynamicArray")
+@Description("A structural change of a DynamicArray")
+class RestructureEvent extends Event {
+    @Label("Operation")
+    String operation;
+    
+    @Label("Array Class")
+    String arrayClass;
+    
+    @Label("Size")
+    @Description("Number of elements after the change")
+    int size;
+    
+    @Label("Spine Length")
+    @Description("Length of arrayOfBlocks after the change")
+    int spineLength;
+    
+    @Label("Number")
+    @Description("Number of the Block or SuperBlock, the new spine length, or the Blocks in a snapshot")
+    int number;
+    
+    @Label("Capacity")
+    @Description("Elements per Block of the Block or SuperBlock")
+    int capacity;
+}
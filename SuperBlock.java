@@ -45,6 +45,16 @@ public class SuperBlock {
         --currentNumberOfDataBlocks;
     }
     
+    // Returns the SuperBlock after this one, with no Block in it yet.
+    // After an even SuperBlock, Blocks get twice as long; after an odd
+    // one, there are twice as many of them.
+    public SuperBlock next() {
+        if(number % 2 == 0) {
+            return new SuperBlock(number + 1, maxNumberOfDataBlocks, maxNumberOfElementsPerBlock * 2, 0);
+        }
+        return new SuperBlock(number + 1, maxNumberOfDataBlocks * 2, maxNumberOfElementsPerBlock, 0);
+    }
+    
     // Create a pretty representation of the SuperBlock for debugging.
     // Example:
     // - maxNumberOfDataBlocks:2 
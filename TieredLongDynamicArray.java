@@ -0,0 +1,333 @@
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// A LongDynamicArray that keeps its cold Blocks compressed. A full Block,
+// other than the last non-empty one, that is neither read nor written for
+// a whole coldPeriod is replaced by a CompressedLongBlock: the difference
+// of every element from the one before, zigzag encoded as a varint, so a
+// slowly changing series such as timestamps takes one or two bytes per
+// element instead of eight.
+//
+// Reading a compressed Block decodes it into a LongBlock that is kept in
+// a cache of the cacheSize Blocks decoded most recently; changing one
+// puts the decoded LongBlock back in arrayOfBlocks for good. Accesses are
+// tracked with one bit per Block. A sweep compresses every full Block
+// whose bit is clear and then clears them all; it runs when a Block is
+// created at least coldPeriod after the previous sweep, and whenever
+// compressColdBlocks is called.
+class TieredLongDynamicArray extends LongDynamicArray {
+    protected static final Duration DEFAULT_COLD_PERIOD = Duration.ofMinutes(1);
+    protected static final int DEFAULT_CACHE_SIZE = 8;
+    // Blocks of fewer elements are never compressed; they save too little
+    // to be worth decoding.
+    protected static final int MIN_COMPRESSED_CAPACITY = 64;
+    
+    protected final long coldPeriod; // nanoseconds a Block must go untouched to be compressed
+    protected final int cacheSize; // largest number of decoded Blocks kept
+    protected long lastSweep = System.nanoTime(); // when the last sweep ran
+    protected final BitSet touched = new BitSet(); // Blocks accessed since the last sweep, by index
+    // Decoded copies of compressed Blocks, least recently used first
+    protected final Map<CompressedLongBlock, LongBlock> cache;
+    // The compressed Block read last and its decoded copy, checked before
+    // the cache so that walking one Block does not look it up every time
+    private CompressedLongBlock lastCompressed;
+    private LongBlock lastDecoded;
+    private byte[] buffer = new byte[0]; // scratch space for encoding
+    
+    protected long cacheHits; // reads of a compressed Block found decoded
+    protected long cacheMisses; // reads of a compressed Block that decoded it
+    protected long decodeNanos; // time spent decoding
+    protected int numberOfCompressedBlocks;
+    protected long compressedBytes; // bytes held by the compressed Blocks
+    
+    // Workhorse constructor. Compresses Blocks left untouched for
+    // DEFAULT_COLD_PERIOD, and keeps DEFAULT_CACHE_SIZE decoded Blocks.
+    TieredLongDynamicArray( ) {
+        this(DEFAULT_COLD_PERIOD, DEFAULT_CACHE_SIZE);
+    }
+    
+    // Compresses Blocks left untouched for coldPeriod, and keeps
+    // cacheSize decoded Blocks.
+    // Throws IllegalArgumentException if coldPeriod is negative or
+    // cacheSize < 1.
+    TieredLongDynamicArray(Duration coldPeriod, int cacheSize) {
+        if(coldPeriod.isNegative() || cacheSize < 1) {
+            throw new IllegalArgumentException();
+        }
+        this.coldPeriod = coldPeriod.toNanos();
+        this.cacheSize = cacheSize;
+        this.cache = new LinkedHashMap<CompressedLongBlock, LongBlock>(16, 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry<CompressedLongBlock, LongBlock> eldest) {
+                if(size() > TieredLongDynamicArray.this.cacheSize) {
+                    TieredLongDynamicArray.super.releaseBlock(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+    
+    // Returns the Block at position i in arrayOfBlocks to be read, decoded
+    // through the cache if it is compressed, and marks it touched.
+    // Target complexity: O(1), or O(size of the Block) when it is decoded
+    protected LongBlock getBlock(int index) {
+        touched.set(index);
+        Object block = arrayOfBlocks[index];
+        if(block instanceof CompressedLongBlock) {
+            return decoded((CompressedLongBlock) block);
+        }
+        return (LongBlock) block;
+    }
+    
+    // Returns the Block at position i in arrayOfBlocks, about to be
+    // changed in place, and marks it touched. A compressed Block is
+    // decoded and put back in arrayOfBlocks first.
+    // Target complexity: O(1), or O(size of the Block) when it is decoded
+    protected LongBlock writableBlock(int index) {
+        touched.set(index);
+        Object block = arrayOfBlocks[index];
+        if(block instanceof CompressedLongBlock) {
+            CompressedLongBlock compressed = (CompressedLongBlock) block;
+            LongBlock decoded = decoded(compressed);
+            forget(compressed);
+            replaceBlock(index, decoded);
+            return decoded;
+        }
+        return (LongBlock) block;
+    }
+    
+    // Forgets a deleted compressed Block and its decoded copy; any other
+    // Block goes to the blockPool as usual.
+    protected void releaseBlock(AbstractBlock block) {
+        if(block instanceof CompressedLongBlock) {
+            LongBlock decoded = cache.get(block);
+            forget((CompressedLongBlock) block);
+            if(decoded != null) {
+                super.releaseBlock(decoded);
+            }
+        } else {
+            super.releaseBlock(block);
+        }
+    }
+    
+    // Creates a Block as usual, then sweeps if coldPeriod has passed
+    // since the last sweep.
+    protected void addBlock() {
+        super.addBlock();
+        if(System.nanoTime() - lastSweep >= coldPeriod) {
+            compressColdBlocks();
+        }
+    }
+    
+    // Removes every element, compressed or not.
+    // Target complexity: O(number of Blocks)
+    public void clear() {
+        super.clear();
+        touched.clear();
+    }
+    
+    // Compresses every full Block but the last non-empty one that has not
+    // been accessed since the previous sweep, then starts a new period.
+    // A Block is left as it is if compressing it would not save space.
+    // Target complexity: O(number of Blocks + size of the Blocks compressed)
+    public void compressColdBlocks() {
+        // Every Block before the last non-empty one is full.
+        for(int i = 0; i < indexOfLastNonEmptyDataBlock; i++) {
+            Object block = arrayOfBlocks[i];
+            if(block instanceof LongBlock && !touched.get(i)) {
+                LongBlock raw = (LongBlock) block;
+                if(raw.getCapacity() >= MIN_COMPRESSED_CAPACITY) {
+                    compress(i, raw);
+                }
+            }
+        }
+        touched.clear();
+        lastSweep = System.nanoTime();
+    }
+    
+    // Replaces the full Block raw at position index in arrayOfBlocks by a
+    // CompressedLongBlock, if that is smaller, and releases raw.
+    private void compress(int index, LongBlock raw) {
+        int capacity = raw.getCapacity();
+        if(buffer.length < capacity * 10) {
+            buffer = new byte[capacity * 10]; // a varint of a long takes at most 10 bytes
+        }
+        int length = 0;
+        long previous = 0;
+        for(int i = 0; i < capacity; i++) {
+            long x = raw.getElement(i);
+            long delta = x - previous;
+            previous = x;
+            // Zigzag puts small negative deltas next to small positive ones.
+            long bits = (delta << 1) ^ (delta >> 63);
+            while((bits & ~0x7FL) != 0) {
+                buffer[length++] = (byte) ((bits & 0x7F) | 0x80);
+                bits >>>= 7;
+            }
+            buffer[length++] = (byte) bits;
+        }
+        if(length >= capacity * Long.BYTES) {
+            return;
+        }
+        CompressedLongBlock compressed = new CompressedLongBlock(raw.getNumber(), capacity, Arrays.copyOf(buffer, length));
+        replaceBlock(index, compressed);
+        numberOfCompressedBlocks++;
+        compressedBytes += length;
+        super.releaseBlock(raw);
+    }
+    
+    // Returns the decoded copy of block, from the cache or decoded now.
+    private LongBlock decoded(CompressedLongBlock block) {
+        if(block == lastCompressed) {
+            cacheHits++;
+            return lastDecoded;
+        }
+        LongBlock decoded = cache.get(block);
+        if(decoded != null) {
+            cacheHits++;
+        } else {
+            cacheMisses++;
+            long start = System.nanoTime();
+            decoded = newBlock(block.getNumber(), block.getCapacity());
+            decoded.grow(block.getCapacity());
+            block.decodeInto(decoded.arrayOfElements);
+            decodeNanos += System.nanoTime() - start;
+            cache.put(block, decoded);
+        }
+        lastCompressed = block;
+        lastDecoded = decoded;
+        return decoded;
+    }
+    
+    // Drops block from the cache and from the counts. Its decoded copy,
+    // if any, is left to the caller.
+    private void forget(CompressedLongBlock block) {
+        cache.remove(block);
+        if(lastCompressed == block) {
+            lastCompressed = null;
+            lastDecoded = null;
+        }
+        numberOfCompressedBlocks--;
+        compressedBytes -= block.bytes.length;
+    }
+    
+    // Appends the elements at positions from to to - 1 to builder, as
+    // AbstractDynamicArray does, reading compressed Blocks through the
+    // cache.
+    // Target Complexity: O(to - from)
+    protected void appendElements(StringBuilder builder, Appendable target, int from, int to, String separator) throws IOException {
+        if(from >= to) {
+            return;
+        }
+        int blockIndex = locateBlock(from);
+        int elementIndex = locateElement(from);
+        for(int i = from; i < to; blockIndex++, elementIndex = 0) {
+            LongBlock block = getBlock(blockIndex);
+            for(; elementIndex < block.size() && i < to; elementIndex++, i++) {
+                if(i > from) {
+                    builder.append(separator);
+                }
+                block.appendElement(builder, elementIndex);
+                if(builder != target && builder.length() >= CHUNK_SIZE) {
+                    flush(builder, target);
+                }
+            }
+        }
+    }
+    
+    // Returns the number of reads of a compressed Block that found it
+    // decoded
+    public long getCacheHits() {
+        return cacheHits;
+    }
+    
+    // Returns the number of reads of a compressed Block that decoded it
+    public long getCacheMisses() {
+        return cacheMisses;
+    }
+    
+    // Returns the total time spent decoding, in nanoseconds
+    public long getDecodeNanos() {
+        return decodeNanos;
+    }
+    
+    // Returns the number of Blocks now compressed
+    public int getNumberOfCompressedBlocks() {
+        return numberOfCompressedBlocks;
+    }
+    
+    // Returns the number of bytes held by the Blocks now compressed
+    public long getCompressedBytes() {
+        return compressedBytes;
+    }
+    
+    // A full Block of long values, stored as the zigzag varint of the
+    // difference of each element from the one before. It is never changed;
+    // TieredLongDynamicArray decodes it into a LongBlock first.
+    protected static class CompressedLongBlock extends AbstractBlock {
+        protected final byte[] bytes; // the encoded elements
+        
+        CompressedLongBlock(int number, int capacity, byte[] bytes) {
+            super(number, capacity);
+            this.bytes = bytes;
+            size = capacity;
+        }
+        
+        // Decodes the elements into elements, which must hold capacity
+        // values.
+        // Target complexity: O(capacity)
+        protected void decodeInto(long[] elements) {
+            int position = 0;
+            long previous = 0;
+            for(int i = 0; i < capacity; i++) {
+                long bits = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = bytes[position++];
+                    bits |= (long) (b & 0x7F) << shift;
+                    shift += 7;
+                } while(b < 0);
+                previous += (bits >>> 1) ^ -(bits & 1);
+                elements[i] = previous;
+            }
+        }
+        
+        // Not supported; the Block is decoded before it changes.
+        public void shrink() {
+            throw new UnsupportedOperationException();
+        }
+        
+        // Not supported; the Block is decoded before it changes.
+        public void shrink(int n) {
+            throw new UnsupportedOperationException();
+        }
+        
+        // Appends the element at position index to builder. Decodes the
+        // whole Block, so it is only meant for debugging.
+        protected void appendElement(StringBuilder builder, int index) {
+            long[] elements = new long[capacity];
+            decodeInto(elements);
+            builder.append(elements[index]);
+        }
+        
+        // Create a pretty representation of the Block for debugging.
+        // Example:
+        // 12345
+        // - capacity=2 size=2 compressed=4 bytes
+        protected String toStringForDebugging() {
+            long[] elements = new long[capacity];
+            decodeInto(elements);
+            StringBuilder builder = new StringBuilder();
+            for(long x : elements) {
+                builder.append(x);
+            }
+            builder.append("\n- capacity=" + capacity + " size=" + size + " compressed=" + bytes.length + " bytes");
+            return builder.toString();
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package dynamicarray;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+// A ConcurrentDynamicQueue shared by eight threads that each enqueue and
+// dequeue, against ConcurrentLinkedQueue and ArrayBlockingQueue, as
+// throughput and as latency percentiles. Every thread enqueues one
+// element and then dequeues one, so the queue stays near size elements
+// while producers and consumers contend at both ends at once. Run with
+// -prof gc for allocation rates.
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(8)
+public class ConcurrentQueueBenchmark {
+    @Param({"ConcurrentDynamicQueue", "ConcurrentLinkedQueue", "ArrayBlockingQueue"})
+    String implementation;
+    
+    @Param({"0", "1000", "100000"})
+    int size;
+    
+    private static final Integer ELEMENT = 42;
+    
+    // The operations measured, for each implementation.
+    interface SharedQueue {
+        void offer(Integer x);
+        
+        Integer poll();
+    }
+    
+    private SharedQueue queue; // shared by every thread
+    
+    @Setup(Level.Iteration)
+    public void setUp() {
+        queue = newQueue(implementation, size);
+        for(int i = 0; i < size; i++) {
+            queue.offer(ELEMENT);
+        }
+    }
+    
+    // Returns a new, empty queue of the implementation measured. The
+    // ArrayBlockingQueue is made large enough never to fill.
+    static SharedQueue newQueue(String implementation, int size) {
+        switch(implementation) {
+        case "ConcurrentDynamicQueue": {
+            ConcurrentDynamicQueue<Integer> queue = new ConcurrentDynamicQueue<Integer>();
+            return new SharedQueue() {
+                public void offer(Integer x) {
+                    queue.enqueue(x);
+                }
+                
+                public Integer poll() {
+                    return queue.poll();
+                }
+            };
+        }
+        case "ConcurrentLinkedQueue": {
+            ConcurrentLinkedQueue<Integer> queue = new ConcurrentLinkedQueue<Integer>();
+            return new SharedQueue() {
+                public void offer(Integer x) {
+                    queue.offer(x);
+                }
+                
+                public Integer poll() {
+                    return queue.poll();
+                }
+            };
+        }
+        case "ArrayBlockingQueue": {
+            ArrayBlockingQueue<Integer> queue = new ArrayBlockingQueue<Integer>(size + (1 << 16));
+            return new SharedQueue() {
+                public void offer(Integer x) {
+                    queue.offer(x);
+                }
+                
+                public Integer poll() {
+                    return queue.poll();
+                }
+            };
+        }
+        default:
+            throw new IllegalArgumentException(implementation);
+        }
+    }
+    
+    // Enqueues one element and dequeues one.
+    @Benchmark
+    public Integer enqueueDequeue() {
+        queue.offer(ELEMENT);
+        return queue.poll();
+    }
+}
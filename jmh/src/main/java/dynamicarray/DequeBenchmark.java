@@ -0,0 +1,149 @@
+package dynamicarray;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Adds and polls at both ends of a DynamicDeque against ArrayDeque, as
+// throughput and as latency percentiles. retainedHeap reports the heap a
+// deque holds beyond its elements once size elements have been drained
+// down to a thousandth of them, which ArrayDeque never gives back; run
+// with -prof gc for allocation rates.
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DequeBenchmark {
+    @Param({"DynamicDeque", "ArrayDeque"})
+    String implementation;
+    
+    @Param({"1000", "100000", "10000000"})
+    int size;
+    
+    // The operations measured, which DynamicDeque and ArrayDeque share
+    // without a common interface.
+    interface Ends {
+        void addFirst(Integer x);
+        void addLast(Integer x);
+        Integer pollFirst();
+        Integer pollLast();
+    }
+    
+    private Integer[] elements; // the elements, created once so that only the deques are measured
+    private Ends deque; // a deque of the size elements
+    
+    @Setup(Level.Trial)
+    public void setUp() {
+        elements = new Integer[size];
+        for(int i = 0; i < size; i++) {
+            elements[i] = i;
+        }
+        deque = fill();
+    }
+    
+    // Returns a new, empty deque of the implementation measured.
+    static Ends newDeque(String implementation) {
+        switch(implementation) {
+        case "DynamicDeque": {
+            DynamicDeque<Integer> deque = new DynamicDeque<Integer>();
+            return new Ends() {
+                public void addFirst(Integer x) { deque.addFirst(x); }
+                public void addLast(Integer x) { deque.addLast(x); }
+                public Integer pollFirst() { return deque.pollFirst(); }
+                public Integer pollLast() { return deque.pollLast(); }
+            };
+        }
+        case "ArrayDeque": {
+            ArrayDeque<Integer> deque = new ArrayDeque<Integer>();
+            return new Ends() {
+                public void addFirst(Integer x) { deque.addFirst(x); }
+                public void addLast(Integer x) { deque.addLast(x); }
+                public Integer pollFirst() { return deque.pollFirst(); }
+                public Integer pollLast() { return deque.pollLast(); }
+            };
+        }
+        default:
+            throw new IllegalArgumentException(implementation);
+        }
+    }
+    
+    // Returns a new deque of the size elements, added at either end in
+    // turn, so both sides of a DynamicDeque hold half of them.
+    private Ends fill() {
+        Ends deque = newDeque(implementation);
+        for(int i = 0; i < size; i++) {
+            if((i & 1) == 0) {
+                deque.addLast(elements[i]);
+            } else {
+                deque.addFirst(elements[i]);
+            }
+        }
+        return deque;
+    }
+    
+    // Adds one element at the front and polls one from the rear, so the
+    // size stays the same and the elements move across the middle.
+    @Benchmark
+    public Integer addFirstPollLast() {
+        deque.addFirst(elements[0]);
+        return deque.pollLast();
+    }
+    
+    // Adds one element at the rear and polls one from the front.
+    @Benchmark
+    public Integer addLastPollFirst() {
+        deque.addLast(elements[0]);
+        return deque.pollFirst();
+    }
+    
+    // Adds one element at the rear and polls it again, as a stack.
+    @Benchmark
+    public Integer addLastPollLast() {
+        deque.addLast(elements[0]);
+        return deque.pollLast();
+    }
+    
+    // Adds size elements to an empty deque at either end in turn, then
+    // polls them all from the front.
+    @Benchmark
+    public Integer fillAndDrain() {
+        Ends deque = fill();
+        Integer x = null;
+        for(int i = 0; i < size; i++) {
+            x = deque.pollFirst();
+        }
+        return x;
+    }
+    
+    // Reports in heap.retainedBytes the heap held by a deque that held
+    // size elements and was drained from the front down to size / 1000
+    // of them, not counting the elements.
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 1)
+    public Ends retainedHeap(Heap heap) {
+        deque = null;
+        long before = Heap.used();
+        Ends drained = fill();
+        for(int i = size / 1000; i < size; i++) {
+            drained.pollFirst();
+        }
+        heap.retainedBytes = Heap.used() - before;
+        return drained;
+    }
+}
@@ -0,0 +1,30 @@
+package dynamicarray;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+// Measures the heap retained by a structure, as the difference in used
+// heap after full collections before and after it is built. JMH reports
+// the result as the retainedBytes secondary result of the benchmark that
+// takes a Heap. Such counters are summed over the measurement iterations,
+// so a benchmark that takes a Heap is measured only once.
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.EVENTS)
+public class Heap {
+    public long retainedBytes; // heap retained by the structure measured last
+    
+    private static final MemoryMXBean MEMORY = ManagementFactory.getMemoryMXBean();
+    
+    // Returns the used heap once it has been collected a few times, so
+    // that as little garbage as possible is left in it.
+    static long used() {
+        for(int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return MEMORY.getHeapMemoryUsage().getUsed();
+    }
+}
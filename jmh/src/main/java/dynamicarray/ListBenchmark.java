@@ -0,0 +1,134 @@
+package dynamicarray;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+// add, get, set, remove and iteration of a DynamicArray against ArrayList
+// and LinkedList, as throughput and as latency percentiles. retainedHeap
+// reports the heap a list of size elements holds beyond the elements
+// themselves; run with -prof gc for allocation rates.
+// Sizes up to 10^8 are supported with -p size=100000000 and a heap to
+// match, such as -jvmArgsAppend -Xmx16g.
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ListBenchmark {
+    @Param({"DynamicArray", "ArrayList", "LinkedList"})
+    String implementation;
+    
+    @Param({"10", "1000", "100000", "10000000"})
+    int size;
+    
+    private Integer[] elements; // the elements, created once so that only the lists are measured
+    private int[] positions; // random positions read and written, in turn
+    private int next; // index in positions of the next one
+    private List<Integer> list; // a list of the size elements
+    
+    @Setup(Level.Trial)
+    public void setUp() {
+        elements = new Integer[size];
+        for(int i = 0; i < size; i++) {
+            elements[i] = i;
+        }
+        Random random = new Random(42);
+        positions = new int[1 << 16];
+        for(int i = 0; i < positions.length; i++) {
+            positions[i] = random.nextInt(size);
+        }
+        list = fill();
+    }
+    
+    // Returns a new, empty list of the implementation measured.
+    static List<Integer> newList(String implementation) {
+        switch(implementation) {
+        case "DynamicArray":
+            return new DynamicArray<Integer>();
+        case "ArrayList":
+            return new ArrayList<Integer>();
+        case "LinkedList":
+            return new LinkedList<Integer>();
+        default:
+            throw new IllegalArgumentException(implementation);
+        }
+    }
+    
+    // Returns a new list of the size elements, added one at a time.
+    private List<Integer> fill() {
+        List<Integer> list = newList(implementation);
+        for(Integer x : elements) {
+            list.add(x);
+        }
+        return list;
+    }
+    
+    // Returns the next random position.
+    private int nextPosition() {
+        return positions[next++ & (positions.length - 1)];
+    }
+    
+    // Builds a list of size elements from empty, growth included.
+    @Benchmark
+    public List<Integer> add() {
+        return fill();
+    }
+    
+    @Benchmark
+    public Integer get() {
+        return list.get(nextPosition());
+    }
+    
+    @Benchmark
+    public Integer set() {
+        int i = nextPosition();
+        return list.set(i, elements[i]);
+    }
+    
+    // Adds an element at the end and removes it again, so the size stays
+    // the same.
+    @Benchmark
+    public Integer remove() {
+        list.add(elements[0]);
+        return list.remove(list.size() - 1);
+    }
+    
+    @Benchmark
+    public void iterate(Blackhole blackhole) {
+        for(Integer x : list) {
+            blackhole.consume(x);
+        }
+    }
+    
+    // Reports in heap.retainedBytes the heap held by a list of size
+    // elements, not counting the elements.
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 1)
+    public List<Integer> retainedHeap(Heap heap) {
+        list = null;
+        long before = Heap.used();
+        List<Integer> filled = fill();
+        heap.retainedBytes = Heap.used() - before;
+        return filled;
+    }
+}
@@ -0,0 +1,135 @@
+package dynamicarray;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// The block-parallel operations of DynamicArray against their sequential
+// forms and against ArrayList: forEach, indexOf of an element that is not
+// there, sort of shuffled elements and binarySearch. Sizes on both sides
+// of DynamicArray.PARALLEL_THRESHOLD show where going parallel starts to
+// pay. The parallel operations run on a ForkJoinPool of parallelism
+// threads, so the speedup can be read for each number of threads; the
+// default values stop at 8, and -p parallelism=16,32 goes further on a
+// machine with more cores. Arrays.parallelSort still sizes its parts by
+// the common pool. ArrayList's parallel stream is started from a task on
+// the same pool, so that it runs there too.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParallelBenchmark {
+    @Param({"1000", "100000", "10000000"})
+    int size;
+    
+    @Param({"1", "2", "4", "8"})
+    int parallelism;
+    
+    private ForkJoinPool pool; // the pool of parallelism threads the parallel operations run on
+    private DynamicArray<Integer> array; // 0 to size - 1, in order
+    private ArrayList<Integer> list; // the same elements
+    private Integer[] shuffled; // the same elements, shuffled
+    private Integer missing; // an element of neither
+    private int next; // next key searched for
+    
+    @Setup(Level.Trial)
+    public void setUp() {
+        array = new DynamicArray<Integer>();
+        list = new ArrayList<Integer>();
+        for(int i = 0; i < size; i++) {
+            array.add(i);
+            list.add(i);
+        }
+        ArrayList<Integer> elements = new ArrayList<Integer>(list);
+        Collections.shuffle(elements, new Random(42));
+        shuffled = elements.toArray(new Integer[0]);
+        missing = -1;
+        pool = new ForkJoinPool(parallelism);
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdown();
+    }
+    
+    @Benchmark
+    public long forEach() {
+        LongAdder sum = new LongAdder();
+        array.forEach(x -> sum.add(x));
+        return sum.sum();
+    }
+    
+    @Benchmark
+    public long parallelForEach() {
+        LongAdder sum = new LongAdder();
+        array.parallelForEach(x -> sum.add(x), pool);
+        return sum.sum();
+    }
+    
+    @Benchmark
+    public long arrayListParallelStream() {
+        return pool.submit(() -> list.parallelStream().mapToLong(x -> x).sum()).join();
+    }
+    
+    @Benchmark
+    public int indexOf() {
+        return array.indexOf(missing, pool);
+    }
+    
+    @Benchmark
+    public int arrayListIndexOf() {
+        return list.indexOf(missing);
+    }
+    
+    @Benchmark
+    public DynamicArray<Integer> sort() {
+        DynamicArray<Integer> copy = copyOfShuffled();
+        copy.sort(null);
+        return copy;
+    }
+    
+    @Benchmark
+    public DynamicArray<Integer> parallelSort() {
+        DynamicArray<Integer> copy = copyOfShuffled();
+        copy.parallelSort(null, pool);
+        return copy;
+    }
+    
+    @Benchmark
+    public int binarySearch() {
+        next = (next + 7919) % size;
+        return array.binarySearch(next, null);
+    }
+    
+    @Benchmark
+    public int arrayListBinarySearch() {
+        next = (next + 7919) % size;
+        return Collections.binarySearch(list, next);
+    }
+    
+    // Returns a new DynamicArray of the shuffled elements.
+    private DynamicArray<Integer> copyOfShuffled() {
+        DynamicArray<Integer> copy = new DynamicArray<Integer>();
+        copy.addAll(shuffled);
+        return copy;
+    }
+}
@@ -0,0 +1,133 @@
+package dynamicarray;
+
+import java.util.Arrays;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// offer and poll of a DynamicPriorityQueue of each arity against
+// java.util.PriorityQueue, which is binary whatever the arity parameter,
+// as throughput and as latency percentiles. The elements are random, so
+// an offer sifts up only a few levels while a poll sifts down the whole
+// height of the heap. retainedHeap reports the heap a queue of size
+// elements holds beyond the elements themselves; run with -prof gc for
+// allocation rates.
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PriorityQueueBenchmark {
+    @Param({"DynamicPriorityQueue", "PriorityQueue"})
+    String implementation;
+    
+    @Param({"2", "4", "8"})
+    int arity;
+    
+    @Param({"1000", "100000", "10000000"})
+    int size;
+    
+    private Integer[] elements; // random elements, created once so that only the queues are measured
+    private int next; // index in elements of the next one offered
+    private Queue<Integer> queue; // a queue of the size elements
+    
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        elements = new Integer[size];
+        for(int i = 0; i < size; i++) {
+            elements[i] = random.nextInt(size);
+        }
+        queue = fill();
+    }
+    
+    // Returns a new, empty queue of the implementation measured.
+    static Queue<Integer> newQueue(String implementation, int arity) {
+        switch(implementation) {
+        case "DynamicPriorityQueue":
+            return new DynamicPriorityQueue<Integer>(null, arity);
+        case "PriorityQueue":
+            return new PriorityQueue<Integer>();
+        default:
+            throw new IllegalArgumentException(implementation);
+        }
+    }
+    
+    // Returns a new queue of the size elements, offered one at a time.
+    private Queue<Integer> fill() {
+        Queue<Integer> queue = newQueue(implementation, arity);
+        for(Integer x : elements) {
+            queue.offer(x);
+        }
+        return queue;
+    }
+    
+    // Offers one element and polls the smallest, so the size stays the
+    // same.
+    @Benchmark
+    public Integer offerPoll() {
+        queue.offer(elements[next]);
+        next = next + 1 < size ? next + 1 : 0;
+        return queue.poll();
+    }
+    
+    // Builds a queue of the size elements at once, which both
+    // implementations do bottom-up, then polls them all.
+    @Benchmark
+    public Integer addAllAndDrain() {
+        Queue<Integer> queue;
+        if(implementation.equals("PriorityQueue")) {
+            queue = new PriorityQueue<Integer>(Arrays.asList(elements));
+        } else {
+            DynamicPriorityQueue<Integer> dynamic = new DynamicPriorityQueue<Integer>(null, arity);
+            dynamic.addAll(elements);
+            queue = dynamic;
+        }
+        Integer x = null;
+        for(int i = 0; i < size; i++) {
+            x = queue.poll();
+        }
+        return x;
+    }
+    
+    // Offers the size elements one at a time to an empty queue, then polls
+    // them all.
+    @Benchmark
+    public Integer fillAndDrain() {
+        Queue<Integer> queue = fill();
+        Integer x = null;
+        for(int i = 0; i < size; i++) {
+            x = queue.poll();
+        }
+        return x;
+    }
+    
+    // Reports in heap.retainedBytes the heap held by a queue of size
+    // elements, not counting the elements.
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 1)
+    public Queue<Integer> retainedHeap(Heap heap) {
+        queue = null;
+        long before = Heap.used();
+        Queue<Integer> filled = fill();
+        heap.retainedBytes = Heap.used() - before;
+        return filled;
+    }
+}
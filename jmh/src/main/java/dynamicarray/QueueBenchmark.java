@@ -0,0 +1,105 @@
+package dynamicarray;
+
+import java.util.ArrayDeque;
+import java.util.LinkedList;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// enqueue and dequeue of a DynamicQueue against ArrayDeque and LinkedList,
+// as throughput and as latency percentiles; the SampleTime percentiles of
+// enqueueDequeue show any dequeue that costs more than the others.
+// retainedHeap reports the heap a queue of size elements holds beyond the
+// elements themselves; run with -prof gc for allocation rates.
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueueBenchmark {
+    @Param({"DynamicQueue", "ArrayDeque", "LinkedList"})
+    String implementation;
+    
+    @Param({"10", "1000", "100000", "10000000"})
+    int size;
+    
+    private Integer[] elements; // the elements, created once so that only the queues are measured
+    private Queue<Integer> queue; // a queue of the size elements
+    
+    @Setup(Level.Trial)
+    public void setUp() {
+        elements = new Integer[size];
+        for(int i = 0; i < size; i++) {
+            elements[i] = i;
+        }
+        queue = fill();
+    }
+    
+    // Returns a new, empty queue of the implementation measured.
+    static Queue<Integer> newQueue(String implementation) {
+        switch(implementation) {
+        case "DynamicQueue":
+            return new DynamicQueue<Integer>();
+        case "ArrayDeque":
+            return new ArrayDeque<Integer>();
+        case "LinkedList":
+            return new LinkedList<Integer>();
+        default:
+            throw new IllegalArgumentException(implementation);
+        }
+    }
+    
+    // Returns a new queue of the size elements, enqueued one at a time.
+    private Queue<Integer> fill() {
+        Queue<Integer> queue = newQueue(implementation);
+        for(Integer x : elements) {
+            queue.offer(x);
+        }
+        return queue;
+    }
+    
+    // Enqueues one element and dequeues one, so the size stays the same.
+    @Benchmark
+    public Integer enqueueDequeue() {
+        queue.offer(elements[0]);
+        return queue.poll();
+    }
+    
+    // Enqueues size elements into an empty queue, then dequeues them all.
+    @Benchmark
+    public Integer fillAndDrain() {
+        Queue<Integer> queue = fill();
+        Integer x = null;
+        for(int i = 0; i < size; i++) {
+            x = queue.poll();
+        }
+        return x;
+    }
+    
+    // Reports in heap.retainedBytes the heap held by a queue of size
+    // elements, not counting the elements.
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 1)
+    public Queue<Integer> retainedHeap(Heap heap) {
+        queue = null;
+        long before = Heap.used();
+        Queue<Integer> filled = fill();
+        heap.retainedBytes = Heap.used() - before;
+        return filled;
+    }
+}